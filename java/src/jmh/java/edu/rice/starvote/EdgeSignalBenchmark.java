@@ -0,0 +1,71 @@
+package edu.rice.starvote;
+
+import com.pi4j.io.gpio.PinEdge;
+import edu.rice.starvote.ballotbox.util.EdgeSignal;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures GPIO edge dispatch: the cost of signaling an edge from the interrupt callback when no thread is waiting,
+ * and the latency of waking a thread blocked on an edge. `GPIOListener` delegates both to `EdgeSignal`, which is
+ * benchmarked directly since Pi4J interrupts need a Raspberry Pi.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EdgeSignalBenchmark {
+
+    @State(Scope.Thread)
+    public static class Unwatched {
+        final EdgeSignal signal = new EdgeSignal();
+        boolean rising = false;
+    }
+
+    /**
+     * Pair of signals bounced between two threads. Each is signaled by only one thread, as `EdgeSignal` requires.
+     */
+    @State(Scope.Group)
+    public static class PingPong {
+        final EdgeSignal ping = new EdgeSignal();
+        final EdgeSignal pong = new EdgeSignal();
+    }
+
+    /**
+     * Generation of the last ping seen by the pong thread.
+     */
+    @State(Scope.Thread)
+    public static class Seen {
+        long generation = 0;
+    }
+
+    @Benchmark
+    public long signal(Unwatched state) {
+        state.rising = !state.rising;
+        state.signal.signal(state.rising ? PinEdge.RISING : PinEdge.FALLING);
+        return state.signal.generation(PinEdge.BOTH);
+    }
+
+    /**
+     * Round trip of an edge to a waiting thread and back: twice the wakeup latency.
+     */
+    @Benchmark
+    @Group("wakeup")
+    public boolean ping(PingPong state) throws InterruptedException {
+        final long generation = state.pong.generation(PinEdge.RISING);
+        state.ping.signal(PinEdge.RISING);
+        // Time out so the thread can stop at the end of the iteration, when the other thread has already stopped.
+        return state.pong.awaitAfter(PinEdge.RISING, generation, 100);
+    }
+
+    @Benchmark
+    @Group("wakeup")
+    public boolean pong(PingPong state, Seen seen) throws InterruptedException {
+        if (!state.ping.awaitAfter(PinEdge.RISING, seen.generation, 100)) return false;
+        seen.generation = state.ping.generation(PinEdge.RISING);
+        state.pong.signal(PinEdge.RISING);
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.drivers.PWMBlaster;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and writing pi-blaster commands. Commands are written to `/dev/null` rather than the pi-blaster
+ * device, so this measures the driver's own overhead plus one system call per write.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-D" + PWMBlaster.PROPERTY + "=/dev/null")
+public class PWMBlasterBenchmark {
+
+    private final PWMBlaster motor = new PWMBlaster(17, 50);
+    private final PWMBlaster diverter = new PWMBlaster(18, 50);
+    private boolean toggle = false;
+
+    /**
+     * One command per write.
+     */
+    @Benchmark
+    public void setDutyCycle() throws IOException {
+        toggle = !toggle;
+        motor.setDutyCycle(toggle ? 60 : 25);
+    }
+
+    /**
+     * Two commands coalesced into one write.
+     */
+    @Benchmark
+    public void batch() throws IOException {
+        toggle = !toggle;
+        PWMBlaster.batch(() -> {
+            motor.setDutyCycle(toggle ? 60 : 25);
+            diverter.setDutyCycle(toggle ? 5.6 : 11.0);
+        });
+    }
+}
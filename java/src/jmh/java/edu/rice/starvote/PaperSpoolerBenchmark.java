@@ -0,0 +1,52 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.IAsyncValidator;
+import edu.rice.starvote.ballotbox.IBallotJournal;
+import edu.rice.starvote.ballotbox.PaperSpooler;
+import edu.rice.starvote.ballotbox.sim.PaperPathModel;
+import edu.rice.starvote.ballotbox.util.Clock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full ballot cycle of the paper feeder (feed, scan, validate, divert and eject) on the simulated paper
+ * path, with the clock running `scale` times faster than real time. The result is the simulated cycle time divided by
+ * the scale, plus the real overhead of the feeder, drivers and status updates; a regression in either shows up as a
+ * longer cycle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaperSpoolerBenchmark {
+
+    @Param({"100"})
+    public double scale;
+
+    private PaperPathModel model;
+    private PaperSpooler spooler;
+    private long ballot = 0;
+
+    @Setup
+    public void setup() {
+        Clock.setScale(scale);
+        model = new PaperPathModel();
+        spooler = new PaperSpooler(status -> {}, model.diverter(), model.motor(), model.halfwaySensor(),
+                model.scanner(), IAsyncValidator.of(code -> !code.endsWith("7"), Runnable::run),
+                PaperPathModel.feedTiming(), IBallotJournal.DISABLED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        model.close();
+    }
+
+    @Benchmark
+    public void takeIn() {
+        model.load("BID-" + (++ballot));
+        spooler.takeIn();
+    }
+}
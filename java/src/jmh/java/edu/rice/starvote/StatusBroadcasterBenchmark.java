@@ -0,0 +1,77 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+import edu.rice.starvote.ballotbox.statusserver.StatusBroadcaster;
+import edu.rice.starvote.ballotbox.statusserver.StatusEvent;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures broadcasting a status event to WebSocket sessions, including formatting each message. Uses stand-in
+ * sessions whose sends complete immediately; no network required.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusBroadcasterBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int sessions;
+
+    private StatusBroadcaster broadcaster;
+    private long seq = 0;
+
+    /**
+     * Create a session that consumes each message and completes its send immediately.
+     */
+    private static Session session(Blackhole blackhole) {
+        final RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(
+                StatusBroadcasterBenchmark.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("sendString") && args.length == 2) {
+                        blackhole.consume(args[0]);
+                        ((WriteCallback) args[1]).writeSuccess();
+                    }
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(StatusBroadcasterBenchmark.class.getClassLoader(),
+                new Class<?>[]{Session.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getRemote": return remote;
+                        case "isOpen": return true;
+                        case "getRemoteAddress": return new InetSocketAddress("127.0.0.1", 0);
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "equals": return proxy == args[0];
+                        default: return null;
+                    }
+                });
+    }
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        broadcaster = new StatusBroadcaster();
+        for (int i = 0; i < sessions; i++) {
+            // Half the sessions take JSON events, as the event endpoint does.
+            if (i % 2 == 0) {
+                broadcaster.add(session(blackhole), event -> event.status.toString(), () -> "waiting");
+            } else {
+                broadcaster.add(session(blackhole), StatusEvent::toJson, () -> "{}");
+            }
+        }
+    }
+
+    @Benchmark
+    public void broadcast() {
+        broadcaster.broadcast(new StatusEvent(++seq, BallotStatus.ACCEPT, System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,48 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+import edu.rice.starvote.ballotbox.statusserver.StatusContainer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the time from writing a status until every listener of the status container has received it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusContainerBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int listeners;
+
+    private StatusContainer container;
+    private final AtomicLong delivered = new AtomicLong();
+    private long written = 0;
+    private boolean accept = false;
+
+    @Setup
+    public void setup() {
+        container = new StatusContainer();
+        for (int i = 0; i < listeners; i++) {
+            container.addListener(status -> delivered.incrementAndGet());
+        }
+    }
+
+    @Benchmark
+    public long writeAndDeliver() {
+        accept = !accept;
+        container.writeStatus(accept ? BallotStatus.ACCEPT : BallotStatus.REJECT);
+        written += listeners;
+        long seen;
+        while ((seen = delivered.get()) < written) {
+            Thread.yield();
+        }
+        return seen;
+    }
+}
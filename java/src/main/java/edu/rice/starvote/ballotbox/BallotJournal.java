@@ -0,0 +1,341 @@
+package edu.rice.starvote.ballotbox;
+
+import edu.rice.starvote.ballotbox.util.EventLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe, append-only journal of the ballots processed by this box. Every scan, validation result, diverter
+ * decision and eject is appended to a file as a small checksummed record carrying the ballot's sequence number. When the box
+ * restarts, the journal is replayed to restore the ballot counters and the set of BIDs already cast, so that a crash
+ * mid-election neither loses the count nor lets a ballot be cast twice.
+ *
+ * Records are written with a single `FileChannel.write()`, which returns once the record is in the operating system's
+ * page cache: a few microseconds, and durable against the JVM dying. The file is flushed to the storage device by a
+ * background thread (`force()`) at a fixed interval, so a power loss loses at most that interval of records.
+ *
+ * Each record is framed as follows (big-endian):
+ *
+ * | Size | Field                                                      |
+ * |------|------------------------------------------------------------|
+ * | 4    | Payload length                                             |
+ * | 4    | CRC-32 of the payload                                      |
+ * | 1    | Record type: 1 scanned, 2 validated, 3 diverted, 4 ejected |
+ * | 1    | `BallotResult` ordinal (0 in scanned records)              |
+ * | 8    | Ballot sequence number                                     |
+ * | 8    | Time of the record, ms since epoch                         |
+ * | 2    | Code length (scanned records)                              |
+ * | n    | Code, ASCII (scanned records)                              |
+ *
+ * A record cut short by a crash, or failing its checksum, ends the replay; it and anything after it are truncated so
+ * that new records follow the last good one.
+ *
+ * ##### Example #####
+ * ```java
+ * BallotJournal journal = BallotJournal.open(Paths.get("ballots.journal"));
+ * journal.castCodes().forEach(cachingValidator::markCast);
+ * long ballot = journal.scanned(code);
+ * journal.validated(ballot, BallotResult.ACCEPT);
+ * journal.diverted(ballot, BallotResult.ACCEPT);
+ * journal.ejected(ballot, BallotResult.ACCEPT);
+ * ```
+ *
+ * @author luejerry
+ */
+public class BallotJournal implements IBallotJournal, AutoCloseable {
+
+    /**
+     * Name of the system property giving the path of the journal file.
+     */
+    public final static String PROPERTY = "ballotbox.journal";
+
+    /**
+     * Default path of the journal file, relative to the working directory.
+     */
+    public final static String DEFAULT_PATH = "ballots.journal";
+
+    /**
+     * Default interval between flushes to the storage device, in milliseconds.
+     */
+    public final static long DEFAULT_FORCE_INTERVAL = 200;
+
+    final static byte SCANNED = 1;
+    final static byte VALIDATED = 2;
+    final static byte DIVERTED = 3;
+    final static byte EJECTED = 4;
+
+    private final static int FRAME_SIZE = 8;
+    private final static int FIXED_SIZE = 20;
+    private final static int MAX_CODE_LENGTH = 255;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(FRAME_SIZE + FIXED_SIZE + MAX_CODE_LENGTH);
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+        final Thread thread = new Thread(task, "journal-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final EventLog log = EventLog.get();
+    private final Set<String> castCodes = new LinkedHashSet<>();
+    private volatile boolean dirty = false;
+    private boolean failed = false;
+    private long nextBallot = 1;
+    private long scanned = 0;
+    private long accepted = 0;
+    private long rejected = 0;
+
+    /**
+     * Constructor. Replays the journal and positions the channel after the last good record.
+     * @param channel Open journal file.
+     * @throws IOException If the journal cannot be read or truncated.
+     */
+    private BallotJournal(FileChannel channel) throws IOException {
+        this.channel = channel;
+        replay();
+    }
+
+    /**
+     * Open a journal with the default flush interval, creating it if it does not exist, and replay it.
+     * @param path Path of the journal file.
+     * @return Open journal.
+     * @throws IOException If the journal cannot be opened or read.
+     */
+    public static BallotJournal open(Path path) throws IOException {
+        return open(path, DEFAULT_FORCE_INTERVAL);
+    }
+
+    /**
+     * Open a journal, creating it if it does not exist, and replay it.
+     * @param path Path of the journal file.
+     * @param forceInterval Interval between flushes to the storage device, in milliseconds.
+     * @return Open journal.
+     * @throws IOException If the journal cannot be opened or read.
+     */
+    public static BallotJournal open(Path path, long forceInterval) throws IOException {
+        final FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final BallotJournal journal;
+        try {
+            journal = new BallotJournal(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        journal.flusher.scheduleWithFixedDelay(journal::force, forceInterval, forceInterval, TimeUnit.MILLISECONDS);
+        return journal;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long scanned(String code) {
+        final long ballot = nextBallot++;
+        scanned++;
+        append(SCANNED, null, ballot, code);
+        return ballot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void validated(long ballot, BallotResult result) {
+        append(VALIDATED, result, ballot, "");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void diverted(long ballot, BallotResult result) {
+        append(DIVERTED, result, ballot, "");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void ejected(long ballot, BallotResult result) {
+        if (result == BallotResult.ACCEPT) accepted++; else rejected++;
+        append(EJECTED, result, ballot, "");
+    }
+
+    /**
+     * Get the number of sheets scanned, including those journaled before the last restart.
+     * @return Scan count.
+     */
+    public synchronized long scannedCount() {
+        return scanned;
+    }
+
+    /**
+     * Get the number of ballots ejected into the ballot box, including those journaled before the last restart.
+     * @return Accepted ballot count.
+     */
+    public synchronized long acceptedCount() {
+        return accepted;
+    }
+
+    /**
+     * Get the number of sheets ejected back to the voter, including those journaled before the last restart.
+     * @return Rejected sheet count.
+     */
+    public synchronized long rejectedCount() {
+        return rejected;
+    }
+
+    /**
+     * Get the BIDs of the ballots diverted into the ballot box before the journal was opened, in journal order. Use
+     * this to restore the duplicate check of the validator (see `CachingValidator.markCast()`). A ballot counts as cast
+     * once it is diverted, even if it jammed before being ejected, as its BID was already spent by the supervisor.
+     * @return Unmodifiable set of cast BIDs.
+     */
+    public Set<String> castCodes() {
+        return Collections.unmodifiableSet(castCodes);
+    }
+
+    /**
+     * Flush journaled records to the storage device, if any were written since the last flush. Called periodically;
+     * may also be called to make a record durable immediately.
+     */
+    public void force() {
+        if (!dirty) return;
+        dirty = false;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            log.log("journal.force_failed", e);
+        }
+    }
+
+    /**
+     * Flush and close the journal. Records made afterward are discarded.
+     * @throws IOException If the journal cannot be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        flusher.shutdownNow();
+        force();
+        failed = true;
+        channel.close();
+    }
+
+    /**
+     * Helper method to append a record. Journaling errors are logged and disable the journal rather than interrupting
+     * the ballot being processed.
+     * @param type Record type.
+     * @param result Result of the record, or null for a scanned record.
+     * @param ballot Ballot sequence number.
+     * @param code Code of a scanned record, otherwise empty.
+     */
+    private void append(byte type, BallotResult result, long ballot, String code) {
+        if (failed) return;
+        final int codeLength = Math.min(code.length(), MAX_CODE_LENGTH);
+        buffer.clear();
+        buffer.position(FRAME_SIZE);
+        buffer.put(type).put((byte) ((result == null) ? 0 : result.ordinal()))
+                .putLong(ballot).putLong(System.currentTimeMillis()).putShort((short) codeLength);
+        for (int i = 0; i < codeLength; i++) {
+            buffer.put((byte) code.charAt(i));
+        }
+        final int payloadLength = buffer.position() - FRAME_SIZE;
+        buffer.flip();
+        buffer.position(FRAME_SIZE);
+        crc.reset();
+        crc.update(buffer);
+        buffer.putInt(0, payloadLength);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.position(0);
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            dirty = true;
+        } catch (IOException e) {
+            failed = true;
+            log.log("journal.write_failed", e);
+        }
+    }
+
+    /**
+     * Helper method to read every good record, restoring the counters and cast set, and truncate anything after them.
+     * @throws IOException If the journal cannot be read or truncated.
+     */
+    private void replay() throws IOException {
+        final long size = channel.size();
+        final ByteBuffer contents = ByteBuffer.allocate((int) size);
+        channel.position(0);
+        while (contents.hasRemaining() && channel.read(contents) >= 0) {
+        }
+        contents.flip();
+
+        final Map<Long, String> codes = new HashMap<>();
+        final CRC32 check = new CRC32();
+        long records = 0;
+        while (contents.remaining() >= FRAME_SIZE) {
+            final int start = contents.position();
+            final int length = contents.getInt();
+            final int expected = contents.getInt();
+            if (length < FIXED_SIZE || length > FIXED_SIZE + MAX_CODE_LENGTH || contents.remaining() < length) {
+                contents.position(start);
+                break;
+            }
+            final ByteBuffer payload = contents.slice();
+            payload.limit(length);
+            check.reset();
+            check.update(payload);
+            if ((int) check.getValue() != expected) {
+                contents.position(start);
+                break;
+            }
+            final byte type = contents.get();
+            final BallotResult result = BallotResult.values()[contents.get()];
+            final long ballot = contents.getLong();
+            contents.getLong(); // Time
+            final byte[] code = new byte[contents.getShort()];
+            contents.get(code);
+            contents.position(start + FRAME_SIZE + length);
+            records++;
+
+            nextBallot = Math.max(nextBallot, ballot + 1);
+            switch (type) {
+                case SCANNED:
+                    scanned++;
+                    codes.put(ballot, new String(code, StandardCharsets.US_ASCII));
+                    break;
+                case DIVERTED:
+                    final String castCode = codes.remove(ballot);
+                    if (result == BallotResult.ACCEPT && castCode != null && !castCode.isEmpty()) {
+                        castCodes.add(castCode);
+                    }
+                    break;
+                case EJECTED:
+                    if (result == BallotResult.ACCEPT) accepted++; else rejected++;
+                    break;
+                default:
+            }
+        }
+        if (contents.position() < size) {
+            log.log("journal.truncated", size - contents.position());
+            channel.truncate(contents.position());
+        }
+        channel.position(contents.position());
+        log.log("journal.replayed", records);
+    }
+}
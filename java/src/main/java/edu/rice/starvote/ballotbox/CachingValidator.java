@@ -0,0 +1,178 @@
+package edu.rice.starvote.ballotbox;
+
+import edu.rice.starvote.ballotbox.util.BloomFilter;
+import edu.rice.starvote.ballotbox.util.EventLog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Validation cache placed in front of a (typically networked) validator. Codes are checked locally in three steps
+ * before a request is made to the underlying validator:
+ *
+ *  1. **Format check**: a code not matching the configured pattern is rejected. This catches garbage scans.
+ *  2. **Recent decisions**: a least-recently-used table of recent BIDs and their decisions. A BID that was accepted
+ *     has already been cast and is rejected; a BID that was rejected within the rejection lifetime is rejected again.
+ *  3. **Cast set**: a Bloom filter of every BID accepted at this station. A BID found in the set is rejected as a
+ *     duplicate cast attempt.
+ *
+ * A code is claimed before these checks and until its decision arrives, so a second validation of the same code made
+ * while the first is still in flight (two copies of one ballot in two paper paths) is rejected as a duplicate rather
+ * than also sent on. The claim is released once the decision has been recorded.
+ *
+ * Only `ACCEPT` and `REJECT` decisions are cached; a `TIMEOUT` is always retried. Rejections expire after a
+ * configurable lifetime, since a supervisor may reject a ballot that becomes valid later.
+ *
+ * *The cast set is probabilistic: a valid, never-cast BID is rejected with probability equal to the configured false
+ * positive rate. The default rate is one in a billion at the default capacity.*
+ *
+ * @author luejerry
+ */
+public class CachingValidator implements IAsyncValidator {
+
+    /**
+     * Default code format: 1 to 63 printable, non-whitespace ASCII characters (the limits of the scanner driver).
+     */
+    public static final Pattern DEFAULT_FORMAT = Pattern.compile("[\\x21-\\x7E]{1,63}");
+    /**
+     * Default number of recent decisions held.
+     */
+    public static final int DEFAULT_RECENT = 1024;
+    /**
+     * Default expected number of ballots cast at this station.
+     */
+    public static final int DEFAULT_CAPACITY = 20000;
+    /**
+     * Default false positive rate of the cast set at capacity.
+     */
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 1e-9;
+    /**
+     * Default lifetime of a cached rejection, in milliseconds.
+     */
+    public static final long DEFAULT_REJECT_LIFETIME = 60000;
+
+    private final IAsyncValidator validator;
+    private final Pattern format;
+    private final long rejectLifetime;
+    private final BloomFilter castSet;
+    private final Map<String, Decision> recent;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final EventLog log = EventLog.get();
+
+    /**
+     * A cached decision and the time it was made.
+     */
+    private static class Decision {
+        final BallotResult result;
+        final long time;
+
+        Decision(BallotResult result, long time) {
+            this.result = result;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Constructor using default cache parameters.
+     * @param validator Underlying validator.
+     */
+    public CachingValidator(IAsyncValidator validator) {
+        this(validator, DEFAULT_FORMAT, DEFAULT_RECENT, DEFAULT_REJECT_LIFETIME, DEFAULT_CAPACITY,
+                DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Constructor.
+     * @param validator Underlying validator.
+     * @param format Pattern a code must match in full to be sent to the underlying validator.
+     * @param recentSize Number of recent decisions held.
+     * @param rejectLifetime Time a rejection remains cached, in milliseconds.
+     * @param capacity Expected number of ballots cast at this station.
+     * @param falsePositiveRate False positive rate of the cast set at capacity.
+     */
+    public CachingValidator(IAsyncValidator validator,
+                            Pattern format,
+                            int recentSize,
+                            long rejectLifetime,
+                            int capacity,
+                            double falsePositiveRate) {
+        this.validator = validator;
+        this.format = format;
+        this.rejectLifetime = rejectLifetime;
+        castSet = new BloomFilter(capacity, falsePositiveRate);
+        recent = new LinkedHashMap<String, Decision>(recentSize * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Decision> eldest) {
+                return size() > recentSize;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<BallotResult> validateAsync(String code) {
+        if (!format.matcher(code).matches()) {
+            log.log("validator.invalid_format", code);
+            return CompletableFuture.completedFuture(BallotResult.REJECT);
+        }
+        if (!inFlight.add(code)) {
+            log.log("validator.duplicate_pending", code);
+            return CompletableFuture.completedFuture(BallotResult.REJECT);
+        }
+        final Decision decision;
+        synchronized (recent) {
+            decision = recent.get(code);
+        }
+        if (decision != null) {
+            if (decision.result == BallotResult.ACCEPT) {
+                log.log("validator.already_cast", code);
+                inFlight.remove(code);
+                return CompletableFuture.completedFuture(BallotResult.REJECT);
+            } else if (System.currentTimeMillis() - decision.time < rejectLifetime) {
+                log.log("validator.recently_rejected", code);
+                inFlight.remove(code);
+                return CompletableFuture.completedFuture(BallotResult.REJECT);
+            }
+        }
+        if (castSet.mightContain(code)) {
+            log.log("validator.already_cast", code);
+            inFlight.remove(code);
+            return CompletableFuture.completedFuture(BallotResult.REJECT);
+        }
+        return validator.validateAsync(code).whenComplete((result, error) -> {
+            if (result == BallotResult.ACCEPT) {
+                markCast(code);
+            } else if (result == BallotResult.REJECT) {
+                remember(code, result);
+            }
+            inFlight.remove(code);
+        });
+    }
+
+    /**
+     * Record a BID as cast at this station. Subsequent validations of the BID are rejected without consulting the
+     * underlying validator.
+     * @param code Cast BID.
+     */
+    public void markCast(String code) {
+        castSet.put(code);
+        remember(code, BallotResult.ACCEPT);
+    }
+
+    /**
+     * Helper method to record a decision in the recent decisions table.
+     * @param code BID.
+     * @param result Decision.
+     */
+    private void remember(String code, BallotResult result) {
+        synchronized (recent) {
+            recent.put(code, new Decision(result, System.currentTimeMillis()));
+        }
+    }
+}
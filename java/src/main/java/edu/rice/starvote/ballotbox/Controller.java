@@ -4,6 +4,7 @@ import edu.rice.starvote.ballotbox.drivers.*;
 import edu.rice.starvote.ballotbox.statusserver.StaticContainer;
 import edu.rice.starvote.ballotbox.statusserver.StatusContainer;
 import edu.rice.starvote.ballotbox.statusserver.StatusServer;
+import edu.rice.starvote.ballotbox.util.EventLog;
 import edu.rice.starvote.ballotbox.util.GPIOListener;
 
 /**
@@ -31,13 +32,15 @@ public class Controller {
     public Controller() {
         listener = new GPIOListener(24);
         halfwaySensor = new GPIOListener(23);
-        motor = new PrinterMotor(22, 27, new PWMBlaster(17, 50));
+        final IMotor printerMotor = new PrinterMotor(22, 27, new PWMBlaster(17, 50));
         diverter = new DiverterPWM(new PWMBlaster(18, 50));
-        scanner = new Scan();
+        STARController.park(printerMotor, diverter);
+        motor = new MotorScheduler(printerMotor, MotionProfile.DEFAULT);
+        scanner = new ScanEvdev();
         validator = code -> true;
         statusProvider = StaticContainer.statusContainer;
         updater = status -> {
-            System.out.println("Ballot status sent to server: " + status.toString());
+            EventLog.get().log("status.pushed", status);
             statusProvider.writeStatus(status);
         };
         spooler = new PaperSpooler(updater, diverter, motor, halfwaySensor, scanner, validator);
@@ -0,0 +1,195 @@
+package edu.rice.starvote.ballotbox;
+
+import edu.rice.starvote.ballotbox.util.RollingWindow;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive timing controller for the paper feeder. Learns the feed and eject times of this particular box from the
+ * halfway sensor edge timings reported by the spooler, and derives the spooler's timeouts and delays from them:
+ *
+ *  - **Timeouts** (waiting for paper to reach or clear the halfway sensor) are set to the 99th percentile of recent
+ *    measurements plus a 50% margin.
+ *  - **Settle delays** (after paper reaches or clears the sensor) are scaled by the speed of this box relative to the
+ *    reference box the nominal delays were tuned on, using the median eject time.
+ *
+ * Every value is clamped to its configured safety bounds. Until enough samples have been collected, and for a number
+ * of cycles after a misfeed or jam, the nominal values are used.
+ *
+ * @author luejerry
+ */
+public class FeedTiming {
+
+    /**
+     * Safety bounds and nominal value of a timing parameter, in milliseconds.
+     */
+    public static class Bounds {
+        public final long min;
+        public final long nominal;
+        public final long max;
+
+        /**
+         * Constructor.
+         * @param min Lower bound.
+         * @param nominal Value used when there is not enough data to adapt.
+         * @param max Upper bound.
+         */
+        public Bounds(long min, long nominal, long max) {
+            this.min = min;
+            this.nominal = nominal;
+            this.max = max;
+        }
+
+        /**
+         * Helper method to limit a value to the bounds.
+         * @param value Value in milliseconds.
+         * @return Value clamped to [min, max].
+         */
+        long clamp(long value) {
+            return Math.max(min, Math.min(max, value));
+        }
+    }
+
+    public static final Bounds DEFAULT_FEED_TIMEOUT = new Bounds(1500, 3000, 3000);
+    public static final Bounds DEFAULT_EJECT_TIMEOUT = new Bounds(2000, 4000, 4000);
+    public static final Bounds DEFAULT_FEED_SETTLE = new Bounds(100, 150, 250);
+    public static final Bounds DEFAULT_EJECT_SETTLE = new Bounds(450, 600, 900);
+    /**
+     * Eject time of the reference box at which the nominal settle delays apply, in milliseconds.
+     */
+    public static final long DEFAULT_REFERENCE_EJECT = 1000;
+
+    /**
+     * Number of recent measurements considered.
+     */
+    final static int WINDOW = 32;
+    /**
+     * Number of measurements required before adapting.
+     */
+    final static int MIN_SAMPLES = 8;
+    /**
+     * Number of cycles nominal values are used after a fault.
+     */
+    final static int FAULT_HOLDOFF = 10;
+    final static double TIMEOUT_MARGIN = 1.5;
+
+    private final Bounds feedTimeout;
+    private final Bounds ejectTimeout;
+    private final Bounds feedSettle;
+    private final Bounds ejectSettle;
+    private final long referenceEject;
+    private final RollingWindow feeds = new RollingWindow(WINDOW);
+    private final RollingWindow ejects = new RollingWindow(WINDOW);
+    private int holdoff = 0;
+
+    /**
+     * Constructor using the default bounds, calibrated to the HP 1010 feed mechanism.
+     */
+    public FeedTiming() {
+        this(DEFAULT_FEED_TIMEOUT, DEFAULT_EJECT_TIMEOUT, DEFAULT_FEED_SETTLE, DEFAULT_EJECT_SETTLE,
+                DEFAULT_REFERENCE_EJECT);
+    }
+
+    /**
+     * Constructor.
+     * @param feedTimeout Bounds of time to wait for paper to reach the halfway sensor.
+     * @param ejectTimeout Bounds of time to wait for paper to clear the halfway sensor.
+     * @param feedSettle Bounds of delay after paper reaches the halfway sensor.
+     * @param ejectSettle Bounds of delay after paper clears the halfway sensor.
+     * @param referenceEject Eject time at which the nominal settle delays apply, in milliseconds.
+     */
+    public FeedTiming(Bounds feedTimeout, Bounds ejectTimeout, Bounds feedSettle, Bounds ejectSettle,
+                      long referenceEject) {
+        this.feedTimeout = feedTimeout;
+        this.ejectTimeout = ejectTimeout;
+        this.feedSettle = feedSettle;
+        this.ejectSettle = ejectSettle;
+        this.referenceEject = referenceEject;
+    }
+
+    /**
+     * Record the measured time from starting the feed to paper reaching the halfway sensor.
+     * @param nanos Feed time in nanoseconds.
+     */
+    public synchronized void recordFeed(long nanos) {
+        feeds.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+        if (holdoff > 0) holdoff--;
+    }
+
+    /**
+     * Record the measured time from starting the eject to paper clearing the halfway sensor.
+     * @param nanos Eject time in nanoseconds.
+     */
+    public synchronized void recordEject(long nanos) {
+        ejects.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    /**
+     * Record a misfeed or paper jam. Nominal timing is restored for the next several cycles.
+     */
+    public synchronized void recordFault() {
+        holdoff = FAULT_HOLDOFF;
+    }
+
+    /**
+     * Get the time to wait for paper to reach the halfway sensor.
+     * @return Timeout in milliseconds.
+     */
+    public synchronized long feedTimeout() {
+        return timeout(feeds, feedTimeout);
+    }
+
+    /**
+     * Get the time to wait for paper to clear the halfway sensor.
+     * @return Timeout in milliseconds.
+     */
+    public synchronized long ejectTimeout() {
+        return timeout(ejects, ejectTimeout);
+    }
+
+    /**
+     * Get the delay after paper reaches the halfway sensor before it is backed out to scan.
+     * @return Delay in milliseconds.
+     */
+    public synchronized int feedSettle() {
+        return (int) settle(feedSettle);
+    }
+
+    /**
+     * Get the delay after paper clears the halfway sensor before the motor is stopped.
+     * @return Delay in milliseconds.
+     */
+    public synchronized int ejectSettle() {
+        return (int) settle(ejectSettle);
+    }
+
+    /**
+     * Helper method to decide whether there is enough trustworthy data to adapt.
+     * @param samples Measurements the value is derived from.
+     * @return True if adaptive values should be used.
+     */
+    private boolean adapting(RollingWindow samples) {
+        return holdoff == 0 && samples.size() >= MIN_SAMPLES;
+    }
+
+    /**
+     * Helper method to derive a timeout from measured times.
+     * @param samples Measured times in milliseconds.
+     * @param bounds Bounds of the timeout.
+     * @return Timeout in milliseconds.
+     */
+    private long timeout(RollingWindow samples, Bounds bounds) {
+        if (!adapting(samples)) return bounds.nominal;
+        return bounds.clamp((long) (samples.percentile(99) * TIMEOUT_MARGIN));
+    }
+
+    /**
+     * Helper method to scale a settle delay to the speed of this box.
+     * @param bounds Bounds of the delay.
+     * @return Delay in milliseconds.
+     */
+    private long settle(Bounds bounds) {
+        if (!adapting(ejects)) return bounds.nominal;
+        return bounds.clamp(bounds.nominal * ejects.percentile(50) / referenceEject);
+    }
+}
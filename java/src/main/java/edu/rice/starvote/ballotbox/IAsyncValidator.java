@@ -0,0 +1,42 @@
+package edu.rice.starvote.ballotbox;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Interface for a non-blocking code validator. Many validations may be in flight at once; each result is delivered
+ * through the future returned for its own code.
+ *
+ * @see IValidator
+ * @author luejerry
+ */
+public interface IAsyncValidator {
+
+    /**
+     * Submit a code string for validation. This method returns immediately.
+     *
+     * @param code Scanned code string.
+     * @return Future completed with the validation result. Implementations must always complete the future, with
+     * `TIMEOUT` if no decision could be made in time.
+     */
+    CompletableFuture<BallotResult> validateAsync(String code);
+
+    /**
+     * Get a blocking view of this validator. Only an `ACCEPT` result is considered valid.
+     * @return Blocking validator that waits for the result of `validateAsync()`.
+     */
+    default IValidator blocking() {
+        return code -> validateAsync(code).join() == BallotResult.ACCEPT;
+    }
+
+    /**
+     * Adapt a blocking validator to this interface.
+     * @param validator Blocking validator.
+     * @param executor Executor on which the blocking validator is invoked.
+     * @return Validator that resolves to `ACCEPT` or `REJECT`.
+     */
+    static IAsyncValidator of(IValidator validator, Executor executor) {
+        return code -> CompletableFuture.supplyAsync(
+                () -> validator.validate(code) ? BallotResult.ACCEPT : BallotResult.REJECT, executor);
+    }
+}
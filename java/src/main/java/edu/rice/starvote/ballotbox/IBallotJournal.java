@@ -0,0 +1,61 @@
+package edu.rice.starvote.ballotbox;
+
+/**
+ * Interface for the durable record of ballots processed by the paper feeder. The feeder reports each sheet as it is
+ * scanned, validated, diverted and ejected; implementations must return quickly, as they are called in the per-ballot path.
+ *
+ * @author luejerry
+ */
+public interface IBallotJournal {
+
+    /**
+     * Journal that records nothing, for boxes running without durable state.
+     */
+    IBallotJournal DISABLED = new IBallotJournal() {
+        @Override
+        public long scanned(String code) {
+            return 0;
+        }
+
+        @Override
+        public void validated(long ballot, BallotResult result) {
+        }
+
+        @Override
+        public void diverted(long ballot, BallotResult result) {
+        }
+
+        @Override
+        public void ejected(long ballot, BallotResult result) {
+        }
+    };
+
+    /**
+     * Record that a sheet was scanned.
+     * @param code Code read from the sheet. Empty if the code could not be read.
+     * @return Ballot sequence number identifying the sheet in subsequent records.
+     */
+    long scanned(String code);
+
+    /**
+     * Record the validation result of a sheet.
+     * @param ballot Ballot sequence number returned by `scanned()`.
+     * @param result Validation result.
+     */
+    void validated(long ballot, BallotResult result);
+
+    /**
+     * Record the diverter decision for a sheet.
+     * @param ballot Ballot sequence number returned by `scanned()`.
+     * @param result `ACCEPT` if the sheet was diverted into the ballot box, `REJECT` if it was returned.
+     */
+    void diverted(long ballot, BallotResult result);
+
+    /**
+     * Record that a sheet left the feeder along its diverted path. A sheet that jams after being diverted is never
+     * ejected, so this, not the diverter decision, is the final outcome of the ballot.
+     * @param ballot Ballot sequence number returned by `scanned()`.
+     * @param result `ACCEPT` if the sheet was ejected into the ballot box, `REJECT` if it was returned to the voter.
+     */
+    void ejected(long ballot, BallotResult result);
+}
@@ -0,0 +1,35 @@
+package edu.rice.starvote.ballotbox;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Interface for a validator that relies on a network connection to a remote authority (the supervisor), and so can
+ * report whether it is currently able to reach it.
+ *
+ * @see StoreAndForwardValidator
+ * @author luejerry
+ */
+public interface INetworkValidator extends IAsyncValidator {
+
+    /**
+     * Submit a code string for validation with a specific timeout. This method returns immediately.
+     * @param code Scanned code string.
+     * @param millis Time to wait for a decision, in milliseconds.
+     * @return Future completed with the validation result, or `TIMEOUT` if no decision was received in time.
+     */
+    CompletableFuture<BallotResult> validateAsync(String code, long millis);
+
+    /**
+     * Check whether the remote authority is currently reachable.
+     * @return True if connected.
+     */
+    boolean isConnected();
+
+    /**
+     * Register a listener to be notified when the connection is established or lost. The listener is called on a
+     * network thread and must not block.
+     * @param listener Listener receiving the new connection state (true if connected).
+     */
+    void addConnectionListener(Consumer<Boolean> listener);
+}
@@ -0,0 +1,158 @@
+package edu.rice.starvote.ballotbox;
+
+import edu.rice.starvote.ballotbox.drivers.ScanEvdev;
+import edu.rice.starvote.ballotbox.util.PinMap;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Pin assignments of one paper feed lane: a feed tray with its own sensors, feed motor and diverter. A box may drive
+ * several lanes from one Raspberry Pi (see `STARController`), configured in a properties file. Lanes are numbered
+ * from 1, and every pin of every lane must be given (BCM numbering):
+ *
+ * ```
+ * lanes=2
+ * lane.1.tray=24
+ * lane.1.halfway=23
+ * lane.1.motor.forward=22
+ * lane.1.motor.reverse=27
+ * lane.1.motor.enable=17
+ * lane.1.diverter=18
+ * lane.2.tray=5
+ * lane.2.halfway=6
+ * lane.2.motor.forward=13
+ * lane.2.motor.reverse=19
+ * lane.2.motor.enable=12
+ * lane.2.diverter=16
+ * ```
+ *
+ * The motor enable and diverter pins are driven by pi-blaster, which must be configured to output on them.
+ *
+ * @author luejerry
+ */
+public class LaneConfig {
+
+    /**
+     * Name of the system property giving the path of the lane configuration file.
+     */
+    public final static String PROPERTY = "ballotbox.lanes";
+
+    /**
+     * Default path of the lane configuration file, relative to the working directory.
+     */
+    public final static String DEFAULT_PATH = "lanes.properties";
+
+    /**
+     * Pins of the reference box, used when there is no configuration file.
+     */
+    public final static LaneConfig DEFAULT = new LaneConfig(24, 23, 22, 27, 17, 18);
+
+    public final int trayPin;
+    public final int halfwayPin;
+    public final int forwardPin;
+    public final int reversePin;
+    public final int enablePin;
+    public final int diverterPin;
+
+    /**
+     * Constructor.
+     * @param trayPin Paper feed tray sensor pin.
+     * @param halfwayPin Halfway sensor pin.
+     * @param forwardPin Pin that moves the motor forward when HIGH.
+     * @param reversePin Pin that moves the motor in reverse when HIGH.
+     * @param enablePin Motor enable PWM pin.
+     * @param diverterPin Diverter servo PWM pin.
+     */
+    public LaneConfig(int trayPin, int halfwayPin, int forwardPin, int reversePin, int enablePin, int diverterPin) {
+        this.trayPin = trayPin;
+        this.halfwayPin = halfwayPin;
+        this.forwardPin = forwardPin;
+        this.reversePin = reversePin;
+        this.enablePin = enablePin;
+        this.diverterPin = diverterPin;
+    }
+
+    /**
+     * Read the lane configuration file. If the file does not exist, the box has a single lane wired as the reference
+     * box.
+     * @param path Path of the configuration file.
+     * @return Configuration of each lane, in order.
+     * @throws IOException If the file exists but cannot be read.
+     * @throws IllegalArgumentException If the configuration is incomplete or invalid.
+     */
+    public static List<LaneConfig> load(Path path) throws IOException {
+        if (!Files.exists(path)) return Collections.singletonList(DEFAULT);
+        final Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path)) {
+            properties.load(reader);
+        }
+        return parse(properties);
+    }
+
+    /**
+     * Parse a lane configuration. Pins are checked to be valid GPIO pins, and no pin may be used twice or by the
+     * scanner.
+     * @param properties Configuration properties.
+     * @return Configuration of each lane, in order.
+     * @throws IllegalArgumentException If the configuration is incomplete or invalid.
+     */
+    public static List<LaneConfig> parse(Properties properties) {
+        final int count = integer(properties, "lanes");
+        if (count < 1) throw new IllegalArgumentException("At least one lane is required");
+        final List<LaneConfig> lanes = new ArrayList<>(count);
+        final Set<Integer> used = new HashSet<>();
+        used.add(ScanEvdev.DEFAULT_PIN);
+        for (int lane = 1; lane <= count; lane++) {
+            final String prefix = "lane." + lane + ".";
+            final LaneConfig config = new LaneConfig(integer(properties, prefix + "tray"),
+                    integer(properties, prefix + "halfway"), integer(properties, prefix + "motor.forward"),
+                    integer(properties, prefix + "motor.reverse"), integer(properties, prefix + "motor.enable"),
+                    integer(properties, prefix + "diverter"));
+            for (int pin : config.pins()) {
+                if (!PinMap.mapPin(pin).isPresent()) {
+                    throw new IllegalArgumentException("Lane " + lane + ": " + pin + " is not a GPIO pin");
+                }
+                if (!used.add(pin)) {
+                    throw new IllegalArgumentException("Lane " + lane + ": pin " + pin + " is already in use");
+                }
+            }
+            lanes.add(config);
+        }
+        return lanes;
+    }
+
+    /**
+     * Get all pins used by the lane.
+     * @return Tray, halfway, motor forward, motor reverse, motor enable and diverter pins.
+     */
+    public int[] pins() {
+        return new int[]{trayPin, halfwayPin, forwardPin, reversePin, enablePin, diverterPin};
+    }
+
+    @Override
+    public String toString() {
+        return "tray " + trayPin + ", halfway " + halfwayPin + ", motor " + forwardPin + "/" + reversePin + "/"
+                + enablePin + ", diverter " + diverterPin;
+    }
+
+    /**
+     * Helper method to read a required integer property.
+     * @param properties Configuration properties.
+     * @param key Property name.
+     * @return Property value.
+     * @throws IllegalArgumentException If the property is missing or not an integer.
+     */
+    private static int integer(Properties properties, String key) {
+        final String value = properties.getProperty(key);
+        if (value == null) throw new IllegalArgumentException("Missing " + key);
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package edu.rice.starvote.ballotbox;
+
+import edu.rice.starvote.ballotbox.util.EventLog;
+
+/**
+ * Combines the statuses of several paper feed lanes into the single status of the box. Each lane's paper feeder pushes
+ * to its own updater (`lane(int)`); the box status pushed to the box updater is chosen so that no lane hides another:
+ *
+ *  - A lane that is busy or has just decided a ballot (`SPOOLING`, `ACCEPT`, `REJECT`) is shown over lanes that are
+ *  idle. A lane returning to `WAITING` does not overwrite another lane's result; the box shows `WAITING` only once
+ *  every lane that is up is waiting.
+ *  - A lane that is `OFFLINE` is shown only if every lane is offline, so the box stays usable while any lane works.
+ *  - Among lanes of equal standing, the one that changed most recently is shown.
+ *
+ * Every lane status is pushed to the box updater when its lane is the one shown, so consecutive results of the same
+ * kind are each reported. Each lane status is also logged as a `lane.status` event with the lane number, so the
+ * history of each lane can be recovered from the event log. With one lane, every status is passed through unchanged.
+ *
+ * Lanes are numbered from 1 and start out `WAITING`. Updaters are thread safe, and box updates are pushed in order.
+ *
+ * ##### Example #####
+ * ```java
+ * LaneStatus lanes = new LaneStatus(2, container::writeStatus);
+ * lanes.lane(1).pushStatus(BallotStatus.ACCEPT);  // Box shows ACCEPT
+ * lanes.lane(2).pushStatus(BallotStatus.WAITING); // Box still shows ACCEPT
+ * lanes.lane(1).pushStatus(BallotStatus.WAITING); // Box shows WAITING
+ * ```
+ *
+ * @author luejerry
+ */
+public class LaneStatus {
+
+    private final IStatusUpdate box;
+    private final BallotStatus[] statuses;
+    private final long[] changedAt;
+    private final EventLog log = EventLog.get();
+    private long changes = 0;
+
+    /**
+     * Constructor.
+     * @param lanes Number of paper feed lanes in the box.
+     * @param box Updater receiving the status of the box.
+     */
+    public LaneStatus(int lanes, IStatusUpdate box) {
+        if (lanes < 1) throw new IllegalArgumentException("A box must have at least one lane");
+        this.box = box;
+        statuses = new BallotStatus[lanes];
+        changedAt = new long[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            statuses[lane] = BallotStatus.WAITING;
+        }
+    }
+
+    /**
+     * Returns the status updater of a lane.
+     * @param lane Lane number, from 1.
+     * @return Updater for the lane's paper feeder.
+     */
+    public IStatusUpdate lane(int lane) {
+        if (lane < 1 || lane > statuses.length) throw new IllegalArgumentException("No such lane: " + lane);
+        return status -> update(lane - 1, status);
+    }
+
+    /**
+     * Returns the current status of the box, combined from all lanes.
+     * @return Box status.
+     */
+    public synchronized BallotStatus getStatus() {
+        return statuses[shown()];
+    }
+
+    /**
+     * Helper method to record the new status of a lane and push the resulting box status, if the lane is shown or the
+     * box status changed.
+     * @param lane Lane index, from 0.
+     * @param status New status of the lane.
+     */
+    private synchronized void update(int lane, BallotStatus status) {
+        log.log("lane.status", lane + 1, status);
+        final BallotStatus before = statuses[shown()];
+        statuses[lane] = status;
+        changedAt[lane] = ++changes;
+        final int shown = shown();
+        if (shown == lane || statuses[shown] != before) {
+            box.pushStatus(statuses[shown]);
+        }
+    }
+
+    /**
+     * Helper method to choose the lane whose status is shown as the box status: the lane of highest standing (see
+     * `standing()`), and among those, the one that changed most recently.
+     * @return Lane index, from 0.
+     */
+    private int shown() {
+        int shown = 0;
+        for (int lane = 1; lane < statuses.length; lane++) {
+            final int compare = Integer.compare(standing(statuses[lane]), standing(statuses[shown]));
+            if (compare > 0 || (compare == 0 && changedAt[lane] > changedAt[shown])) {
+                shown = lane;
+            }
+        }
+        return shown;
+    }
+
+    /**
+     * Helper method to rank a lane status by how much it should be shown over the statuses of other lanes.
+     * @param status Lane status.
+     * @return 0 for `OFFLINE`, 1 for `WAITING`, and 2 for all others.
+     */
+    private static int standing(BallotStatus status) {
+        switch (status) {
+            case OFFLINE:
+                return 0;
+            case WAITING:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+}
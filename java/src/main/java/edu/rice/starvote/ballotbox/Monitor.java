@@ -1,58 +1,86 @@
 package edu.rice.starvote.ballotbox;
 
 import com.pi4j.io.gpio.PinEdge;
-import edu.rice.starvote.ballotbox.util.GPIOListener;
-
-import java.util.concurrent.TimeUnit;
+import com.pi4j.io.gpio.PinState;
+import edu.rice.starvote.ballotbox.util.Debouncer;
+import edu.rice.starvote.ballotbox.util.EventLog;
+import edu.rice.starvote.ballotbox.util.ISensor;
 
 /**
  * Main program loop that detects when paper has been inserted into the feed tray and starts the paper feeder.
  *
+ * Paper is confirmed once the tray sensor has read high for a stable window without bouncing (100 ms by default; set
+ * the `ballotbox.debounce` system property to change it). Feeding starts as soon as the paper is confirmed.
+ *
  * @author luejerry
  */
 public class Monitor {
 
-    private final GPIOListener listener;
+    /**
+     * Name of the system property giving the debounce window of the tray sensor, in milliseconds.
+     */
+    public final static String PROPERTY = "ballotbox.debounce";
+
+    private final ISensor listener;
     private final ISpooler spooler;
+    private final Debouncer debouncer;
+    private final EventLog log = EventLog.get();
+
+    /**
+     * Constructor. The debounce window is read from the `ballotbox.debounce` system property, or defaults to
+     * `Debouncer.DEFAULT_STABLE_MILLIS`.
+     * @param listener GPIO listener for the paper feed sensor. The pin should read low when paper is detected.
+     * @param spooler Instantiated paper feeder.
+     */
+    public Monitor(ISensor listener, ISpooler spooler) {
+        this(listener, spooler, Long.getLong(PROPERTY, Debouncer.DEFAULT_STABLE_MILLIS));
+    }
 
     /**
      * Constructor.
      * @param listener GPIO listener for the paper feed sensor. The pin should read low when paper is detected.
      * @param spooler Instantiated paper feeder.
+     * @param stableMillis Time the tray sensor must read high without bouncing before paper is confirmed, in
+     *                     milliseconds.
      */
-    public Monitor(GPIOListener listener, ISpooler spooler) {
+    public Monitor(ISensor listener, ISpooler spooler, long stableMillis) {
         this.listener = listener;
         this.spooler = spooler;
+        this.debouncer = new Debouncer(listener, stableMillis, Debouncer.DEFAULT_SETTLE_TIMEOUT);
     }
 
     /**
      * Detect when paper is placed into the tray and run the paper feeder. All available pages are fed and processed.
-     * **This method never returns.**
+     * Paper already in the tray when this method is called is fed immediately. **This method does not return unless
+     * the thread is interrupted.**
      */
     public void run() {
-        while (true) {
-            // Blocks until a GPIO interrupt is triggered by the paper sensor.
-            listener.waitForEvent(PinEdge.RISING);
-            System.out.print("Paper detected... ");
+        long seen = listener.generation(PinEdge.RISING);
+        boolean present = listener.getState().isHigh();
+        while (!Thread.currentThread().isInterrupted()) {
+            if (!present) {
+                // Blocks until a GPIO interrupt is triggered by the paper sensor. Edges since `seen` are not missed.
+                if (!listener.waitForEventAfter(PinEdge.RISING, seen, -1)) continue; // Interrupted
+            }
+            present = false;
+            seen = listener.generation(PinEdge.RISING);
+            log.log("monitor.paper_detected");
+            if (!debouncer.awaitStable(PinState.HIGH)) {
+                log.log("monitor.false_positive");
+                continue;
+            }
             if (spooler.getStatus() != DeviceStatus.READY) {
-                System.out.println("Device " + spooler.getStatus());
-            } else {
-                try {
-                    TimeUnit.MILLISECONDS.sleep(2000);
-                    if (listener.getState().isLow()) {
-                        System.out.println("false positive");
-                        continue;
-                    }
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-                // Process all available pages.
-                while (listener.getState().isHigh()) {
-                    System.out.println("Spooling in page");
-                    spooler.takeIn();
-                }
-                System.out.println("All pages spooled");
+                log.log("monitor.not_ready", spooler.getStatus());
+                continue;
+            }
+            // Process all available pages. Paper added after the last check raises an edge newer than `seen`.
+            while (true) {
+                seen = listener.generation(PinEdge.RISING);
+                if (listener.getState().isLow() || Thread.currentThread().isInterrupted()) break;
+                log.log("monitor.spooling");
+                spooler.takeIn();
             }
+            log.log("monitor.all_spooled");
         }
     }
 }
@@ -5,29 +5,58 @@ import com.pi4j.io.gpio.PinState;
 import edu.rice.starvote.ballotbox.drivers.IDiverter;
 import edu.rice.starvote.ballotbox.drivers.IMotor;
 import edu.rice.starvote.ballotbox.drivers.IScanner;
-import edu.rice.starvote.ballotbox.util.GPIOListener;
+import edu.rice.starvote.ballotbox.metrics.BallotMetrics;
+import edu.rice.starvote.ballotbox.util.Clock;
+import edu.rice.starvote.ballotbox.util.EventLog;
+import edu.rice.starvote.ballotbox.util.ISensor;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 /**
  * Reference implementation of ballot box paper feeder controller. The entire ballot feeding and processing sequence
  * is controlled by this module.
  *
+ * Validation of a code starts the instant it is read, while the motor is still being stopped, so that the supervisor
+ * round trip overlaps the paper movement rather than following it.
+ *
  * @author luejerry
  */
 public class PaperSpooler implements ISpooler {
 
     final static int SCANTIME = 5;
 
+    /**
+     * Maximum time to wait for a validation decision before rejecting the sheet, in milliseconds. This is the
+     * supervisor connection's own timeout, after which the validator completes the decision with `TIMEOUT` itself; it
+     * only takes effect for a validator that never completes. The wait starts after the code is sent, so it never
+     * cuts the validator's timeout short.
+     */
+    final static long VALIDATE_TIMEOUT = STARConnector.DEFAULT_TIMEOUT;
+
+    /**
+     * Time the feeder is run in reverse at full speed to reset it after a failed feed, in milliseconds.
+     */
+    final static int RESET_MILLIS = 250;
+
+    /**
+     * Longest time to wait for the motor to reach full reverse speed when resetting the feeder, in milliseconds.
+     */
+    final static int RESET_RAMP_TIMEOUT = 1000;
+
     private DeviceStatus status = DeviceStatus.READY;
     private final IStatusUpdate statusUpdater;
     private final IDiverter diverter;
     private final IMotor motor;
-    private final GPIOListener halfwaySensor;
+    private final ISensor halfwaySensor;
     private final IScanner scanner;
-    private final IValidator validator;
+    private final IAsyncValidator validator;
+    private final FeedTiming timing;
+    private final IBallotJournal journal;
+    private final EventLog log = EventLog.get();
+    private volatile long lastFeedNanos = 0;
+    private volatile long lastEjectNanos = 0;
 
     /**
      * Constructor. All dependency components must be supplied.
@@ -38,14 +67,66 @@ public class PaperSpooler implements ISpooler {
      * @param halfwaySensor Internal printer paper sensor (HP1010 specific): reads LOW when paper is halfway through
      *                      the feed path.
      * @param scanner Code scanner module.
-     * @param validator Code validator module.
+     * @param validator Code validator module. Called on a pooled thread, so that a slow validator never holds up the
+     *                  motor.
      */
     public PaperSpooler(IStatusUpdate statusUpdater,
                         IDiverter diverter,
                         IMotor motor,
-                        GPIOListener halfwaySensor,
+                        ISensor halfwaySensor,
                         IScanner scanner,
                         IValidator validator) {
+        this(statusUpdater, diverter, motor, halfwaySensor, scanner,
+                IAsyncValidator.of(validator, ForkJoinPool.commonPool()), new FeedTiming());
+    }
+
+    /**
+     * Constructor. All dependency components must be supplied.
+     *
+     * @param statusUpdater Ballot status updater module.
+     * @param diverter Ballot accept/reject diverter module.
+     * @param motor Printer motor controller module.
+     * @param halfwaySensor Internal printer paper sensor (HP1010 specific): reads LOW when paper is halfway through
+     *                      the feed path.
+     * @param scanner Code scanner module.
+     * @param validator Asynchronous code validator module. The paper feeder waits for each decision, for up to
+     *                  `VALIDATE_TIMEOUT`.
+     * @param timing Feed timing controller, which learns timeouts and delays from measured feed times.
+     */
+    public PaperSpooler(IStatusUpdate statusUpdater,
+                        IDiverter diverter,
+                        IMotor motor,
+                        ISensor halfwaySensor,
+                        IScanner scanner,
+                        IAsyncValidator validator,
+                        FeedTiming timing) {
+        this(statusUpdater, diverter, motor, halfwaySensor, scanner, validator, timing, IBallotJournal.DISABLED);
+    }
+
+    /**
+     * Constructor. All dependency components must be supplied.
+     *
+     * @param statusUpdater Ballot status updater module.
+     * @param diverter Ballot accept/reject diverter module.
+     * @param motor Printer motor controller module.
+     * @param halfwaySensor Internal printer paper sensor (HP1010 specific): reads LOW when paper is halfway through
+     *                      the feed path.
+     * @param scanner Code scanner module.
+     * @param validator Asynchronous code validator module. The paper feeder waits for each decision, for up to
+     *                  `VALIDATE_TIMEOUT`.
+     * @param timing Feed timing controller, which learns timeouts and delays from measured feed times.
+     * @param journal Journal recording each scan, validation result, diverter decision and eject.
+     */
+    public PaperSpooler(IStatusUpdate statusUpdater,
+                        IDiverter diverter,
+                        IMotor motor,
+                        ISensor halfwaySensor,
+                        IScanner scanner,
+                        IAsyncValidator validator,
+                        FeedTiming timing,
+                        IBallotJournal journal) {
+        this.timing = timing;
+        this.journal = journal;
         this.statusUpdater = statusUpdater;
         this.diverter = diverter;
         this.motor = motor;
@@ -66,7 +147,7 @@ public class PaperSpooler implements ISpooler {
                 else {
                     statusUpdater.pushStatus(BallotStatus.OFFLINE);
                     status = DeviceStatus.ERROR;
-                    System.out.println("Paper jam detected, device state set to ERROR");
+                    log.log("spooler.jam_detected");
                     return status;
                 }
             case ERROR:
@@ -74,7 +155,7 @@ public class PaperSpooler implements ISpooler {
                 if (halfwaySensor.getState() == PinState.HIGH) {
                     statusUpdater.pushStatus(BallotStatus.WAITING);
                     status = DeviceStatus.READY;
-                    System.out.println("Paper jam cleared, device now READY");
+                    log.log("spooler.jam_cleared");
                     return status;
                 } else { return status; }
             default:
@@ -108,79 +189,124 @@ public class PaperSpooler implements ISpooler {
          * ensure synchronization and ordering constraints do not allow the machine to enter an inconsistent state.
          */
 
+        final long cycleStart = Clock.nanoTime();
         statusUpdater.pushStatus(BallotStatus.SPOOLING);
         status = DeviceStatus.BUSY;
 
         try { // IOException
-            diverter.up();
+            final long fedGeneration = halfwaySensor.generation(PinEdge.FALLING);
+            final long feedStart = Clock.nanoTime();
             motor.forward(60);
 
             /* Wait for paper to enter the scanner. */
-            final boolean paperSpooled = halfwaySensor.waitForEvent(PinEdge.FALLING, 3000);
+            final boolean paperSpooled =
+                    halfwaySensor.waitForEventAfter(PinEdge.FALLING, fedGeneration, timing.feedTimeout());
             if (paperSpooled) {
-                System.out.println("Paper taken in, beginning scan");
+                final long fedAt = halfwaySensor.edgeNanos(PinEdge.FALLING, fedGeneration + 1);
+                if (fedAt >= 0) {
+                    lastFeedNanos = fedAt - feedStart;
+                    timing.recordFeed(lastFeedNanos);
+                    BallotMetrics.FEED.record(lastFeedNanos);
+                    log.log("spooler.fed_ms", TimeUnit.NANOSECONDS.toMillis(lastFeedNanos));
+                } else {
+                    log.log("spooler.fed");
+                }
                 BallotStatus scanStatus;
-                waitMillis(150); // Small delay is necessary here to ensure paper is fed
+                waitMillisAfter(fedAt, timing.feedSettle()); // Small delay is necessary here to ensure paper is fed
 
-                motor.reverse(25);
-                String code = scanner.scan(SCANTIME);
-                System.out.println("Code scanned: " + code);
+                final long scanStart = Clock.nanoTime();
+                String code = scanSheet(motor, scanner, diverter);
+                final long scannedAt = Clock.nanoTime();
+                BallotMetrics.SCAN.record(scannedAt - scanStart);
+                final long ballot = journal.scanned(code);
+                final CompletableFuture<BallotResult> decision = code.isEmpty() ? null : validator.validateAsync(code);
+                log.log("spooler.scanned", ballot, code);
                 motor.stop();
+                final BallotResult result = code.isEmpty() ? BallotResult.REJECT : decide(ballot, decision);
+                final long divertStart = Clock.nanoTime();
+                if (!code.isEmpty()) {
+                    BallotMetrics.VALIDATE.record(divertStart - scannedAt);
+                    journal.validated(ballot, result);
+                }
                 if (code.isEmpty()) {
-                    System.out.println("Ballot not scanned");
+                    log.log("spooler.unreadable");
                     diverter.up();
+                    journal.diverted(ballot, BallotResult.REJECT);
 //                    statusUpdater.pushStatus(BallotStatus.REJECT);
                     scanStatus = BallotStatus.REJECT;
-                } else if (validator.validate(code)) {
-                    System.out.println("Ballot code valid");
+                } else if (result == BallotResult.ACCEPT) {
+                    log.log("spooler.valid");
                     diverter.down();
+                    journal.diverted(ballot, BallotResult.ACCEPT);
 //                    statusUpdater.pushStatus(BallotStatus.ACCEPT);
                     scanStatus = BallotStatus.ACCEPT;
                 } else {
-                    System.out.println("Ballot code invalid");
+                    log.log("spooler.invalid");
                     diverter.up();
+                    journal.diverted(ballot, BallotResult.REJECT);
 //                    statusUpdater.pushStatus(BallotStatus.REJECT);
                     scanStatus = BallotStatus.REJECT;
                 }
 
-                waitMillis(1000); // Wait for diverter to fully actuate
+                diverter.waitUntilSettled(); // Wait for diverter to fully actuate
+                BallotMetrics.DIVERT.record(Clock.nanoTime() - divertStart);
+                final long ejectGeneration = halfwaySensor.generation(PinEdge.RISING);
+                final long ejectStart = Clock.nanoTime();
                 motor.reverse(60);
 
                 /* Wait for paper to exit the scanner. */
-                final boolean paperEjected = halfwaySensor.waitForEvent(PinEdge.RISING, 4000);
+                final boolean paperEjected =
+                        halfwaySensor.waitForEventAfter(PinEdge.RISING, ejectGeneration, timing.ejectTimeout());
                 if (paperEjected) {
-                    System.out.println("Spooler cleared");
-                    waitMillis(600); // Ensure paper is completely ejected
+                    final long clearedAt = halfwaySensor.edgeNanos(PinEdge.RISING, ejectGeneration + 1);
+                    if (clearedAt >= 0) {
+                        lastEjectNanos = clearedAt - ejectStart;
+                        timing.recordEject(lastEjectNanos);
+                        BallotMetrics.EJECT.record(lastEjectNanos);
+                        log.log("spooler.ejected_ms", TimeUnit.NANOSECONDS.toMillis(lastEjectNanos));
+                    } else {
+                        log.log("spooler.ejected");
+                    }
+                    waitMillisAfter(clearedAt, timing.ejectSettle()); // Ensure paper is completely ejected
                     motor.stop();
+                    if (scanStatus == BallotStatus.ACCEPT) {
+                        BallotMetrics.ACCEPTED.increment();
+                        journal.ejected(ballot, BallotResult.ACCEPT);
+                    } else {
+                        BallotMetrics.REJECTED.increment();
+                        journal.ejected(ballot, BallotResult.REJECT);
+                    }
                     statusUpdater.pushStatus(scanStatus);
                     status = DeviceStatus.READY;
                     statusUpdater.pushStatus(BallotStatus.WAITING);
                 } else {
                 /* Paper did not exit scanner (paper jam). */
+                    timing.recordFault();
                     if (halfwaySensor.getState().isLow()) {
                     // Paper still in feeder, abort with error
-                        System.out.println("Spooler jammed");
+                        log.log("spooler.jammed");
+                        BallotMetrics.JAMS.increment();
                         motor.stop();
                         status = DeviceStatus.ERROR;
                         statusUpdater.pushStatus(BallotStatus.OFFLINE);
                     } else {
                     // Feeder is clear, continue
-                        System.out.println("Spooler checked clear");
+                        log.log("spooler.checked_clear");
                         motor.stop();
                         status = DeviceStatus.READY;
                         statusUpdater.pushStatus(BallotStatus.WAITING);
                     }
                 }
+                BallotMetrics.CYCLE.record(Clock.nanoTime() - cycleStart);
 
             } else {
             /* Paper did not enter scanner. */
 
-                System.out.println("Paper tray empty");
+                log.log("spooler.tray_empty");
+                timing.recordFault();
+                BallotMetrics.EMPTY_FEEDS.increment();
 
-                // Reset the feeder
-                motor.reverse();
-                waitMillis(250);
-                motor.stop();
+                resetFeeder(motor);
 
                 status = DeviceStatus.READY;
                 statusUpdater.pushStatus(BallotStatus.WAITING);
@@ -193,17 +319,119 @@ public class PaperSpooler implements ISpooler {
     }
 
     /**
-     * Helper method to make sleep calls less unwieldy. InterruptedExceptions are printed to standard error.
+     * Helper method to wait for the validation decision on a code. A decision that does not arrive within
+     * `VALIDATE_TIMEOUT`, or fails, is a `TIMEOUT`. Timeouts are counted in `BallotMetrics.TIMEOUTS`.
+     * @param ballot Journal sequence number of the ballot.
+     * @param decision Pending decision on the scanned code.
+     * @return Validation result.
+     */
+    private BallotResult decide(long ballot, CompletableFuture<BallotResult> decision) {
+        BallotResult result;
+        try {
+            result = decision.get(VALIDATE_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException | CancellationException e) {
+            log.log("spooler.not_validated", ballot, e);
+            decision.cancel(true);
+            result = BallotResult.TIMEOUT;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.log("spooler.not_validated", ballot, e);
+            decision.cancel(true);
+            result = BallotResult.TIMEOUT;
+        }
+        if (result == BallotResult.TIMEOUT) BallotMetrics.TIMEOUTS.increment();
+        return result;
+    }
+
+    /**
+     * Helper method to scan the code of a sheet as it is backed out slowly past the scanner. A sheet whose code cannot
+     * be read keeps backing out and leaves the feed path before any decision is made, into whichever bin the diverter
+     * is set to. So if the code is not read on the first attempt, the sheet is held still while the diverter is moved
+     * to the reject position, and then scanning continues. A readable sheet never waits for the diverter.
+     *
+     * The scanner is reserved for the whole scan, and always released before returning. If another lane is using the
+     * scanner, the sheet is held still until it is free.
+     * @param motor Feed motor.
+     * @param scanner Code scanner.
+     * @param diverter Ballot diverter.
+     * @return Scanned code, or empty string if the code could not be read within `SCANTIME`.
+     * @throws IOException If an I/O error occurs communicating with the motor, scanner or diverter.
+     */
+    static String scanSheet(IMotor motor, IScanner scanner, IDiverter diverter) throws IOException {
+        try {
+            if (!scanner.tryReserve()) {
+                motor.stop();
+                scanner.reserve();
+            }
+            motor.reverse(25);
+            final String code = scanner.scan(1);
+            if (!code.isEmpty()) return code;
+            motor.stop();
+            diverter.up();
+            diverter.waitUntilSettled();
+            motor.reverse(25);
+            return scanner.scan(SCANTIME - 1);
+        } finally {
+            scanner.release();
+        }
+    }
+
+    /**
+     * Helper method to reset the feeder after a failed feed, by running it in reverse at full speed for
+     * `RESET_MILLIS`. The time is counted from when the motor reaches full speed, so that a motor that ramps speed
+     * changes still runs for the full time.
+     * @param motor Feed motor.
+     * @throws IOException If an I/O error occurs communicating with the motor.
+     */
+    static void resetFeeder(IMotor motor) throws IOException {
+        motor.reverse();
+        motor.awaitIdle(RESET_RAMP_TIMEOUT);
+        waitMillis(RESET_MILLIS);
+        motor.stop();
+    }
+
+    /**
+     * Helper method to make sleep calls less unwieldy. If interrupted, returns early with the thread's interrupt flag
+     * set.
      * @param delay Delay in milliseconds. Not guaranteed to block for full delay.
      */
-    private static void waitMillis(int delay) {
+    static void waitMillis(int delay) {
         try {
-            TimeUnit.MILLISECONDS.sleep(delay);
+            Clock.sleepMillis(delay);
         } catch (InterruptedException e) {
-            System.err.println(e.toString());
+            Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * Helper method to sleep until a delay has elapsed after an event, measured from the time the event was
+     * timestamped rather than the time the caller woke up. Sleeps for the full delay if the event time is unknown.
+     * @param eventNanos Time of the event from `Clock.nanoTime()`, or -1 if unknown.
+     * @param delay Delay after the event in milliseconds.
+     */
+    static void waitMillisAfter(long eventNanos, int delay) {
+        final long elapsed = (eventNanos < 0) ? 0 : TimeUnit.NANOSECONDS.toMillis(Clock.nanoTime() - eventNanos);
+        waitMillis((int) Math.max(0, delay - elapsed));
+    }
+
+    /**
+     * Get the measured feed time of the last ballot: the time from starting the motor to the paper reaching the
+     * halfway sensor.
+     * @return Feed time in nanoseconds, or 0 if no ballot has been fed.
+     */
+    public long getLastFeedNanos() {
+        return lastFeedNanos;
+    }
+
+    /**
+     * Get the measured eject time of the last ballot: the time from starting the eject to the paper clearing the
+     * halfway sensor.
+     * @return Eject time in nanoseconds, or 0 if no ballot has been ejected.
+     */
+    public long getLastEjectNanos() {
+        return lastEjectNanos;
+    }
+
     /**
      * **Not yet implemented**.
      * {@inheritDoc}
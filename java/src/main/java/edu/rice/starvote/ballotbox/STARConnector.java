@@ -1,27 +1,45 @@
 package edu.rice.starvote.ballotbox;
 
 import auditorium.NetworkException;
+import edu.rice.starvote.ballotbox.util.EventLog;
 import votebox.AuditoriumParams;
 import votebox.events.*;
 
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 /**
  * Created by luej on 9/6/16.
+ *
+ * Validation requests are matched to supervisor responses by BID, so any number of requests may be in flight at
+ * once and a late response can only ever complete the request for its own ballot. Since a response cannot tell two
+ * requests for the same BID apart, a request for a BID that is already awaiting a response is rejected at once as a
+ * duplicate: two copies of one ballot scanned at the same time must never both be accepted.
+ *
+ * The connector tracks whether any supervisor is joined to the Auditorium network and notifies connection listeners
+ * when this changes.
  */
-public class STARConnector {
+public class STARConnector implements INetworkValidator {
+
+    /**
+     * Default time to wait for a supervisor response, in milliseconds.
+     */
+    public static final long DEFAULT_TIMEOUT = 5000;
 
     private final VoteBoxAuditoriumConnector auditorium;
     private final int serial;
     private final AuditoriumParams _constants;
-    private final BlockingQueue<BallotResult> resultQueue = new LinkedBlockingQueue<>(1);
+    private final ConcurrentMap<String, CompletableFuture<BallotResult>> pending = new ConcurrentHashMap<>();
     private final ScheduledExecutorService heartbeatScheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService announcer = Executors.newSingleThreadExecutor();
     private boolean activated = false;
-    private boolean connected = false;
+    private final List<Consumer<Boolean>> connectionListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean connected = false;
+    private final EventLog log = EventLog.get();
     private int label;
     private int battery = 100;
     private int numConnections = 0;
-    private String lastBID = "";
 
     public STARConnector(int serial, String launchCode) throws NetworkException {
         _constants = new AuditoriumParams("bs.conf");
@@ -55,36 +73,26 @@ public class STARConnector {
             @Override
             public void joined(JoinEvent e) {
                 numConnections++;
-                connected = true;
+                setConnected(true);
             }
 
             @Override
             public void left(LeaveEvent e) {
                 numConnections --;
-                connected = numConnections > 0;
+                setConnected(numConnections > 0);
             }
 
             @Override
             public void ballotAccepted(BallotScanAcceptedEvent e) {
-                if (lastBID.equals(e.getBID())) {
-                    System.out.println("Ballot " + lastBID + " accepted by supervisor");
-                    try {
-                        resultQueue.put(BallotResult.ACCEPT);
-                    } catch (InterruptedException e1) {
-                        e1.printStackTrace();
-                    }
+                if (complete(e.getBID(), BallotResult.ACCEPT)) {
+                    log.log("validator.supervisor_accept", e.getBID());
                 }
             }
 
             @Override
             public void ballotRejected(BallotScanRejectedEvent e) {
-                if (lastBID.equals(e.getBID())) {
-                    System.out.println("Ballot " + lastBID + " rejected by supervisor");
-                    try {
-                        resultQueue.put(BallotResult.REJECT);
-                    } catch (InterruptedException e1) {
-                        e1.printStackTrace();
-                    }
+                if (complete(e.getBID(), BallotResult.REJECT)) {
+                    log.log("validator.supervisor_reject", e.getBID());
                 }
             }
 
@@ -139,14 +147,87 @@ public class STARConnector {
         return new BallotScannerEvent(serial, label, status, battery, -1, -1);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addConnectionListener(Consumer<Boolean> listener) {
+        connectionListeners.add(listener);
+    }
+
+    /**
+     * Request validation of a ballot from the supervisor, blocking until a response arrives or the timeout elapses.
+     * @param BID Ballot identifier.
+     * @param millis Timeout in milliseconds.
+     * @return Supervisor decision, or `TIMEOUT` if no response was received in time.
+     */
     public BallotResult validate(String BID, long millis) {
-        auditorium.announce(new BallotScannedEvent(serial, BID));
-        try {
-            BallotResult result = resultQueue.poll(millis, TimeUnit.MILLISECONDS);
-            return (result == null) ? BallotResult.TIMEOUT : result;
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-            return BallotResult.TIMEOUT;
+        return validateAsync(BID, millis).join();
+    }
+
+    /**
+     * Request validation of a ballot from the supervisor, waiting up to `DEFAULT_TIMEOUT` for a response.
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<BallotResult> validateAsync(String BID) {
+        return validateAsync(BID, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Request validation of a ballot from the supervisor. This method returns immediately. If a request for the same
+     * BID is already pending, the new request is rejected without being announced, and the pending one is unaffected.
+     * @param BID Ballot identifier.
+     * @param millis Timeout in milliseconds.
+     * @return Future completed with the supervisor decision, or `TIMEOUT` if no response was received in time.
+     */
+    @Override
+    public CompletableFuture<BallotResult> validateAsync(String BID, long millis) {
+        final CompletableFuture<BallotResult> request = new CompletableFuture<>();
+        CompletableFuture<BallotResult> inFlight;
+        while ((inFlight = pending.putIfAbsent(BID, request)) != null) {
+            if (!inFlight.isDone()) {
+                log.log("validator.duplicate_pending", BID);
+                return CompletableFuture.completedFuture(BallotResult.REJECT);
+            }
+            // Request was abandoned by its caller; replace it.
+            pending.remove(BID, inFlight);
         }
+        heartbeatScheduler.schedule(() -> {
+            if (pending.remove(BID, request)) {
+                request.complete(BallotResult.TIMEOUT);
+            }
+        }, millis, TimeUnit.MILLISECONDS);
+        announcer.execute(() -> auditorium.announce(new BallotScannedEvent(serial, BID)));
+        return request;
+    }
+
+    /**
+     * Helper method to update the connection state, notifying listeners if it changed.
+     * @param state New connection state.
+     */
+    private void setConnected(boolean state) {
+        if (connected == state) return;
+        connected = state;
+        connectionListeners.forEach(listener -> listener.accept(state));
+    }
+
+    /**
+     * Complete the pending request for a ballot with the supervisor's decision.
+     * @param BID Ballot identifier of the response.
+     * @param result Supervisor decision.
+     * @return True if a request was pending for the BID, false if the response was unsolicited or arrived late.
+     */
+    private boolean complete(String BID, BallotResult result) {
+        final CompletableFuture<BallotResult> request = pending.remove(BID);
+        return request != null && request.complete(result);
     }
 }
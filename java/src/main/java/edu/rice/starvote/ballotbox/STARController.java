@@ -1,31 +1,43 @@
 package edu.rice.starvote.ballotbox;
 
-import auditorium.NetworkException;
 import edu.rice.starvote.ballotbox.drivers.*;
+import edu.rice.starvote.ballotbox.metrics.BallotMetrics;
 import edu.rice.starvote.ballotbox.statusserver.StaticContainer;
 import edu.rice.starvote.ballotbox.statusserver.StatusContainer;
 import edu.rice.starvote.ballotbox.statusserver.StatusServer;
+import edu.rice.starvote.ballotbox.util.EventLog;
 import edu.rice.starvote.ballotbox.util.GPIOListener;
 import votebox.AuditoriumParams;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * Main entry point of program. Instantiates all components of the ballot box software and links them together.
  *
+ * The box drives one or more paper feed lanes, configured in `lanes.properties` (see `LaneConfig`; set the
+ * `ballotbox.lanes` system property to use another file). Without a configuration file, the box has a single lane
+ * wired as the reference box. Each lane has its own sensors, motor, diverter and paper feeder, run on its own thread.
+ * The lanes share the scanner, taking turns through a `ScannerArbiter`, as well as the validator, ballot journal and
+ * status server. Each lane reports its own status, and the status server shows the box status combined from all lanes
+ * (see `LaneStatus`).
+ *
  * @author luejerry
  */
 public class STARController {
 
-    private final GPIOListener listener;
-    private final GPIOListener halfwaySensor;
-    private final ISpooler spooler;
+    private final List<Monitor> monitors = new ArrayList<>();
     private final IScanner scanner;
-    private final IMotor motor;
-    private final IDiverter diverter;
+    private final ScannerArbiter scannerArbiter = new ScannerArbiter();
     private final IStatusUpdate updater;
-    private final IValidator validator;
-    private final Monitor monitor;
+    private final LaneStatus laneStatus;
+    private final IAsyncValidator asyncValidator;
+    private final IBallotJournal journal;
     private final StatusContainer statusProvider;
     private final StatusServer statusServer;
 
@@ -35,56 +47,111 @@ public class STARController {
      *
      * @param serial Unique machine identifier number. Must correspond to a valid key in `/keys`.
      * @param launchCode Election day launch code, unique to each poll location.
+     * @param lanes Pin assignments of each paper feed lane.
      */
-    public STARController(int serial, String launchCode) {
-        listener = new GPIOListener(24);
-        halfwaySensor = new GPIOListener(23);
-        motor = new PrinterMotor(22, 27, new PWMBlaster(17, 50));
-        diverter = new DiverterPWM(new PWMBlaster(18, 50));
-        scanner = new Scan();
+    public STARController(int serial, String launchCode, List<LaneConfig> lanes) {
+        scanner = new ScanEvdev();
 
-        STARConnector starConnector;
-        IValidator tempValidator;
+        BallotJournal tempJournal;
         try {
-            starConnector = new STARConnector(serial, launchCode);
-            final STARConnector star = starConnector;
-            tempValidator = code -> {
-                final BallotResult result = star.validate(code, 5000);
-                return (result == BallotResult.ACCEPT);
-            };
-            System.out.println("Connected to the Auditorium network.");
-        } catch (NetworkException e) {
-            System.err.println("ERROR: Could not connect to the Auditorium network! Running in test mode only");
+            tempJournal = BallotJournal.open(Paths.get(System.getProperty(BallotJournal.PROPERTY,
+                    BallotJournal.DEFAULT_PATH)));
+            System.out.println("Ballot journal restored: " + tempJournal.acceptedCount() + " accepted, " +
+                    tempJournal.rejectedCount() + " rejected");
+            BallotMetrics.ACCEPTED.add(tempJournal.acceptedCount());
+            BallotMetrics.REJECTED.add(tempJournal.rejectedCount());
+        } catch (IOException e) {
+            System.err.println("ERROR: Could not open the ballot journal! Ballots will not be journaled");
             e.printStackTrace();
-            tempValidator = code -> true;
+            tempJournal = null;
         }
-        validator = tempValidator;
+        journal = (tempJournal != null) ? tempJournal : IBallotJournal.DISABLED;
+
+        /* Ballots scanned while the supervisor is unreachable are accepted locally (after the format and duplicate
+         * checks of the caching validator) and reconciled with the supervisor when it returns. */
+        final Path queueFile = Paths.get(System.getProperty(StoreAndForwardValidator.PROPERTY,
+                StoreAndForwardValidator.DEFAULT_PATH));
+        final CachingValidator cachingValidator = new CachingValidator(new StoreAndForwardValidator(
+                () -> new STARConnector(serial, launchCode), code -> true, queueFile));
+        if (tempJournal != null) tempJournal.castCodes().forEach(cachingValidator::markCast);
+        asyncValidator = cachingValidator;
 
         statusProvider = StaticContainer.statusContainer;
         updater = status -> {
-            System.out.println("Ballot status sent to server: " + status.toString());
+            EventLog.get().log("status.pushed", status);
             statusProvider.writeStatus(status);
         };
-        spooler = new PaperSpooler(updater, diverter, motor, halfwaySensor, scanner, validator);
-        monitor = new Monitor(listener, spooler);
+        laneStatus = new LaneStatus(lanes.size(), updater);
+        lanes.forEach(this::addLane);
         statusServer = new StatusServer(7654, statusProvider);
     }
 
     /**
-     * Start the status server and paper listener. **This method does not return.**
+     * Start the status server and a paper listener for each lane. **This method does not return.**
      */
     public void run() {
         final Thread serverThread = new Thread(statusServer::start);
         serverThread.run();
         updater.pushStatus(BallotStatus.WAITING);
-        monitor.run();
+        final List<Thread> laneThreads = new ArrayList<>();
+        for (int lane = 0; lane < monitors.size(); lane++) {
+            final Thread laneThread = new Thread(monitors.get(lane)::run, "lane-" + (lane + 1));
+            laneThread.start();
+            laneThreads.add(laneThread);
+        }
+        for (Thread laneThread : laneThreads) {
+            try {
+                laneThread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Helper method to instantiate the hardware and paper feeder of a lane.
+     * @param config Pin assignments of the lane.
+     */
+    private void addLane(LaneConfig config) {
+        final int lane = monitors.size() + 1;
+        System.out.println("Lane " + lane + ": " + config);
+        final GPIOListener listener = new GPIOListener(config.trayPin);
+        final GPIOListener halfwaySensor = new GPIOListener(config.halfwayPin);
+        final IMotor printerMotor = new PrinterMotor(config.forwardPin, config.reversePin,
+                new PWMBlaster(config.enablePin, 50));
+        final IDiverter diverter = new DiverterPWM(new PWMBlaster(config.diverterPin, 50));
+        park(printerMotor, diverter);
+        final IMotor motor = new MotorScheduler(printerMotor, MotionProfile.DEFAULT);
+        final IScanner laneScanner = scannerArbiter.share(scanner);
+        final ISpooler spooler = new PaperSpooler(laneStatus.lane(lane), diverter, motor, halfwaySensor,
+                laneScanner, asyncValidator, new FeedTiming(), journal);
+        monitors.add(new Monitor(listener, spooler));
+    }
+
+    /**
+     * Helper method to put a lane in a known state before it starts: motor stopped and diverter in the reject
+     * position. Both are set in a single pi-blaster write.
+     * @param motor Printer motor of the lane, not yet wrapped in a `MotorScheduler`.
+     * @param diverter Diverter of the lane.
+     * @throws UncheckedIOException If an I/O error occurs communicating with pi-blaster.
+     */
+    static void park(IMotor motor, IDiverter diverter) {
+        try {
+            PWMBlaster.batch(() -> {
+                motor.stop();
+                diverter.up();
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
      * Program main entry point. Starts up the ballot box.
-     * @param args Ignored.
+     * @param args Optional machine serial number.
+     * @throws IOException If the lane configuration file cannot be read.
      */
-    public static void main (String[] args) {
+    public static void main (String[] args) throws IOException {
         final AuditoriumParams _constants = new AuditoriumParams("bs.conf");
         final int serial;
         if (args.length == 1) {
@@ -99,7 +166,9 @@ public class STARController {
         System.out.print("Enter launch code: ");
         final String launchCode = keyboard.next();
         keyboard.close();
-        final STARController controller = new STARController(serial, launchCode);
+        final List<LaneConfig> lanes = LaneConfig.load(Paths.get(System.getProperty(LaneConfig.PROPERTY,
+                LaneConfig.DEFAULT_PATH)));
+        final STARController controller = new STARController(serial, launchCode, lanes);
         controller.run();
     }
 }
@@ -0,0 +1,90 @@
+package edu.rice.starvote.ballotbox;
+
+import edu.rice.starvote.ballotbox.sim.PaperPathModel;
+import edu.rice.starvote.ballotbox.statusserver.StaticContainer;
+import edu.rice.starvote.ballotbox.statusserver.StatusContainer;
+import edu.rice.starvote.ballotbox.statusserver.StatusServer;
+import edu.rice.starvote.ballotbox.util.Clock;
+import edu.rice.starvote.ballotbox.util.EventLog;
+
+/**
+ * Main entry point of the ballot box on simulated hardware. Runs the paper feeder, monitor and status server against
+ * a simulated paper path, optionally faster than real time, on any machine. Every tenth ballot loaded is unreadable.
+ *
+ * ##### Example #####
+ * Feed 50 ballots at 10 times real time:
+ *
+ * ```
+ * ballotboxsim 10 50
+ * ```
+ *
+ * @author luejerry
+ */
+public class SimController {
+
+    /**
+     * One in this many ballots loaded is unreadable.
+     */
+    final static int UNREADABLE_INTERVAL = 10;
+
+    private final PaperPathModel model;
+    private final ISpooler spooler;
+    private final IStatusUpdate updater;
+    private final IValidator validator;
+    private final Monitor monitor;
+    private final StatusContainer statusProvider;
+    private final StatusServer statusServer;
+    private final int ballots;
+
+    /**
+     * Instantiates all modules, performing the necessary linking. Does not start the paper listener or status server.
+     * @param ballots Number of ballots to load into the tray.
+     */
+    public SimController(int ballots) {
+        this.ballots = ballots;
+        model = new PaperPathModel();
+        validator = code -> true;
+        statusProvider = StaticContainer.statusContainer;
+        updater = status -> {
+            EventLog.get().log("status.pushed", status);
+            statusProvider.writeStatus(status);
+        };
+        spooler = new PaperSpooler(updater, model.diverter(), model.motor(), model.halfwaySensor(), model.scanner(),
+                IAsyncValidator.of(validator, Runnable::run), PaperPathModel.feedTiming(), IBallotJournal.DISABLED);
+        monitor = new Monitor(model.traySensor(), spooler);
+        statusServer = new StatusServer(7654, statusProvider);
+    }
+
+    /**
+     * Start the status server and paper listener, and load the tray. **This method does not return.**
+     */
+    public void run() {
+        final Thread serverThread = new Thread(statusServer::start);
+        serverThread.run();
+        updater.pushStatus(BallotStatus.WAITING);
+        final Thread loader = new Thread(() -> {
+            try {
+                Clock.sleepMillis(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (int i = 1; i <= ballots; i++) {
+                model.load(String.format("BID-%06d", i),
+                        (i % UNREADABLE_INTERVAL == 0) ? PaperPathModel.Defect.UNREADABLE : PaperPathModel.Defect.NONE);
+            }
+        }, "sim-loader");
+        loader.setDaemon(true);
+        loader.start();
+        monitor.run();
+    }
+
+    /**
+     * Program main entry point. Starts up the simulated ballot box.
+     * @param args Optional time scale (default 1) and number of ballots to load (default 20).
+     */
+    public static void main (String[] args) {
+        Clock.setScale((args.length > 0) ? Double.parseDouble(args[0]) : 1);
+        final SimController controller = new SimController((args.length > 1) ? Integer.parseInt(args[1]) : 20);
+        controller.run();
+    }
+}
@@ -0,0 +1,349 @@
+package edu.rice.starvote.ballotbox;
+
+import edu.rice.starvote.ballotbox.metrics.BallotMetrics;
+import edu.rice.starvote.ballotbox.util.EventLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validator that keeps the box running at full speed whether or not the supervisor can be reached. While the
+ * supervisor is connected, codes are validated by it as usual, and a code it fails to answer in time is a `TIMEOUT`
+ * (so the sheet is returned). While it is not connected, codes are decided immediately by a local policy, and every
+ * code accepted that way is queued durably. When the supervisor
+ * joins again, the queue is reconciled with it in batches: each queued code is announced to the supervisor as a scan,
+ * so that it records the ballot as cast.
+ *
+ * The connection to the supervisor is made in the background and retried until it succeeds, so the box can start
+ * before the Auditorium network is up.
+ *
+ * The local policy only decides; it should be placed behind a `CachingValidator` so that offline decisions still get
+ * the format and duplicate checks. A code accepted offline that the supervisor rejects during reconciliation cannot be
+ * taken back out of the ballot box; such conflicts are logged (`validator.conflict`) and counted in
+ * `BallotMetrics.CONFLICTS` for the election officials to resolve. A code decided locally because the supervisor was
+ * lost while answering it may already have been recorded by the supervisor, which then rejects it as a duplicate during
+ * reconciliation; such a rejection is logged (`validator.resent_reject`) but not counted as a conflict.
+ *
+ * The queue file holds one line per code, `<code> <time>`, followed by ` sent` if the code was already sent to the
+ * supervisor, and is rewritten atomically as codes are reconciled. It is flushed to the storage device on a thread of
+ * its own, so that a queued code is made durable even while reconciliation waits on the supervisor.
+ *
+ * ##### Example #####
+ * ```java
+ * IAsyncValidator validator = new CachingValidator(new StoreAndForwardValidator(
+ *         () -> new STARConnector(serial, launchCode), code -> true, Paths.get("offline.queue")));
+ * ```
+ *
+ * @author luejerry
+ */
+public class StoreAndForwardValidator implements IAsyncValidator, AutoCloseable {
+
+    /**
+     * Name of the system property giving the path of the queue file.
+     */
+    public final static String PROPERTY = "ballotbox.offlinequeue";
+
+    /**
+     * Default path of the queue file, relative to the working directory.
+     */
+    public final static String DEFAULT_PATH = "offline.queue";
+
+    /**
+     * Time to wait for a connected supervisor to answer, in milliseconds.
+     */
+    public final static long ONLINE_TIMEOUT = 2000;
+
+    /**
+     * Number of queued codes announced to the supervisor at once during reconciliation.
+     */
+    final static int BATCH_SIZE = 20;
+
+    /**
+     * Time to wait for the supervisor to answer a reconciled code, in milliseconds.
+     */
+    final static long RECONCILE_TIMEOUT = 10000;
+
+    /**
+     * Interval between attempts to connect to the supervisor, and to reconcile codes left queued, in milliseconds.
+     */
+    final static long RETRY_INTERVAL = 10000;
+
+    private final Callable<? extends INetworkValidator> connector;
+    private final IValidator localPolicy;
+    private final Path queueFile;
+    private final Map<String, Long> queue = new LinkedHashMap<>();
+    private final Set<String> sent = new HashSet<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        final Thread thread = new Thread(task, "store-and-forward");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(task -> {
+        final Thread thread = new Thread(task, "store-and-forward-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final EventLog log = EventLog.get();
+    private volatile INetworkValidator remote = null;
+    private FileChannel channel;
+
+    /**
+     * Constructor. Loads codes left queued by a previous run and starts connecting to the supervisor in the
+     * background.
+     * @param connector Connects to the supervisor. Called on a background thread, and again every `RETRY_INTERVAL`
+     *                  until it succeeds.
+     * @param localPolicy Validator deciding codes while the supervisor cannot be reached. Must not block.
+     * @param queueFile Path of the queue file, or null to keep the queue in memory only. If the file cannot be read
+     *                  or opened, the error is logged and the queue is kept in memory only.
+     */
+    public StoreAndForwardValidator(Callable<? extends INetworkValidator> connector,
+                                    IValidator localPolicy,
+                                    Path queueFile) {
+        this.connector = connector;
+        this.localPolicy = localPolicy;
+        this.queueFile = queueFile;
+        if (queueFile != null) {
+            try {
+                if (Files.exists(queueFile)) {
+                    for (String line : Files.readAllLines(queueFile, StandardCharsets.US_ASCII)) {
+                        final String[] fields = line.split(" ");
+                        if (fields.length < 2 || fields.length > 3) continue; // Line torn by a crash
+                        if (fields.length == 3 && !fields[2].equals("sent")) continue;
+                        try {
+                            queue.put(fields[0], Long.parseLong(fields[1]));
+                            if (fields.length == 3) sent.add(fields[0]);
+                        } catch (NumberFormatException ignored) {
+                        }
+                    }
+                    if (!queue.isEmpty()) log.log("validator.queue_restored", queue.size());
+                }
+                channel = FileChannel.open(queueFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.log("validator.queue_failed", e);
+            }
+        }
+        scheduler.execute(this::connect);
+        scheduler.scheduleWithFixedDelay(this::reconcile, RETRY_INTERVAL, RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Resolves immediately if the supervisor is not connected, and within `ONLINE_TIMEOUT` otherwise. A connected
+     * supervisor that does not answer in time gives `TIMEOUT`; the code is decided locally only if the supervisor was
+     * lost while waiting for it.
+     */
+    @Override
+    public CompletableFuture<BallotResult> validateAsync(String code) {
+        final INetworkValidator current = remote;
+        if (current == null || !current.isConnected()) {
+            return CompletableFuture.completedFuture(decideLocally(code, false));
+        }
+        return current.validateAsync(code, ONLINE_TIMEOUT)
+                .thenApply(result -> (result == BallotResult.TIMEOUT && !current.isConnected())
+                        ? decideLocally(code, true) : result);
+    }
+
+    /**
+     * Check whether the supervisor is currently connected.
+     * @return True if codes are being validated by the supervisor.
+     */
+    public boolean isOnline() {
+        final INetworkValidator current = remote;
+        return current != null && current.isConnected();
+    }
+
+    /**
+     * Get the number of codes accepted offline and not yet reconciled with the supervisor.
+     * @return Queue length.
+     */
+    public int pending() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Stop connecting and reconciling, and close the queue file. Codes still queued are reconciled on the next run.
+     * @throws IOException If the queue file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        flusher.shutdownNow();
+        synchronized (queue) {
+            if (channel != null) channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Helper method to decide a code by the local policy, queueing it if accepted.
+     * @param code Scanned code.
+     * @param sentOnline True if the code was sent to the supervisor, which may have recorded it before it was lost.
+     * @return Local decision.
+     */
+    private BallotResult decideLocally(String code, boolean sentOnline) {
+        BallotMetrics.OFFLINE.increment();
+        if (!localPolicy.validate(code)) {
+            log.log("validator.offline_reject", code);
+            return BallotResult.REJECT;
+        }
+        final long time = System.currentTimeMillis();
+        synchronized (queue) {
+            if (queue.putIfAbsent(code, time) == null) {
+                if (sentOnline) sent.add(code);
+                if (channel != null) {
+                    try {
+                        final ByteBuffer line = ByteBuffer.wrap((code + " " + time + (sentOnline ? " sent\n" : "\n"))
+                                .getBytes(StandardCharsets.US_ASCII));
+                        while (line.hasRemaining()) {
+                            channel.write(line);
+                        }
+                    } catch (IOException e) {
+                        log.log("validator.queue_failed", e);
+                    }
+                }
+            }
+        }
+        if (!flusher.isShutdown()) flusher.execute(this::forceQueue);
+        log.log("validator.offline_accept", code);
+        return BallotResult.ACCEPT;
+    }
+
+    /**
+     * Helper method to connect to the supervisor, retrying later on failure. Runs on the scheduler thread.
+     */
+    private void connect() {
+        final INetworkValidator connected;
+        try {
+            connected = connector.call();
+        } catch (Exception e) {
+            log.log("validator.connect_failed", e);
+            scheduler.schedule(this::connect, RETRY_INTERVAL, TimeUnit.MILLISECONDS);
+            return;
+        }
+        connected.addConnectionListener(state -> {
+            log.log(state ? "validator.online" : "validator.offline");
+            if (state) scheduler.execute(this::reconcile);
+        });
+        remote = connected;
+        log.log("validator.connected");
+        reconcile();
+    }
+
+    /**
+     * Helper method to announce queued codes to the supervisor in batches, removing those it has answered, until the
+     * queue is empty or the supervisor stops answering. Runs on the scheduler thread.
+     */
+    private void reconcile() {
+        while (true) {
+            final INetworkValidator current = remote;
+            if (current == null || !current.isConnected()) return;
+            final List<String> batch = new ArrayList<>(BATCH_SIZE);
+            synchronized (queue) {
+                for (String code : queue.keySet()) {
+                    if (batch.size() == BATCH_SIZE) break;
+                    batch.add(code);
+                }
+            }
+            if (batch.isEmpty()) return;
+
+            final List<CompletableFuture<BallotResult>> answers = new ArrayList<>(batch.size());
+            batch.forEach(code -> answers.add(current.validateAsync(code, RECONCILE_TIMEOUT)));
+            CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0])).join();
+
+            final List<String> answered = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                final BallotResult result = answers.get(i).join();
+                if (result == BallotResult.TIMEOUT) continue;
+                if (result == BallotResult.REJECT) {
+                    final boolean resent;
+                    synchronized (queue) {
+                        resent = sent.contains(batch.get(i));
+                    }
+                    if (resent) {
+                        log.log("validator.resent_reject", batch.get(i));
+                    } else {
+                        BallotMetrics.CONFLICTS.increment();
+                        log.log("validator.conflict", batch.get(i));
+                    }
+                }
+                answered.add(batch.get(i));
+            }
+            synchronized (queue) {
+                answered.forEach(queue::remove);
+                answered.forEach(sent::remove);
+                try {
+                    rewriteQueue();
+                } catch (IOException e) {
+                    log.log("validator.queue_failed", e);
+                }
+            }
+            log.log("validator.reconciled", answered.size());
+            if (answered.size() < batch.size()) return; // Supervisor stopped answering; retry later
+        }
+    }
+
+    /**
+     * Helper method to flush the queue file to the storage device. Runs on the flusher thread, so that queueing a code
+     * never waits on the device, and a flush never waits on reconciliation.
+     */
+    private void forceQueue() {
+        synchronized (queue) {
+            if (channel == null) return;
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                log.log("validator.queue_failed", e);
+            }
+        }
+    }
+
+    /**
+     * Helper method to replace the queue file with the current queue. Must be called holding the queue lock.
+     * @throws IOException If the queue file cannot be written.
+     */
+    private void rewriteQueue() throws IOException {
+        if (channel == null) return;
+        final Path temp = queueFile.resolveSibling(queueFile.getFileName() + ".tmp");
+        final StringBuilder contents = new StringBuilder(32 * queue.size());
+        queue.forEach((code, time) -> {
+            contents.append(code).append(' ').append(time);
+            if (sent.contains(code)) contents.append(" sent");
+            contents.append('\n');
+        });
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer bytes = ByteBuffer.wrap(contents.toString().getBytes(StandardCharsets.US_ASCII));
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(true);
+        }
+        Files.move(temp, queueFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        final FileChannel previous = channel;
+        channel = FileChannel.open(queueFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        previous.close();
+    }
+}
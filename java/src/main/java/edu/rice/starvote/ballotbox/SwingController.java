@@ -9,6 +9,8 @@ import edu.rice.starvote.ballotbox.swingui.SwingDisplay;
 import edu.rice.starvote.ballotbox.swingui.VoiceController;
 import edu.rice.starvote.ballotbox.util.GPIOListener;
 
+import java.util.concurrent.Executors;
+
 /**
  * Main entry point of program. Instantiates all components of the ballot box software and links them together.
  *
@@ -26,6 +28,7 @@ public class SwingController {
     private final IValidator validator;
     private final Monitor monitor;
     private final DisplayController display;
+    private final StatusContainer statusProvider;
 
     /**
      * Instantiates all modules, performing the necessary linking. Does not start the paper listener or status server.
@@ -33,16 +36,23 @@ public class SwingController {
     public SwingController() {
         listener = new GPIOListener(24);
         halfwaySensor = new GPIOListener(23);
-        motor = new PrinterMotor(22, 27, new PWMBlaster(17, 50));
+        final IMotor printerMotor = new PrinterMotor(22, 27, new PWMBlaster(17, 50));
         diverter = new DiverterPWM(new PWMBlaster(18, 50));
-        scanner = new Scan();
+        STARController.park(printerMotor, diverter);
+        motor = new MotorScheduler(printerMotor, MotionProfile.DEFAULT);
+        scanner = new ScanEvdev();
         validator = code -> true;
         display = new DisplayController(new SwingDisplay());
         final IStatusUpdate voiceController = new VoiceController();
-        updater = status -> {
-            display.pushStatus(status);
-            voiceController.pushStatus(status);
-        };
+        statusProvider = new StatusContainer();
+        statusProvider.addListener(display::pushStatus);
+        // Sound playback blocks until finished, so it gets its own thread
+        statusProvider.addListener(voiceController::pushStatus, Executors.newSingleThreadExecutor(task -> {
+            final Thread thread = new Thread(task, "voice");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        updater = statusProvider::writeStatus;
         spooler = new PaperSpooler(updater, diverter, motor, halfwaySensor, scanner, validator);
         monitor = new Monitor(listener, spooler);
     }
@@ -1,10 +1,18 @@
 package edu.rice.starvote.ballotbox.drivers;
 
+import edu.rice.starvote.ballotbox.util.Clock;
+
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Diverter servo control using a generic IPWMDriver. The up and down positions are calibrated to a HB-6001HD servo.
  *
+ * The diverter tracks the position it was last commanded to. Commanding the position it is already in does nothing,
+ * and `waitUntilSettled()` waits only for the time the last move needs according to the servo's calibration profile,
+ * measured from when the move was commanded. Since most ballots are diverted the same way as the one before, most
+ * cycles do not wait at all.
+ *
  * ##### Example #####
  * Using the pi-blaster based PWM driver (recommended):
  *
@@ -12,12 +20,24 @@ import java.io.IOException;
  * IPWMDriver pwm = new PWMBlaster(PIN_NUMBER, 50);
  * IDiverter diverter = new DiverterPWM(pwm);
  * diverter.up();
+ * diverter.waitUntilSettled();
  * ```
  *
  * @author luejerry
  */
 public class DiverterPWM implements IDiverter {
 
+    /**
+     * Position of the diverter.
+     */
+    public enum Position {
+        UP, DOWN,
+        /**
+         * Not yet commanded, or the last command failed.
+         */
+        UNKNOWN
+    }
+
     /**
      * Duty cycle in the up (reject) position, in %.
      */
@@ -28,23 +48,90 @@ public class DiverterPWM implements IDiverter {
     final double DC_DOWN = 11.0;
 
     private final IPWMDriver pwm;
+    private final ServoProfile profile;
+    private Position position = Position.UNKNOWN;
+    private long settledAt = 0;
 
     /**
-     * Constructor. Does not change the servo state.
+     * Constructor. Does not change the servo state. Uses the HB-6001HD calibration profile.
      * @param pwm PWM driver to use (e.g. `PWMBlaster`).
      * @see PWMBlaster
      */
     public DiverterPWM(IPWMDriver pwm) {
+        this(pwm, ServoProfile.HB6001HD);
+    }
+
+    /**
+     * Constructor. Does not change the servo state.
+     * @param pwm PWM driver to use (e.g. `PWMBlaster`).
+     * @param profile Calibration profile of the servo.
+     */
+    public DiverterPWM(IPWMDriver pwm, ServoProfile profile) {
         this.pwm = pwm;
+        this.profile = profile;
     }
 
     @Override
     public void up() throws IOException {
-        pwm.setDutyCycle(DC_UP);
+        moveTo(Position.UP, DC_UP);
     }
 
     @Override
     public void down() throws IOException {
-        pwm.setDutyCycle(DC_DOWN);
+        moveTo(Position.DOWN, DC_DOWN);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Returns immediately if the last move has already had time to complete.
+     */
+    @Override
+    public void waitUntilSettled() {
+        final long remaining;
+        synchronized (this) {
+            remaining = settledAt - Clock.nanoTime();
+        }
+        if (remaining <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(Clock.toRealNanos(remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the position the diverter was last commanded to. The servo may still be moving; see `waitUntilSettled()`.
+     * @return Diverter position.
+     */
+    public synchronized Position getPosition() {
+        return position;
+    }
+
+    /**
+     * Helper method to command the servo to a position, unless it is already there, and compute when it will have
+     * come to rest.
+     * @param target Position to move to.
+     * @param dutyCycle Duty cycle of the position, in %.
+     * @throws IOException If an error occurs when communicating with the PWM driver.
+     */
+    private synchronized void moveTo(Position target, double dutyCycle) throws IOException {
+        if (position == target) return;
+        final long now = Clock.nanoTime();
+        final double travel;
+        if (position == Position.UNKNOWN || now < settledAt) {
+            /* Position unknown or reversed mid-swing: assume the servo is at the far position. */
+            travel = Math.abs(DC_DOWN - DC_UP);
+        } else {
+            travel = Math.abs(dutyCycle - ((position == Position.UP) ? DC_UP : DC_DOWN));
+        }
+        try {
+            pwm.setDutyCycle(dutyCycle);
+        } catch (IOException e) {
+            position = Position.UNKNOWN;
+            throw e;
+        }
+        position = target;
+        settledAt = now + TimeUnit.MILLISECONDS.toNanos(profile.settleMillis(travel));
     }
 }
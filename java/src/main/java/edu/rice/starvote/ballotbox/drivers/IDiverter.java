@@ -1,6 +1,7 @@
 package edu.rice.starvote.ballotbox.drivers;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Interface for a controller module that diverts a ballot to one of two paths. On reference hardware, diverting up
@@ -21,4 +22,17 @@ public interface IDiverter {
      * @throws IOException If an error occurs when communicating to the device driver.
      */
     void down() throws IOException;
+
+    /**
+     * Block until the diverter has come to rest in the last commanded position. The default implementation
+     * conservatively waits one second, the time a full swing takes on reference hardware. If interrupted, returns early
+     * with the thread's interrupt flag set.
+     */
+    default void waitUntilSettled() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -56,4 +56,15 @@ public interface IMotor {
      */
     void reverse(double speed) throws IOException;
 
+    /**
+     * Block until the motor has reached the most recently commanded speed. The default implementation returns
+     * immediately, for motors that change speed as soon as they are commanded.
+     * @param timeout Time to wait in milliseconds.
+     * @return True if the motor reached the commanded speed, false if the timeout expired or the thread was
+     * interrupted.
+     */
+    default boolean awaitIdle(long timeout) {
+        return true;
+    }
+
 }
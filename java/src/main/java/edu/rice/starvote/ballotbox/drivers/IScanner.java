@@ -17,4 +17,29 @@ public interface IScanner {
      * @throws IOException If an error occurs when communicating with the device driver.
      */
     String scan(int timeout) throws IOException;
+
+    /**
+     * Try to reserve the scanner for this thread, for a scanner shared between several paper feed lanes. Does not
+     * block. A scanner that is not shared is always available. A reservation lasts until `release()`, across any
+     * number of calls to `scan()`, and must always be released, e.g. in a `finally` block.
+     *
+     * @return True if the scanner is reserved for this thread, false if another lane is using it.
+     */
+    default boolean tryReserve() {
+        return true;
+    }
+
+    /**
+     * Block until the scanner is reserved for this thread, for a scanner shared between several paper feed lanes. A
+     * scanner that is not shared is always available. A reservation lasts until `release()`.
+     */
+    default void reserve() {
+    }
+
+    /**
+     * Release this thread's reservation of the scanner, letting other lanes use it. Does nothing if the scanner is not
+     * reserved by this thread.
+     */
+    default void release() {
+    }
 }
@@ -0,0 +1,108 @@
+package edu.rice.starvote.ballotbox.drivers;
+
+/**
+ * Declarative acceleration profile for a variable speed motor, executed by `MotorScheduler`. A profile describes how
+ * fast the motor may change speed, the shape of each speed ramp, and how long the motor must rest at zero speed before
+ * changing direction.
+ *
+ * Ramp durations are given for a change of full speed (100%) and are scaled by the size of the change: with an
+ * acceleration time of 200 ms, ramping from 0 to 60% takes 120 ms.
+ *
+ * ##### Example #####
+ * ```java
+ * MotionProfile gentle = new MotionProfile(300, 200, 50, MotionProfile.Curve.S_CURVE, 10);
+ * IMotor motor = new MotorScheduler(new PrinterMotor(22, 27, new PWMBlaster(17, 50)), gentle);
+ * ```
+ *
+ * @author luejerry
+ */
+public class MotionProfile {
+
+    /**
+     * Shape of a speed ramp.
+     */
+    public enum Curve {
+        /**
+         * Constant acceleration.
+         */
+        LINEAR {
+            @Override
+            double apply(double fraction) {
+                return fraction;
+            }
+        },
+        /**
+         * Acceleration eases in and out (smoothstep), limiting jerk at the start and end of the ramp.
+         */
+        S_CURVE {
+            @Override
+            double apply(double fraction) {
+                return fraction * fraction * (3 - 2 * fraction);
+            }
+        };
+
+        /**
+         * Map elapsed ramp time to ramp progress.
+         * @param fraction Fraction of the ramp duration elapsed, in range [0.0, 1.0].
+         * @return Fraction of the speed change completed, in range [0.0, 1.0].
+         */
+        abstract double apply(double fraction);
+    }
+
+    /**
+     * Profile tuned to the HP 1010 feed motor: short S-curve ramps and a brief rest before reversing, which prevents
+     * the paper slipping on hard reversals while adding little time to a feed cycle.
+     */
+    public static final MotionProfile DEFAULT = new MotionProfile(150, 100, 40, Curve.S_CURVE, 10);
+
+    /**
+     * Profile with no ramps or rest, equivalent to driving the motor directly.
+     */
+    public static final MotionProfile IMMEDIATE = new MotionProfile(0, 0, 0, Curve.LINEAR, 10);
+
+    public final long accelMillis;
+    public final long decelMillis;
+    public final long reversalDwellMillis;
+    public final Curve curve;
+    public final long stepMillis;
+
+    /**
+     * Constructor.
+     * @param accelMillis Time to accelerate from stopped to full speed, in milliseconds.
+     * @param decelMillis Time to decelerate from full speed to stopped, in milliseconds.
+     * @param reversalDwellMillis Time to rest at zero speed before changing direction, in milliseconds.
+     * @param curve Shape of speed ramps.
+     * @param stepMillis Interval between speed updates during a ramp, in milliseconds. Should be no shorter than the
+     *                   PWM period.
+     */
+    public MotionProfile(long accelMillis, long decelMillis, long reversalDwellMillis, Curve curve, long stepMillis) {
+        this.accelMillis = accelMillis;
+        this.decelMillis = decelMillis;
+        this.reversalDwellMillis = reversalDwellMillis;
+        this.curve = curve;
+        this.stepMillis = stepMillis;
+    }
+
+    /**
+     * Get the duration of a ramp between two speeds in the same direction (or to or from zero).
+     * @param from Starting speed magnitude, in range [0.0, 100.0].
+     * @param to Ending speed magnitude, in range [0.0, 100.0].
+     * @return Ramp duration in milliseconds.
+     */
+    public long rampMillis(double from, double to) {
+        final long fullScale = (to > from) ? accelMillis : decelMillis;
+        return (long) Math.ceil(Math.abs(to - from) / 100.0 * fullScale);
+    }
+
+    /**
+     * Get the speed partway through a ramp.
+     * @param from Starting speed.
+     * @param to Ending speed.
+     * @param fraction Fraction of the ramp duration elapsed. Values outside [0.0, 1.0] are clamped.
+     * @return Speed at that point of the ramp.
+     */
+    public double interpolate(double from, double to, double fraction) {
+        final double clamped = Math.max(0.0, Math.min(1.0, fraction));
+        return from + (to - from) * curve.apply(clamped);
+    }
+}
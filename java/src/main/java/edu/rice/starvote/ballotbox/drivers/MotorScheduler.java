@@ -0,0 +1,291 @@
+package edu.rice.starvote.ballotbox.drivers;
+
+import edu.rice.starvote.ballotbox.util.Clock;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Motor controller that executes speed changes as ramps according to a `MotionProfile`, on a dedicated scheduler
+ * thread. Wraps another `IMotor`, which is only ever driven from the scheduler thread.
+ *
+ * Commands other than `stop()` do not block: each command sets the target speed and returns immediately, and the
+ * scheduler ramps the motor from its current speed toward the most recent target. A command issued while a ramp is in
+ * progress replaces the target, and the ramp is replanned from the speed reached so far. A change of direction always
+ * decelerates to a stop and rests for the profile's reversal dwell before accelerating the other way.
+ *
+ * Since these commands return before they are carried out, an I/O error from the underlying motor cannot be thrown by
+ * the command that caused it. Instead it is thrown by the next command, and the motor is left at the last speed that
+ * was successfully applied. `stop()` is different: a motor left running must never go unnoticed, so it waits until the
+ * motor has ramped down to a stop and throws any error at once, including one left by an earlier command.
+ *
+ * Ramp, rest and wait times are in `Clock` time, so the scheduler keeps pace with a scaled clock when driving simulated
+ * hardware.
+ *
+ * ##### Example #####
+ * ```java
+ * IMotor motor = new MotorScheduler(new PrinterMotor(22, 27, new PWMBlaster(17, 50)), MotionProfile.DEFAULT);
+ * motor.forward(60);  // returns immediately, motor ramps up to 60%
+ * motor.reverse(25);  // motor ramps down, rests, then ramps up in reverse
+ * ```
+ *
+ * @author luejerry
+ */
+public class MotorScheduler implements IMotor, AutoCloseable {
+
+    private final IMotor motor;
+    private final MotionProfile profile;
+    private final Thread thread;
+    private final Object lock = new Object();
+
+    /* Speeds are signed: positive is forward, negative is reverse. Guarded by lock. */
+    private double target = 0;
+    private double current = 0;
+    private long command = 0;
+    private long reached = 0;
+    private IOException failure = null;
+    private boolean running = true;
+
+    /**
+     * Constructor. Starts the scheduler thread. Does not change the motor state.
+     * @param motor Motor to drive.
+     * @param profile Motion profile to execute speed changes with.
+     */
+    public MotorScheduler(IMotor motor, MotionProfile profile) {
+        this.motor = motor;
+        this.profile = profile;
+        thread = new Thread(this::schedule, "motor-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the motor, blocking until it has ramped down to a stop or a new command is issued. The stop is carried out
+     * even if an earlier command failed.
+     * @throws IOException If the underlying motor failed while stopping, or while executing the previous command.
+     */
+    @Override
+    public void stop() throws IOException {
+        synchronized (lock) {
+            final IOException previous = failure;
+            failure = null;
+            target = 0;
+            final long issued = ++command;
+            lock.notifyAll();
+            try {
+                while (running && failure == null && command == issued && reached != issued) lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null && command == issued) {
+                final IOException e = failure;
+                failure = null;
+                if (previous != null) e.addSuppressed(previous);
+                throw e;
+            }
+            if (previous != null) throw previous;
+        }
+    }
+
+    @Override
+    public void forward() throws IOException {
+        command(100);
+    }
+
+    @Override
+    public void forwardSlow() throws IOException {
+        command(25);
+    }
+
+    @Override
+    public void forward(double speed) throws IOException {
+        command(speed);
+    }
+
+    @Override
+    public void reverse() throws IOException {
+        command(-100);
+    }
+
+    @Override
+    public void reverseSlow() throws IOException {
+        command(-25);
+    }
+
+    @Override
+    public void reverse(double speed) throws IOException {
+        command(-speed);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Also returns false if the underlying motor failed while executing the command; the error is thrown by the next
+     * command.
+     */
+    @Override
+    public boolean awaitIdle(long timeout) {
+        final long deadline = Clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        synchronized (lock) {
+            try {
+                while (reached != command && failure == null) {
+                    final long remaining = deadline - Clock.nanoTime();
+                    if (remaining <= 0) return false;
+                    waitFor(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return reached == command;
+        }
+    }
+
+    /**
+     * Get the speed most recently applied to the motor.
+     * @return Signed speed in range [-100.0, 100.0]; positive is forward.
+     */
+    public double getSpeed() {
+        synchronized (lock) {
+            return current;
+        }
+    }
+
+    /**
+     * Stop the scheduler thread. The motor is left at its current speed; stop it first if necessary.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Helper method to set a new target speed, first throwing any error left by the previous command.
+     * @param speed Signed target speed.
+     * @throws IOException If the underlying motor failed while executing the previous command.
+     */
+    private void command(double speed) throws IOException {
+        synchronized (lock) {
+            if (failure != null) {
+                final IOException e = failure;
+                failure = null;
+                throw e;
+            }
+            target = Math.max(-100, Math.min(100, speed));
+            command++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Scheduler thread body. Waits for the target speed to change and ramps the motor toward it.
+     */
+    private void schedule() {
+        while (true) {
+            final double goal;
+            final double start;
+            final long issued;
+            synchronized (lock) {
+                try {
+                    while (running && (reached == command || failure != null)) lock.wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!running) return;
+                goal = target;
+                start = current;
+                issued = command;
+            }
+            /* Reversal: stop and rest before accelerating the other way. */
+            final boolean reversing = start != 0 && Math.signum(goal) != Math.signum(start) && goal != 0;
+            try {
+                if (!ramp(start, reversing ? 0 : goal, issued)) continue;
+                if (reversing && !(pause(profile.reversalDwellMillis, issued) && ramp(0, goal, issued))) continue;
+                synchronized (lock) {
+                    reached = issued;
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method to ramp the motor between two speeds in the same direction (or to or from zero).
+     * @param from Signed starting speed.
+     * @param to Signed ending speed.
+     * @param issued Command number the ramp was planned for.
+     * @return True if the ramp completed, false if it was superseded by a new command.
+     * @throws IOException If an error occurs when communicating with the motor.
+     */
+    private boolean ramp(double from, double to, long issued) throws IOException {
+        final long duration = TimeUnit.MILLISECONDS.toNanos(profile.rampMillis(Math.abs(from), Math.abs(to)));
+        final long begin = Clock.nanoTime();
+        while (true) {
+            final long elapsed = Clock.nanoTime() - begin;
+            if (elapsed >= duration) break;
+            apply(profile.interpolate(from, to, (double) elapsed / duration));
+            if (!pause(profile.stepMillis, issued)) return false;
+        }
+        apply(to);
+        return true;
+    }
+
+    /**
+     * Helper method to wait between ramp steps, waking early if a new command is issued.
+     * @param millis Time to wait in milliseconds.
+     * @param issued Command number being executed.
+     * @return True if the wait completed, false if a new command was issued or the scheduler was closed.
+     */
+    private boolean pause(long millis, long issued) {
+        final long deadline = Clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        synchronized (lock) {
+            try {
+                while (running && command == issued) {
+                    final long remaining = deadline - Clock.nanoTime();
+                    if (remaining <= 0) return true;
+                    waitFor(remaining);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Helper method to wait on the lock for up to a duration of clock time. Must be called holding the lock.
+     * @param nanos Duration in nanoseconds of clock time. Must be positive.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    private void waitFor(long nanos) throws InterruptedException {
+        final long real = Math.max(1, Clock.toRealNanos(nanos));
+        lock.wait(real / 1000000, (int) (real % 1000000));
+    }
+
+    /**
+     * Helper method to drive the underlying motor at a signed speed.
+     * @param speed Signed speed; positive is forward.
+     * @throws IOException If an error occurs when communicating with the motor.
+     */
+    private void apply(double speed) throws IOException {
+        if (speed > 0) {
+            motor.forward(speed);
+        } else if (speed < 0) {
+            motor.reverse(-speed);
+        } else {
+            motor.stop();
+        }
+        synchronized (lock) {
+            current = speed;
+            lock.notifyAll();
+        }
+    }
+}
@@ -1,31 +1,224 @@
 package edu.rice.starvote.ballotbox.drivers;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implementation of PWM controller using [pi-blaster](https://github.com/sarfata/pi-blaster). Pi-blaster uses a more
  * efficient hardware-based PWM timing mechanism than the Python RPi.GPIO library. *Note that PWM frequency cannot be
  * changed in this implementation due to a limitation with pi-blaster.*
  *
+ * All instances share a single handle to the pi-blaster device, which is opened on first use and kept open. Commands
+ * are coalesced: updates issued concurrently from several threads, or inside a `batch()`, are sent to pi-blaster in a
+ * single write (e.g. `17=0.6 18=0.056`). Every command is sent, even one repeating the value last written to its pin,
+ * since pi-blaster may have been restarted or the pin written by another process in the meantime.
+ *
+ * A batch is atomic: its commands are held by the calling thread until the batch completes, so a write made by another
+ * thread in the meantime never sends part of it. If the batch fails, none of its commands are sent.
+ *
+ * ##### Example #####
+ * Moving the motor and diverter in one write:
+ *
+ * ```java
+ * PWMBlaster.batch(() -> {
+ *     motor.setDutyCycle(60);
+ *     diverter.setDutyCycle(5.6);
+ * });
+ * ```
+ *
  * @author luejerry
  */
 public class PWMBlaster implements IPWMDriver {
 
-    private static Path pwmpath = Paths.get("/dev/pi-blaster");
+    /**
+     * Name of the system property giving the path of the pi-blaster device, e.g. to write commands to a file or
+     * `/dev/null` when benchmarking without a Raspberry Pi.
+     */
+    public final static String PROPERTY = "ballotbox.piblaster";
+
+    private static Path pwmpath = Paths.get(System.getProperty(PROPERTY, "/dev/pi-blaster"));
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /* Pending commands by pin, in order of issue. Guarded by itself. */
+    private static final Map<Integer, String> pending = new LinkedHashMap<>();
+    /* Device handle. Guarded by writeLock. */
+    private static final Object writeLock = new Object();
+    private static FileChannel channel;
+
+    /* Commands of the innermost batch in progress on each thread, or null outside a batch. */
+    private static final ThreadLocal<Map<Integer, String>> batched = new ThreadLocal<>();
+
+    private static final AtomicLong writeCount = new AtomicLong();
+    private static final AtomicLong commandCount = new AtomicLong();
+    private static final AtomicLong writeNanos = new AtomicLong();
+    private static volatile long lastWriteNanos = 0;
 
     private int pin;
 
     /**
-     * Helper method to send commands to pi-blaster.
-     * @param data Command string to write to pi-blaster.
+     * A group of PWM updates to be sent as one command.
+     */
+    @FunctionalInterface
+    public interface Batch {
+        void run() throws IOException;
+    }
+
+    /**
+     * Helper method to queue a command for pi-blaster and send all pending commands. Inside a batch, the command is
+     * held until the batch completes.
+     * @param pin PWM output pin.
+     * @param value Duty cycle command value, in range [0.0, 1.0].
+     * @throws IOException If an I/O error occurs writing to the driver.
+     */
+    private static void writePWM(int pin, String value) throws IOException {
+        final Map<Integer, String> batch = batched.get();
+        if (batch != null) {
+            queue(batch, pin, value);
+            return;
+        }
+        synchronized (pending) {
+            queue(pending, pin, value);
+        }
+        flush();
+    }
+
+    /**
+     * Helper method to add a command to a queue, replacing any earlier command for the same pin.
+     * @param queue Commands by pin, in order of issue.
+     * @param pin PWM output pin.
+     * @param value Duty cycle command value.
+     */
+    private static void queue(Map<Integer, String> queue, int pin, String value) {
+        queue.remove(pin); // keep issue order of the latest command
+        queue.put(pin, value);
+    }
+
+    /**
+     * Send all pending commands to pi-blaster in a single write. Commands queued by other threads while a write is in
+     * progress are sent together by the next write. If the write fails, its commands are returned to the pending
+     * queue, so that a command queued by another thread is retried by that thread's own flush rather than lost.
      * @throws IOException If an I/O error occurs writing to the driver.
      */
-    private static void writePWM(String data) throws IOException {
-        Files.write(pwmpath, (data + "\n").getBytes(Charset.forName("UTF-8")));
+    private static void flush() throws IOException {
+        synchronized (writeLock) {
+            final StringBuilder data = new StringBuilder();
+            final Map<Integer, String> drained;
+            synchronized (pending) {
+                drained = new LinkedHashMap<>(pending);
+                pending.clear();
+            }
+            final int commands = drained.size();
+            for (Map.Entry<Integer, String> command : drained.entrySet()) {
+                if (data.length() > 0) data.append(' ');
+                data.append(command.getKey()).append('=').append(command.getValue());
+            }
+            if (commands == 0) return;
+            data.append('\n');
+
+            final long start = System.nanoTime();
+            try {
+                if (channel == null) {
+                    channel = FileChannel.open(pwmpath, StandardOpenOption.WRITE);
+                }
+                final ByteBuffer buffer = ASCII.encode(data.toString());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                // Reopen the device on the next write.
+                if (channel != null) {
+                    try { channel.close(); } catch (IOException ignored) {}
+                    channel = null;
+                }
+                requeue(drained);
+                throw e;
+            }
+            lastWriteNanos = System.nanoTime() - start;
+            writeNanos.addAndGet(lastWriteNanos);
+            writeCount.incrementAndGet();
+            commandCount.addAndGet(commands);
+        }
+    }
+
+    /**
+     * Helper method to return the commands of a failed write to the pending queue. A command queued for the same pin
+     * since the write began is newer, and is kept in place of the returned one.
+     * @param drained Commands of the failed write, in order of issue.
+     */
+    private static void requeue(Map<Integer, String> drained) {
+        synchronized (pending) {
+            final Map<Integer, String> newer = new LinkedHashMap<>(pending);
+            pending.clear();
+            pending.putAll(drained);
+            newer.forEach((pin, value) -> queue(pending, pin, value));
+        }
+    }
+
+    /**
+     * Run a group of PWM updates, sending all of them to pi-blaster in a single write when the group completes. Batches
+     * may be nested; commands are sent when the outermost batch completes. If the updates throw, the commands they
+     * issued are discarded.
+     * @param updates PWM updates to perform, e.g. calls to `setDutyCycle()` on several instances.
+     * @throws IOException If an I/O error occurs in the updates or writing to the driver.
+     */
+    public static void batch(Batch updates) throws IOException {
+        final Map<Integer, String> outer = batched.get();
+        final Map<Integer, String> commands = new LinkedHashMap<>();
+        batched.set(commands);
+        try {
+            updates.run();
+        } finally {
+            batched.set(outer);
+        }
+        if (outer != null) {
+            commands.forEach((pin, value) -> queue(outer, pin, value));
+            return;
+        }
+        synchronized (pending) {
+            commands.forEach((pin, value) -> queue(pending, pin, value));
+        }
+        flush();
+    }
+
+    /**
+     * Get the number of writes made to the pi-blaster device.
+     * @return Number of writes.
+     */
+    public static long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * Get the number of pin commands sent to the pi-blaster device. Several commands may be sent per write.
+     * @return Number of commands.
+     */
+    public static long getCommandCount() {
+        return commandCount.get();
+    }
+
+    /**
+     * Get the average time taken by a write to the pi-blaster device.
+     * @return Mean write latency in nanoseconds, or 0 if nothing has been written.
+     */
+    public static long getMeanWriteNanos() {
+        final long writes = writeCount.get();
+        return writes == 0 ? 0 : writeNanos.get() / writes;
+    }
+
+    /**
+     * Get the time taken by the most recent write to the pi-blaster device.
+     * @return Write latency in nanoseconds.
+     */
+    public static long getLastWriteNanos() {
+        return lastWriteNanos;
     }
 
     /**
@@ -51,6 +244,6 @@ public class PWMBlaster implements IPWMDriver {
      */
     @Override
     public void setDutyCycle(double dutyCycle) throws IOException {
-        writePWM(pin + "=" + dutyCycle / 100.0);
+        writePWM(pin, String.valueOf(dutyCycle / 100.0));
     }
 }
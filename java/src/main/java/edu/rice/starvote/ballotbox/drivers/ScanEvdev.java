@@ -0,0 +1,188 @@
+package edu.rice.starvote.ballotbox.drivers;
+
+import com.pi4j.io.gpio.GpioPinDigitalOutput;
+import com.pi4j.io.gpio.PinState;
+import edu.rice.starvote.ballotbox.util.GPIOManager;
+import edu.rice.starvote.ballotbox.util.PinMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of scanner controller that reads the barcode scanner's key event device directly, replacing the
+ * external C `scan` program. The event device is opened once and read by a resident background thread, which
+ * decodes key events into code strings. The scanner enable pin is provisioned once through Pi4J. This removes the
+ * process startup, wiringPi initialization and device open from every call to `scan()`.
+ *
+ * The scan cycle is identical to the C program: the scanner is powered for 800 ms at a time, then reset for 200 ms,
+ * once per second of timeout.
+ *
+ * *Unlike the C program, the event device is not grabbed for exclusive access (this requires an `ioctl` unavailable
+ * to Java), so the scanner should not be attached to an active console.*
+ *
+ * @see Scan
+ * @author luejerry
+ */
+public class ScanEvdev implements IScanner {
+
+    /**
+     * Key event device of the reference scanner.
+     */
+    public final static String DEFAULT_DEVICE =
+            "/dev/input/by-id/usb-WIT_Electron_Company_WIT_122-UFS_V2.03-event-kbd";
+    /**
+     * Pin controlling scanner on/off (BCM numbering).
+     */
+    public final static int DEFAULT_PIN = 25;
+
+    /**
+     * Scan buffer size, including terminator (same as the C program).
+     */
+    final static int MAXCODE = 64;
+
+    /* Constants from linux/input.h. */
+    private final static int EV_KEY = 1;
+    private final static int KEY_ENTER = 28;
+    private final static int KEY_LEFTSHIFT = 42;
+    private final static int KEY_RIGHTSHIFT = 54;
+
+    /* Linux keycode to ASCII character maps, indexed by keycode. A zero character is unmapped. */
+    private final static char[] LOWER = new char[64];
+    private final static char[] UPPER = new char[64];
+
+    static {
+        mapKeys(2, "1234567890-=", "!@#$%^&*()_+");
+        mapKeys(16, "qwertyuiop[]", "QWERTYUIOP{}");
+        mapKeys(30, "asdfghjkl;'`", "ASDFGHJKL:\"~");
+        mapKeys(43, "\\zxcvbnm,./", "|ZXCVBNM<>?");
+        mapKeys(57, " ", " ");
+    }
+
+    private final Path device;
+    private final GpioPinDigitalOutput scanPin;
+    private final BlockingQueue<String> codes = new LinkedBlockingQueue<>();
+    private final int eventSize;
+    private volatile IOException readerError;
+
+    /**
+     * Constructor using the reference scanner device and enable pin. Starts the device reader thread.
+     */
+    public ScanEvdev() {
+        this(Paths.get(DEFAULT_DEVICE), DEFAULT_PIN);
+    }
+
+    /**
+     * Constructor. Starts the device reader thread.
+     * @param device Key event device of the scanner (`/dev/input/...`).
+     * @param scanPin Pin that turns the scanner on when HIGH (BCM numbering).
+     */
+    public ScanEvdev(Path device, int scanPin) {
+        this.device = device;
+        this.scanPin = GPIOManager.controller().provisionDigitalOutputPin(PinMap.mapPin(scanPin).get(), PinState.LOW);
+        // struct input_event is a struct timeval (two longs) followed by u16 type, u16 code and s32 value.
+        eventSize = "64".equals(System.getProperty("sun.arch.data.model")) ? 24 : 16;
+        final Thread reader = new Thread(this::readEvents, "scanner-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     * @return Scanned code without line terminator, or empty string if timeout elapsed or the thread was interrupted.
+     */
+    @Override
+    public String scan(int timeout) throws IOException {
+        codes.clear();
+        try {
+            for (int tries = 0; tries < timeout; tries++) {
+                checkReader();
+                scanPin.high();
+                final String code = codes.poll(800, TimeUnit.MILLISECONDS);
+                scanPin.low();
+                if (code != null) {
+                    return code;
+                }
+                // Restart scanner. Wait 200ms to allow it to reset.
+                TimeUnit.MILLISECONDS.sleep(200);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            scanPin.low();
+        }
+        return "";
+    }
+
+    /**
+     * Throws the error that terminated the reader thread, if any.
+     * @throws IOException If the event device could not be opened or read.
+     */
+    private void checkReader() throws IOException {
+        if (readerError != null) {
+            throw new IOException("Scanner device " + device + " unavailable", readerError);
+        }
+    }
+
+    /**
+     * Reader thread body. Decodes key events from the device for the lifetime of the program, queueing each code
+     * completed by an enter key press (or filling the buffer).
+     */
+    private void readEvents() {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(eventSize * 64).order(ByteOrder.nativeOrder());
+        final StringBuilder code = new StringBuilder(MAXCODE);
+        boolean shift = false;
+        try (FileChannel channel = FileChannel.open(device, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.remaining() >= eventSize) {
+                    final int base = buffer.position() + eventSize - 8;
+                    final int type = buffer.getShort(base) & 0xFFFF;
+                    final int key = buffer.getShort(base + 2) & 0xFFFF;
+                    final int value = buffer.getInt(base + 4);
+                    buffer.position(buffer.position() + eventSize);
+                    if (type != EV_KEY) continue;
+
+                    if (value == 0 && (key == KEY_LEFTSHIFT || key == KEY_RIGHTSHIFT)) {
+                        shift = false;
+                    } else if (value == 1) {
+                        if (key == KEY_ENTER || code.length() == MAXCODE - 1) {
+                            // Scan complete or buffer filled
+                            codes.offer(code.toString());
+                            code.setLength(0);
+                        } else if (key == KEY_LEFTSHIFT || key == KEY_RIGHTSHIFT) {
+                            shift = true;
+                        } else if (key < LOWER.length && LOWER[key] != 0) {
+                            code.append(shift ? UPPER[key] : LOWER[key]);
+                        }
+                    }
+                }
+                buffer.compact();
+            }
+            readerError = new IOException("End of stream on scanner device");
+        } catch (IOException e) {
+            System.err.println("Error occurred reading scanner: " + e.toString());
+            readerError = e;
+        }
+    }
+
+    /**
+     * Helper method to populate the keycode maps with a row of consecutive keycodes.
+     * @param firstKey Keycode of first character in row.
+     * @param lower Characters produced without shift.
+     * @param upper Characters produced with shift.
+     */
+    private static void mapKeys(int firstKey, String lower, String upper) {
+        for (int i = 0; i < lower.length(); i++) {
+            LOWER[firstKey + i] = lower.charAt(i);
+            UPPER[firstKey + i] = upper.charAt(i);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package edu.rice.starvote.ballotbox.drivers;
+
+import edu.rice.starvote.ballotbox.metrics.BallotMetrics;
+import edu.rice.starvote.ballotbox.util.Clock;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Arbitrates a scan head shared by several paper feed lanes, so that only one lane scans at a time. The lock is fair:
+ * lanes waiting to scan are served in the order they arrived, so a busy lane cannot starve the others. Time spent
+ * waiting is recorded in `BallotMetrics.SCANNER_WAIT`.
+ *
+ * Each lane is given its own handle to the scanner with `share()`. Handles may wrap the same physical scanner (e.g. one
+ * scanner positioned to read both paper paths) or separate devices that must not run at the same time. A lane
+ * reserves the scanner with `tryReserve()` or `reserve()` before moving the paper across it, and holds it until it
+ * calls `release()`; calling `scan()` without a reservation reserves the scanner for that scan only.
+ *
+ * ##### Example #####
+ * Two lanes sharing one scanner:
+ *
+ * ```java
+ * ScannerArbiter arbiter = new ScannerArbiter();
+ * IScanner scanner = new ScanEvdev();
+ * IScanner lane1 = arbiter.share(scanner);
+ * IScanner lane2 = arbiter.share(scanner);
+ * ```
+ *
+ * @author luejerry
+ */
+public class ScannerArbiter {
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+
+    /**
+     * Handle to a shared scanner for one lane.
+     */
+    private class Handle implements IScanner {
+        private final IScanner scanner;
+
+        Handle(IScanner scanner) {
+            this.scanner = scanner;
+        }
+
+        @Override
+        public String scan(int timeout) throws IOException {
+            if (lock.isHeldByCurrentThread()) return scanner.scan(timeout);
+            reserve();
+            try {
+                return scanner.scan(timeout);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean tryReserve() {
+            if (lock.isHeldByCurrentThread()) return true;
+            try {
+                // Unlike tryLock(), a timed tryLock honors the fairness of the lock.
+                if (!lock.tryLock(0, TimeUnit.NANOSECONDS)) return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            BallotMetrics.SCANNER_WAIT.record(0);
+            return true;
+        }
+
+        @Override
+        public void reserve() {
+            if (lock.isHeldByCurrentThread()) return;
+            final long start = Clock.nanoTime();
+            lock.lock();
+            BallotMetrics.SCANNER_WAIT.record(Clock.nanoTime() - start);
+        }
+
+        @Override
+        public void release() {
+            if (lock.isHeldByCurrentThread()) lock.unlock();
+        }
+    }
+
+    /**
+     * Get a handle to a scanner that scans only while holding this arbiter's lock.
+     * @param scanner Scanner to share.
+     * @return Arbitrated handle to the scanner.
+     */
+    public IScanner share(IScanner scanner) {
+        return new Handle(scanner);
+    }
+
+    /**
+     * Get the number of lanes waiting to scan.
+     * @return Number of waiting lanes.
+     */
+    public int waiting() {
+        return lock.getQueueLength();
+    }
+}
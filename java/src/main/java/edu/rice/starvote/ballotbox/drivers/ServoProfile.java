@@ -0,0 +1,50 @@
+package edu.rice.starvote.ballotbox.drivers;
+
+/**
+ * Calibration profile of a hobby servo driven by a PWM duty cycle. Used to estimate how long the servo takes to reach a
+ * commanded position, so that callers wait only as long as the move actually requires.
+ *
+ * The settle time of a move is modeled as a fixed dead time (the servo's response latency plus at least one PWM period)
+ * plus a time proportional to the travel distance, measured as the change in duty cycle.
+ *
+ * ##### Example #####
+ * A servo that responds within 80 ms and travels 1% of duty cycle (about 18 degrees at 50 Hz) every 60 ms:
+ *
+ * ```java
+ * ServoProfile profile = new ServoProfile(80, 60);
+ * long settle = profile.settleMillis(5.4); // 404 ms
+ * ```
+ *
+ * @author luejerry
+ */
+public class ServoProfile {
+
+    /**
+     * Profile of the HB-6001HD servo used on the reference diverter, loaded and driven at 50 Hz. Conservative: a full
+     * swing between the up and down positions is allowed just under one second.
+     */
+    public static final ServoProfile HB6001HD = new ServoProfile(100, 165);
+
+    private final long deadTimeMillis;
+    private final double millisPerPercent;
+
+    /**
+     * Constructor.
+     * @param deadTimeMillis Time before the servo begins to move after a command, in milliseconds.
+     * @param millisPerPercent Time to travel a distance of 1% duty cycle, in milliseconds.
+     */
+    public ServoProfile(long deadTimeMillis, double millisPerPercent) {
+        this.deadTimeMillis = deadTimeMillis;
+        this.millisPerPercent = millisPerPercent;
+    }
+
+    /**
+     * Estimate the time for the servo to travel a distance and come to rest.
+     * @param travel Travel distance in % duty cycle. A distance of 0 requires no time.
+     * @return Settle time in milliseconds.
+     */
+    public long settleMillis(double travel) {
+        if (travel <= 0) return 0;
+        return deadTimeMillis + (long) Math.ceil(travel * millisPerPercent);
+    }
+}
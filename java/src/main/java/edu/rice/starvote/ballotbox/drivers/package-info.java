@@ -5,8 +5,9 @@
  *
  * - Pulse width modulation (PWM) control via [pi-blaster](https://github.com/sarfata/pi-blaster) or the RPi.GPIO
  *   Python library.
- * - Servomotor control.
- * - Barcode scanner control via a bundled C executable (`scan`).
+ * - Servomotor control, with position tracking and calibrated settle times.
+ * - Feed motor control, with speed ramps executed on a scheduler thread (`MotorScheduler`).
+ * - Barcode scanner control by reading the scanner's key event device, or via a bundled C executable (`scan`).
  *
  * @author luejerry
  */
@@ -0,0 +1,59 @@
+package edu.rice.starvote.ballotbox.metrics;
+
+/**
+ * Instruments recorded by the ballot pipeline, registered in `MetricsRegistry.DEFAULT` and served by the status server
+ * at `/metrics`.
+ *
+ * Stage timings are recorded per sheet, in nanoseconds:
+ *
+ *  - Feed: feed motor started until the sheet reaches the halfway sensor.
+ *  - Scan: time spent reading the code.
+ *  - Validate: code read until the validation decision is available.
+ *  - Divert: decision available until the diverter has settled.
+ *  - Eject: eject motor started until the sheet clears the halfway sensor.
+ *  - Cycle: spooling until the sheet has left the paper path (or jammed) and the box has moved on. Not recorded when
+ *  the tray is empty.
+ *  - Scanner wait: time spent waiting for a scanner shared between lanes (see `ScannerArbiter`).
+ *
+ * @author luejerry
+ */
+public class BallotMetrics {
+
+    private BallotMetrics() {
+    }
+
+    public final static LatencyHistogram FEED = MetricsRegistry.DEFAULT.histogram("ballotbox_stage_feed_seconds",
+            "Time to draw a sheet in to the halfway sensor.");
+    public final static LatencyHistogram SCAN = MetricsRegistry.DEFAULT.histogram("ballotbox_stage_scan_seconds",
+            "Time to read the code from a sheet.");
+    public final static LatencyHistogram VALIDATE = MetricsRegistry.DEFAULT.histogram(
+            "ballotbox_stage_validate_seconds", "Time from reading a code until its validation decision.");
+    public final static LatencyHistogram DIVERT = MetricsRegistry.DEFAULT.histogram("ballotbox_stage_divert_seconds",
+            "Time from a validation decision until the diverter settles.");
+    public final static LatencyHistogram EJECT = MetricsRegistry.DEFAULT.histogram("ballotbox_stage_eject_seconds",
+            "Time to eject a sheet past the halfway sensor.");
+    public final static LatencyHistogram CYCLE = MetricsRegistry.DEFAULT.histogram("ballotbox_cycle_seconds",
+            "Time to process one sheet, from spooling until ready.");
+    public final static LatencyHistogram SCANNER_WAIT = MetricsRegistry.DEFAULT.histogram(
+            "ballotbox_scanner_wait_seconds", "Time a lane waited for a scanner shared with other lanes.");
+
+    public final static Counter ACCEPTED = MetricsRegistry.DEFAULT.counter("ballotbox_ballots_accepted_total",
+            "Ballots accepted.");
+    public final static Counter REJECTED = MetricsRegistry.DEFAULT.counter("ballotbox_ballots_rejected_total",
+            "Ballots rejected, including unreadable and unvalidated ones.");
+    public final static Counter TIMEOUTS = MetricsRegistry.DEFAULT.counter("ballotbox_validation_timeouts_total",
+            "Ballots whose validation did not complete in time.");
+    public final static Counter JAMS = MetricsRegistry.DEFAULT.counter("ballotbox_jams_total",
+            "Sheets that failed to clear the paper path.");
+    public final static Counter OFFLINE = MetricsRegistry.DEFAULT.counter("ballotbox_offline_decisions_total",
+            "Ballots decided by the local policy because the supervisor could not be reached.");
+    public final static Counter CONFLICTS = MetricsRegistry.DEFAULT.counter("ballotbox_reconcile_conflicts_total",
+            "Ballots accepted offline that the supervisor rejected on reconciliation.");
+    public final static Counter EMPTY_FEEDS = MetricsRegistry.DEFAULT.counter("ballotbox_empty_feeds_total",
+            "Feed attempts with no paper in the tray.");
+
+    public final static LatencyHistogram FANOUT = MetricsRegistry.DEFAULT.histogram(
+            "ballotbox_websocket_fanout_seconds", "Time from broadcasting a status until a client has received it.");
+    public final static Counter EVICTIONS = MetricsRegistry.DEFAULT.counter("ballotbox_websocket_evictions_total",
+            "WebSocket clients dropped for failed or stalled sends.");
+}
@@ -0,0 +1,36 @@
+package edu.rice.starvote.ballotbox.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic event counter. Increments are lock-free and do not contend between threads.
+ *
+ * @author luejerry
+ */
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Count one event.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Count a number of events.
+     * @param events Number of events, non-negative.
+     */
+    public void add(long events) {
+        count.add(events);
+    }
+
+    /**
+     * Get the number of events counted.
+     * @return Event count.
+     */
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,150 @@
+package edu.rice.starvote.ballotbox.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of HdrHistogram. Values below 64 get a bucket
+ * each; above that, every power of two is split into 32 equal buckets, so any recorded value is reported to within
+ * about 3% across the whole range of `long`. Memory use is fixed (under 16 KB) regardless of how many values are
+ * recorded.
+ *
+ * Recording is a few atomic increments and never blocks. Percentiles are computed from a snapshot of the buckets when
+ * requested, and are approximate if values are recorded during the snapshot.
+ *
+ * ##### Example #####
+ * ```java
+ * LatencyHistogram scanTime = new LatencyHistogram();
+ * long start = System.nanoTime();
+ * String code = scanner.scan(5);
+ * scanTime.record(System.nanoTime() - start);
+ * long p99 = scanTime.percentile(99); // nanoseconds
+ * ```
+ *
+ * @author luejerry
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits of precision kept within each power of two.
+     */
+    final static int SUB_BUCKET_BITS = 5;
+    final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    final static int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    final static int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * Record a value. Negative values are recorded as zero.
+     * @param value Value to record, normally a duration in nanoseconds.
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Record the time elapsed since a start time.
+     * @param startNanos Start time, from `System.nanoTime()`.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Get the number of values recorded.
+     * @return Value count.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Get the sum of all values recorded.
+     * @return Sum of values.
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * Get the largest value recorded (exact).
+     * @return Maximum value, or 0 if none have been recorded.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Get the value at a percentile.
+     * @param percentile Percentile between 0 and 100, e.g. `99.9`.
+     * @return Value at the percentile, to within the bucket precision, or 0 if no values have been recorded.
+     */
+    public long percentile(double percentile) {
+        return percentiles(percentile)[0];
+    }
+
+    /**
+     * Get the values at several percentiles from a single snapshot.
+     * @param percentiles Percentiles between 0 and 100.
+     * @return Value at each percentile, in the same order. All 0 if no values have been recorded.
+     */
+    public long[] percentiles(double... percentiles) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        final long[] values = new long[percentiles.length];
+        if (total == 0) return values;
+        final long largest = max.get();
+        for (int p = 0; p < percentiles.length; p++) {
+            final double fraction = Math.min(100, Math.max(0, percentiles[p])) / 100;
+            final long rank = Math.max(1, (long) Math.ceil(fraction * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    values[p] = Math.min(largest, midpointOf(i));
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Helper method to find the bucket holding a value.
+     * @param value Non-negative value.
+     * @return Bucket index.
+     */
+    static int bucketOf(long value) {
+        if (value < LINEAR_LIMIT) return (int) value;
+        final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Helper method to find the value in the middle of a bucket.
+     * @param bucket Bucket index.
+     * @return Midpoint of the values held by the bucket.
+     */
+    static long midpointOf(int bucket) {
+        if (bucket < LINEAR_LIMIT) return bucket;
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) >>> 1);
+    }
+}
@@ -0,0 +1,126 @@
+package edu.rice.starvote.ballotbox.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Named collection of counters and latency histograms, rendered on request in the Prometheus plain text exposition
+ * format. Instruments are created once and held by the code that updates them; the registry is only consulted when
+ * creating instruments and when rendering.
+ *
+ * Histograms are assumed to hold nanoseconds and are rendered as summaries in seconds, with the 50th, 90th, 99th and
+ * 99.9th percentiles, the count, the sum and the maximum.
+ *
+ * ##### Example #####
+ * ```java
+ * MetricsRegistry registry = new MetricsRegistry();
+ * Counter jams = registry.counter("ballotbox_jams_total", "Paper jams detected.");
+ * jams.increment();
+ * String text = registry.render();
+ * ```
+ *
+ * @author luejerry
+ */
+public class MetricsRegistry {
+
+    /**
+     * Registry served by the status server.
+     */
+    public final static MetricsRegistry DEFAULT = new MetricsRegistry();
+
+    private final static double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    /**
+     * Registered instrument with its description.
+     */
+    private static class Metric {
+        final String help;
+        final Object instrument;
+
+        Metric(String help, Object instrument) {
+            this.help = help;
+            this.instrument = instrument;
+        }
+    }
+
+    /**
+     * Get the counter registered under a name, creating it if necessary.
+     * @param name Metric name, e.g. `ballotbox_ballots_accepted_total`.
+     * @param help Description of the metric.
+     * @return Counter.
+     * @throws IllegalArgumentException If a histogram is registered under the name.
+     */
+    public Counter counter(String name, String help) {
+        return register(name, help, Counter.class, Counter::new);
+    }
+
+    /**
+     * Get the histogram registered under a name, creating it if necessary.
+     * @param name Metric name, e.g. `ballotbox_stage_scan_seconds`.
+     * @param help Description of the metric.
+     * @return Histogram. Values recorded must be in nanoseconds.
+     * @throws IllegalArgumentException If a counter is registered under the name.
+     */
+    public LatencyHistogram histogram(String name, String help) {
+        return register(name, help, LatencyHistogram.class, LatencyHistogram::new);
+    }
+
+    /**
+     * Render every metric in the Prometheus plain text format, in name order.
+     * @return Metrics text.
+     */
+    public String render() {
+        final StringBuilder builder = new StringBuilder(256 * metrics.size());
+        metrics.forEach((name, metric) -> {
+            builder.append("# HELP ").append(name).append(' ').append(metric.help).append('\n');
+            if (metric.instrument instanceof Counter) {
+                builder.append("# TYPE ").append(name).append(" counter\n");
+                builder.append(name).append(' ').append(((Counter) metric.instrument).get()).append('\n');
+            } else {
+                final LatencyHistogram histogram = (LatencyHistogram) metric.instrument;
+                final double[] percentiles = new double[QUANTILES.length];
+                for (int i = 0; i < QUANTILES.length; i++) percentiles[i] = QUANTILES[i] * 100;
+                final long[] values = histogram.percentiles(percentiles);
+                builder.append("# TYPE ").append(name).append(" summary\n");
+                for (int i = 0; i < QUANTILES.length; i++) {
+                    builder.append(name).append("{quantile=\"").append(QUANTILES[i]).append("\"} ")
+                            .append(seconds(values[i])).append('\n');
+                }
+                builder.append(name).append("_sum ").append(seconds(histogram.sum())).append('\n');
+                builder.append(name).append("_count ").append(histogram.count()).append('\n');
+                builder.append(name).append("_max ").append(seconds(histogram.max())).append('\n');
+            }
+        });
+        return builder.toString();
+    }
+
+    /**
+     * Helper method to look up or create an instrument of a given type.
+     * @param name Metric name.
+     * @param help Description of the metric.
+     * @param type Instrument class.
+     * @param factory Creates a new instrument.
+     * @param <T> Instrument type.
+     * @return Instrument.
+     */
+    private <T> T register(String name, String help, Class<T> type, Supplier<T> factory) {
+        final Metric metric = metrics.computeIfAbsent(name, key -> new Metric(help, factory.get()));
+        if (!type.isInstance(metric.instrument)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a " + type.getSimpleName());
+        }
+        return type.cast(metric.instrument);
+    }
+
+    /**
+     * Helper method to format nanoseconds as seconds.
+     * @param nanos Duration in nanoseconds.
+     * @return Duration in seconds, to the microsecond.
+     */
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+}
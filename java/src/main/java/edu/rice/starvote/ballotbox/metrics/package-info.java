@@ -0,0 +1,10 @@
+/**
+ * Provides low-overhead operational metrics for the ballot box: lock-free counters and latency histograms, a registry
+ * that renders them as plain text, and the instruments recorded by the ballot pipeline (`BallotMetrics`).
+ *
+ * Recording a value never blocks or allocates, so instruments may be updated from the spooler, sensor and WebSocket
+ * threads without affecting their timing.
+ *
+ * @author luejerry
+ */
+package edu.rice.starvote.ballotbox.metrics;
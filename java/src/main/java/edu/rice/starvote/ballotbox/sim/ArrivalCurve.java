@@ -0,0 +1,70 @@
+package edu.rice.starvote.ballotbox.sim;
+
+/**
+ * Voter arrival rate over election day, used by the load generator. Curves are built by adding spikes to a constant
+ * base rate.
+ *
+ * ##### Example #####
+ * A base rate of 2 voters per minute, with a morning rush peaking at 5 per minute 45 minutes after the polls open:
+ *
+ * ```java
+ * ArrivalCurve curve = ArrivalCurve.constant(2).plus(ArrivalCurve.spike(3, 0.75, 0.75));
+ * ```
+ *
+ * @see LoadGenerator
+ * @author luejerry
+ */
+@FunctionalInterface
+public interface ArrivalCurve {
+
+    /**
+     * Get the arrival rate at a time of day.
+     * @param hours Time since the polls opened, in hours.
+     * @return Arrival rate in voters per minute.
+     */
+    double rate(double hours);
+
+    /**
+     * Add another curve to this one.
+     * @param other Curve to add.
+     * @return Sum of the two curves.
+     */
+    default ArrivalCurve plus(ArrivalCurve other) {
+        return hours -> rate(hours) + other.rate(hours);
+    }
+
+    /**
+     * Curve with a constant rate.
+     * @param perMinute Arrival rate in voters per minute.
+     * @return Constant curve.
+     */
+    static ArrivalCurve constant(double perMinute) {
+        return hours -> perMinute;
+    }
+
+    /**
+     * Bell-shaped spike in arrivals, e.g. a morning rush or lunch spike.
+     * @param peakPerMinute Rate added at the height of the spike, in voters per minute.
+     * @param atHour Time of the height of the spike, in hours since the polls opened.
+     * @param widthHours Standard deviation of the spike, in hours.
+     * @return Spike curve.
+     */
+    static ArrivalCurve spike(double peakPerMinute, double atHour, double widthHours) {
+        return hours -> {
+            final double deviations = (hours - atHour) / widthHours;
+            return peakPerMinute * Math.exp(-deviations * deviations / 2);
+        };
+    }
+
+    /**
+     * Typical election day for polls opening at 7 am: a base rate, a morning rush at 7:45 reaching 2.5 times the base
+     * rate, and a lunch spike at 12:30 reaching 1.8 times the base rate.
+     * @param perMinute Base arrival rate in voters per minute.
+     * @return Election day curve.
+     */
+    static ArrivalCurve electionDay(double perMinute) {
+        return constant(perMinute)
+                .plus(spike(1.5 * perMinute, 0.75, 0.75))
+                .plus(spike(0.8 * perMinute, 5.5, 0.5));
+    }
+}
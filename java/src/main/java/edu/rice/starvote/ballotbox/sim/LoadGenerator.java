@@ -0,0 +1,423 @@
+package edu.rice.starvote.ballotbox.sim;
+
+import edu.rice.starvote.ballotbox.*;
+import edu.rice.starvote.ballotbox.drivers.IScanner;
+import edu.rice.starvote.ballotbox.drivers.ScannerArbiter;
+import edu.rice.starvote.ballotbox.metrics.BallotMetrics;
+import edu.rice.starvote.ballotbox.metrics.LatencyHistogram;
+import edu.rice.starvote.ballotbox.statusserver.StaticContainer;
+import edu.rice.starvote.ballotbox.statusserver.StatusContainer;
+import edu.rice.starvote.ballotbox.statusserver.StatusServer;
+import edu.rice.starvote.ballotbox.util.Clock;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import spark.Spark;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Election day load generator. Runs a complete ballot box, wired as in `STARController`, on simulated hardware with a
+ * stand-in supervisor, and feeds it voters arriving along an arrival curve. Reports throughput, cycle times, the
+ * number of ballots waiting in the tray, and the time for status updates to reach WebSocket clients, to help size the
+ * number of boxes a precinct needs.
+ *
+ * Ballots are a mix of valid ballots, invalid ballots (codes the supervisor never issued), duplicates (ballots already
+ * cast, fed again) and unreadable ballots. The supervisor answers after a random latency; as on election day, a
+ * ballot the connected supervisor does not answer within `StoreAndForwardValidator.ONLINE_TIMEOUT` times out and is
+ * returned to the voter. Timeouts are reported, so the supervisor latency can be sized against them.
+ *
+ * The box may have several paper feed lanes, each with its own simulated paper path, sharing one scan head through a
+ * `ScannerArbiter` as in `STARController`. Each voter uses the lane with the fewest ballots waiting in its tray. The
+ * status clients see the box status combined from all lanes by a `LaneStatus`.
+ *
+ * The day runs in simulated time, scaled by `Clock`. Cycle times and tray depths are in simulated time; the time to
+ * reach WebSocket clients is measured in real time, since status delivery is not simulated.
+ *
+ * ##### Example #####
+ * A 12 hour day at 60 times real time (12 minutes), with 2 voters per minute outside the rush hours:
+ *
+ * ```java
+ * Clock.setScale(60);
+ * LoadGenerator generator = new LoadGenerator(ArrivalCurve.electionDay(2), 12, LoadGenerator.Mix.DEFAULT, 200,
+ *         1, 4, 7654, new Random());
+ * System.out.print(generator.run());
+ * ```
+ *
+ * @author luejerry
+ */
+public class LoadGenerator {
+
+    /**
+     * Proportions of defective ballots among those cast. The remainder are valid.
+     */
+    public static class Mix {
+
+        /**
+         * A few percent of each kind of defective ballot.
+         */
+        public static final Mix DEFAULT = new Mix(0.02, 0.01, 0.02);
+
+        public final double invalid;
+        public final double duplicate;
+        public final double unreadable;
+
+        /**
+         * Constructor.
+         * @param invalid Proportion of ballots with codes the supervisor never issued.
+         * @param duplicate Proportion of ballots that were already cast, fed again.
+         * @param unreadable Proportion of ballots the scanner cannot read.
+         */
+        public Mix(double invalid, double duplicate, double unreadable) {
+            this.invalid = invalid;
+            this.duplicate = duplicate;
+            this.unreadable = unreadable;
+        }
+    }
+
+    /**
+     * Length of election day, in hours.
+     */
+    public final static double DAY_HOURS = 12;
+
+    /**
+     * Longest time to wait for the tray to empty after the polls close, in milliseconds of clock time.
+     */
+    final static long DRAIN_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+    private final static double[] PERCENTILES = {50, 99, 99.9};
+
+    private final ArrivalCurve arrivals;
+    private final double hours;
+    private final Mix mix;
+    private final int clients;
+    private final int port;
+    private final Random random;
+
+    private final List<PaperPathModel> models = new ArrayList<>();
+    private final List<Monitor> monitors = new ArrayList<>();
+    private final SimSupervisor supervisor;
+    private final StatusContainer statusProvider = StaticContainer.statusContainer;
+    private final IStatusUpdate updater;
+
+    private final List<String> valid = new ArrayList<>();
+    private final Set<String> invalid = new HashSet<>();
+    private final AtomicInteger arrived = new AtomicInteger();
+    private final LatencyHistogram trayDepth = new LatencyHistogram();
+    private final LatencyHistogram toStatus = new LatencyHistogram();
+    private final ConcurrentMap<Long, Long> writtenAt = new ConcurrentHashMap<>();
+    /* Ballots processed and largest tray depth in each hour. Written only by the sampler thread. */
+    private final List<int[]> hourly = new ArrayList<>();
+    private int nextCode = 0;
+
+    /**
+     * Constructor. Instantiates the ballot box on simulated hardware. Does not start the status server.
+     * @param arrivals Voter arrival curve.
+     * @param hours Length of the day, in hours.
+     * @param mix Proportions of defective ballots.
+     * @param supervisorLatency Mean time for the supervisor to answer, in milliseconds. Answers slower than
+     *                          `StoreAndForwardValidator.ONLINE_TIMEOUT` time out.
+     * @param lanes Number of paper feed lanes in the box.
+     * @param clients Number of WebSocket clients to connect to the status server. If 0, the status server is not
+     *                started.
+     * @param port Listening port of the status server.
+     * @param random Random source of arrivals, ballots and latencies.
+     */
+    public LoadGenerator(ArrivalCurve arrivals, double hours, Mix mix, double supervisorLatency, int lanes,
+                         int clients, int port, Random random) {
+        this.arrivals = arrivals;
+        this.hours = hours;
+        this.mix = mix;
+        this.clients = clients;
+        this.port = port;
+        this.random = random;
+        supervisor = new SimSupervisor(supervisorLatency, random);
+
+        final IAsyncValidator asyncValidator =
+                new CachingValidator(new StoreAndForwardValidator(() -> supervisor, code -> true, null));
+        updater = status -> {
+            synchronized (statusProvider) {
+                writtenAt.put(statusProvider.getSequence() + 1, System.nanoTime());
+                statusProvider.writeStatus(status);
+            }
+        };
+        final LaneStatus laneStatus = new LaneStatus(lanes, updater);
+        final ScannerArbiter scannerArbiter = new ScannerArbiter();
+        for (int lane = 1; lane <= lanes; lane++) {
+            final PaperPathModel model = new PaperPathModel();
+            final IScanner scanner = scannerArbiter.share(model.scanner());
+            final ISpooler spooler = new PaperSpooler(laneStatus.lane(lane), model.diverter(), model.motor(),
+                    model.halfwaySensor(), scanner, asyncValidator, PaperPathModel.feedTiming(),
+                    IBallotJournal.DISABLED);
+            models.add(model);
+            monitors.add(new Monitor(model.traySensor(), spooler));
+        }
+    }
+
+    /**
+     * WebSocket client recording the time from writing each status until it is received.
+     */
+    private class StatusClient implements WebSocketListener {
+
+        @Override
+        public void onWebSocketText(String message) {
+            final long receivedAt = System.nanoTime();
+            if (!message.startsWith("{\"seq\":")) return; // History sent on connecting
+            final int end = message.indexOf(',');
+            final Long sentAt = writtenAt.get(Long.parseLong(message.substring(7, end)));
+            if (sentAt != null) toStatus.record(receivedAt - sentAt);
+        }
+
+        @Override
+        public void onWebSocketBinary(byte[] payload, int offset, int len) {
+        }
+
+        @Override
+        public void onWebSocketConnect(Session session) {
+        }
+
+        @Override
+        public void onWebSocketClose(int statusCode, String reason) {
+        }
+
+        @Override
+        public void onWebSocketError(Throwable cause) {
+            System.err.println("Status client error: " + cause);
+        }
+    }
+
+    /**
+     * Run election day: start the box, feed it voters until the polls close, and wait for the tray to empty.
+     * @return Report of the day.
+     * @throws Exception If the status server or WebSocket clients cannot be started.
+     */
+    public String run() throws Exception {
+        WebSocketClient client = null;
+        if (clients > 0) {
+            new StatusServer(port, statusProvider).start();
+            Spark.awaitInitialization();
+            client = new WebSocketClient();
+            client.start();
+            for (int i = 0; i < clients; i++) {
+                client.connect(new StatusClient(), new URI("ws://localhost:" + port + "/pushstatus?since=0"))
+                        .get(5, TimeUnit.SECONDS);
+            }
+        }
+        updater.pushStatus(BallotStatus.WAITING);
+
+        for (int lane = 0; lane < monitors.size(); lane++) {
+            final Thread monitorThread = new Thread(monitors.get(lane)::run, "lane-" + (lane + 1));
+            monitorThread.setDaemon(true);
+            monitorThread.start();
+        }
+        final Thread sampler = new Thread(this::sample, "load-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        final long open = Clock.nanoTime();
+        final double peak = peakRate();
+        final double closeMinute = hours * 60;
+        double minute = 0;
+        while (true) {
+            /* Arrivals along the curve, by thinning a Poisson process at the peak rate. */
+            minute += -Math.log(1 - random.nextDouble()) / peak;
+            if (minute >= closeMinute) break;
+            if (random.nextDouble() * peak > arrivals.rate(minute / 60)) continue;
+            final long wait = open + (long) (minute * 60e9) - Clock.nanoTime();
+            if (wait > 0) Clock.sleepMillis(TimeUnit.NANOSECONDS.toMillis(wait));
+            cast();
+        }
+        final long closed = Clock.nanoTime();
+
+        final long drainDeadline = closed + TimeUnit.MILLISECONDS.toNanos(DRAIN_TIMEOUT);
+        while (processed() < arrived.get() && Clock.nanoTime() < drainDeadline) {
+            Clock.sleepMillis(1000);
+        }
+        final long drained = Clock.nanoTime();
+        sampler.interrupt();
+        sampler.join();
+        if (client != null) client.stop();
+        if (clients > 0) Spark.stop();
+        models.forEach(PaperPathModel::close);
+        return report(closed - open, drained - open);
+    }
+
+    /**
+     * Program main entry point. Runs election day and prints the report.
+     * @param args Optional time scale (default 60), base arrival rate in voters per minute (default 2), mean
+     *             supervisor latency in milliseconds (default 200), number of WebSocket clients (default 4) and number
+     *             of paper feed lanes (default 1).
+     * @throws Exception If the status server or WebSocket clients cannot be started.
+     */
+    public static void main(String[] args) throws Exception {
+        Clock.setScale((args.length > 0) ? Double.parseDouble(args[0]) : 60);
+        final double rate = (args.length > 1) ? Double.parseDouble(args[1]) : 2;
+        final double latency = (args.length > 2) ? Double.parseDouble(args[2]) : 200;
+        final int clients = (args.length > 3) ? Integer.parseInt(args[3]) : 4;
+        final int lanes = (args.length > 4) ? Integer.parseInt(args[4]) : 1;
+        final LoadGenerator generator = new LoadGenerator(ArrivalCurve.electionDay(rate), DAY_HOURS, Mix.DEFAULT,
+                latency, lanes, clients, 7654, new Random());
+        System.out.print(generator.run());
+    }
+
+    /**
+     * Helper method to place one voter's ballot in the tray with the fewest ballots waiting, drawn from the ballot
+     * mix.
+     */
+    private void cast() {
+        arrived.incrementAndGet();
+        final PaperPathModel model = models.stream().min(Comparator.comparingInt(PaperPathModel::trayDepth)).get();
+        final double draw = random.nextDouble();
+        if (draw < mix.invalid) {
+            final String code = String.format("BID-X%05d", nextCode++);
+            invalid.add(code);
+            model.load(code);
+        } else if (draw < mix.invalid + mix.duplicate && !valid.isEmpty()) {
+            model.load(valid.get(random.nextInt(valid.size())));
+        } else {
+            final String code = String.format("BID-%06d", nextCode++);
+            supervisor.issue(code);
+            valid.add(code);
+            model.load(code, (draw > 1 - mix.unreadable)
+                    ? PaperPathModel.Defect.UNREADABLE : PaperPathModel.Defect.NONE);
+        }
+    }
+
+    /**
+     * Helper method to run the sampler thread, recording the tray depth every simulated minute and the ballots
+     * processed every simulated hour, until interrupted. A partial last hour is recorded on interruption.
+     */
+    private void sample() {
+        int minute = 0;
+        int lastProcessed = 0;
+        int maxDepth = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Clock.sleepMillis(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                if (minute % 60 != 0) hourly.add(new int[]{processed() - lastProcessed, maxDepth});
+                break;
+            }
+            final int depth = trayDepth();
+            trayDepth.record(depth);
+            maxDepth = Math.max(maxDepth, depth);
+            if (++minute % 60 == 0) {
+                final int processed = processed();
+                hourly.add(new int[]{processed - lastProcessed, maxDepth});
+                lastProcessed = processed;
+                maxDepth = 0;
+            }
+        }
+    }
+
+    /**
+     * Helper method to count the ballots that have left the box.
+     * @return Number of ballots in the bins of all lanes.
+     */
+    private int processed() {
+        return accepted().size() + rejected() + misrouted();
+    }
+
+    /**
+     * Helper method to collect the ballots accepted by all lanes.
+     * @return Codes of accepted ballots.
+     */
+    private List<String> accepted() {
+        final List<String> accepted = new ArrayList<>();
+        models.forEach(model -> accepted.addAll(model.accepted()));
+        return accepted;
+    }
+
+    /**
+     * Helper method to count the ballots rejected by all lanes.
+     * @return Number of ballots in the reject bins.
+     */
+    private int rejected() {
+        return models.stream().mapToInt(model -> model.rejected().size()).sum();
+    }
+
+    /**
+     * Helper method to count the ballots misrouted by all lanes.
+     * @return Number of misrouted ballots.
+     */
+    private int misrouted() {
+        return models.stream().mapToInt(model -> model.misrouted().size()).sum();
+    }
+
+    /**
+     * Helper method to count the ballots waiting in the trays of all lanes.
+     * @return Number of ballots waiting.
+     */
+    private int trayDepth() {
+        return models.stream().mapToInt(PaperPathModel::trayDepth).sum();
+    }
+
+    /**
+     * Helper method to find the highest arrival rate of the day, sampled every minute.
+     * @return Peak arrival rate in voters per minute.
+     */
+    private double peakRate() {
+        double peak = 0;
+        for (int minute = 0; minute <= hours * 60; minute++) {
+            peak = Math.max(peak, arrivals.rate(minute / 60.0));
+        }
+        return peak;
+    }
+
+    /**
+     * Helper method to format the report of the day.
+     * @param dayNanos Time from the polls opening until they closed, in nanoseconds of clock time.
+     * @param totalNanos Time from the polls opening until the tray emptied, in nanoseconds of clock time.
+     * @return Report text.
+     */
+    private String report(long dayNanos, long totalNanos) {
+        final List<String> accepted = accepted();
+        final Set<String> distinct = new HashSet<>(accepted);
+        final long invalidAccepted = accepted.stream().filter(invalid::contains).count();
+        final int processed = processed();
+        final double totalMinutes = totalNanos / 60e9;
+        final long[] cycle = BallotMetrics.CYCLE.percentiles(PERCENTILES);
+        final long[] status = toStatus.percentiles(PERCENTILES);
+        final double capacity = (cycle[0] > 0) ? models.size() * 60e9 / cycle[0] : 0;
+        final double peak = peakRate();
+
+        final StringBuilder report = new StringBuilder();
+        report.append(String.format("Election day: %.1f h at %.0fx real time, %d lane(s), %d voters, %d ballots "
+                        + "processed (%d accepted, %d rejected, %d misrouted), %d left in trays%n",
+                dayNanos / 3600e9, Clock.scale(), models.size(), arrived.get(), processed, accepted.size(),
+                rejected(), misrouted(), arrived.get() - processed));
+        report.append(String.format("Throughput: %.2f ballots/min over %.1f h%n", processed / totalMinutes,
+                totalMinutes / 60));
+        report.append(String.format("Cycle time: p50 %.2f s, p99 %.2f s, p99.9 %.2f s, max %.2f s%n",
+                cycle[0] / 1e9, cycle[1] / 1e9, cycle[2] / 1e9, BallotMetrics.CYCLE.max() / 1e9));
+        if (models.size() > 1) {
+            final long[] wait = BallotMetrics.SCANNER_WAIT.percentiles(PERCENTILES);
+            report.append(String.format("Scanner wait: p50 %.2f s, p99 %.2f s, p99.9 %.2f s%n",
+                    wait[0] / 1e9, wait[1] / 1e9, wait[2] / 1e9));
+        }
+        report.append(String.format("Tray depth: mean %.1f, p99 %d, max %d ballots%n",
+                (trayDepth.count() > 0) ? (double) trayDepth.sum() / trayDepth.count() : 0,
+                trayDepth.percentile(99), trayDepth.max()));
+        if (clients > 0) {
+            report.append(String.format("Time to status (%d WebSocket clients, real time): p50 %.2f ms, "
+                            + "p99 %.2f ms, p99.9 %.2f ms%n",
+                    clients, status[0] / 1e6, status[1] / 1e6, status[2] / 1e6));
+        }
+        report.append(String.format("Validation: %d timed out and rejected, %d invalid and %d duplicate ballots "
+                        + "accepted%n",
+                BallotMetrics.TIMEOUTS.get(), invalidAccepted, accepted.size() - distinct.size()));
+        report.append(String.format("Sizing: one box handles %.1f ballots/min at the median cycle time; "
+                        + "the peak of %.1f voters/min needs %d box(es)%n",
+                capacity, peak, (capacity > 0) ? (int) Math.ceil(peak / capacity) : 0));
+        report.append("Hour  Ballots  Max tray depth\n");
+        for (int hour = 0; hour < hourly.size(); hour++) {
+            report.append(String.format("%4d  %7d  %14d%n", hour + 1, hourly.get(hour)[0], hourly.get(hour)[1]));
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,361 @@
+package edu.rice.starvote.ballotbox.sim;
+
+import com.pi4j.io.gpio.PinState;
+import edu.rice.starvote.ballotbox.FeedTiming;
+import edu.rice.starvote.ballotbox.util.Clock;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Simulated paper path of the reference ballot box (an HP 1010 printer feeder with a diverter behind it), driving the
+ * simulated motor, diverter, scanner and sensors so that the paper feeder and monitor can run without hardware.
+ *
+ * The model tracks the leading edge of the sheet in the feed path, in millimeters from the mouth of the feeder. A
+ * sheet is picked up from the tray when the motor runs forward, travels at a speed proportional to the motor duty
+ * cycle, and covers the halfway sensor (which reads LOW) while its leading edge is past `SENSOR_POSITION`. When the
+ * motor runs in reverse, the sheet leaves the feed path at the mouth and drops into the accept or reject bin, according
+ * to the diverter position. A sheet that leaves while the diverter is still moving is misrouted.
+ *
+ * The tray sensor reads HIGH while the tray holds paper.
+ *
+ * Positions are advanced by a ticker thread and whenever the motor is commanded. Sensor edges are stamped with the
+ * time at which the leading edge crossed the sensor, interpolated between updates, so measured feed and eject times do
+ * not depend on the tick rate. All times are taken from `Clock`, so the model runs faster than real time when the
+ * clock is scaled. Delays in waking up the controlling threads are scaled as well, so timing jitter grows with the
+ * time scale.
+ *
+ * The paper feeder should be given the feed timing from `feedTiming()`, which is calibrated to the eject time of the
+ * model rather than that of the reference box.
+ *
+ * ##### Example #####
+ * ```java
+ * Clock.setScale(20);
+ * PaperPathModel model = new PaperPathModel();
+ * PaperSpooler spooler = new PaperSpooler(updater, model.diverter(), model.motor(), model.halfwaySensor(),
+ *         model.scanner(), asyncValidator, PaperPathModel.feedTiming(), IBallotJournal.DISABLED);
+ * model.load("BID-1");
+ * new Monitor(model.traySensor(), spooler).run();
+ * ```
+ *
+ * @author luejerry
+ */
+public class PaperPathModel implements AutoCloseable {
+
+    /**
+     * Defect of a simulated sheet.
+     */
+    public enum Defect {
+        NONE,
+        /**
+         * The code cannot be read by the scanner.
+         */
+        UNREADABLE,
+        /**
+         * The sheet jams once it is fed past the halfway sensor, and stays in the feed path until `clearJam()`.
+         */
+        JAM
+    }
+
+    /**
+     * Paper speed at full motor duty cycle, in millimeters per second.
+     */
+    public final static double FULL_SPEED = 200;
+
+    /**
+     * Distance of the halfway sensor from the mouth of the feeder, in millimeters.
+     */
+    public final static double SENSOR_POSITION = 60;
+
+    /**
+     * Distance past the halfway sensor at which a jamming sheet stops, in millimeters.
+     */
+    final static double JAM_DEPTH = 10;
+
+    /**
+     * Farthest distance the feeder can take a sheet in, in millimeters.
+     */
+    final static double PATH_LENGTH = 160;
+
+    /**
+     * Interval between position updates while the motor runs, in nanoseconds of clock time.
+     */
+    final static long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Shortest real time between position updates, in nanoseconds, bounding the cost of the ticker at high time
+     * scales.
+     */
+    final static long MIN_REAL_TICK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Eject time at the default paper speed, in milliseconds: the time for a sheet backed out after scanning to clear
+     * the halfway sensor. This is much shorter than on the reference box, so settle delays scaled to the reference
+     * eject time would stop the motor before the sheet leaves the feed path.
+     */
+    public final static long REFERENCE_EJECT = 90;
+
+    private static class Sheet {
+        final String code;
+        final Defect defect;
+
+        Sheet(String code, Defect defect) {
+            this.code = code;
+            this.defect = defect;
+        }
+    }
+
+    private final double fullSpeed;
+    private final ArrayDeque<Sheet> tray = new ArrayDeque<>();
+    private final List<String> accepted = new ArrayList<>();
+    private final List<String> rejected = new ArrayList<>();
+    private final List<String> misrouted = new ArrayList<>();
+    private final SimSensor traySensor = new SimSensor(PinState.LOW);
+    private final SimSensor halfwaySensor = new SimSensor(PinState.HIGH);
+    private final SimMotor motor = new SimMotor(this);
+    private final SimDiverter diverter = new SimDiverter();
+    private final SimScanner scanner = new SimScanner(this);
+    private final Thread ticker;
+    private volatile boolean closed = false;
+
+    /* Guarded by this. */
+    private Sheet sheet = null;
+    private double position = 0;
+    private double velocity = 0;
+    private long updatedAt = Clock.nanoTime();
+
+    /**
+     * Get feed timing for a paper feeder driving the model, with settle delays scaled to `REFERENCE_EJECT` instead of
+     * the eject time of the reference box.
+     * @return Feed timing controller. A new instance is returned on each call.
+     */
+    public static FeedTiming feedTiming() {
+        return new FeedTiming(FeedTiming.DEFAULT_FEED_TIMEOUT, FeedTiming.DEFAULT_EJECT_TIMEOUT,
+                FeedTiming.DEFAULT_FEED_SETTLE, FeedTiming.DEFAULT_EJECT_SETTLE, REFERENCE_EJECT);
+    }
+
+    /**
+     * Constructor with the default paper speed. Starts the ticker thread.
+     */
+    public PaperPathModel() {
+        this(FULL_SPEED);
+    }
+
+    /**
+     * Constructor. Starts the ticker thread.
+     * @param fullSpeed Paper speed at full motor duty cycle, in millimeters per second.
+     */
+    public PaperPathModel(double fullSpeed) {
+        this.fullSpeed = fullSpeed;
+        ticker = new Thread(this::tick, "paper-path");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Place a ballot in the feed tray, behind any already there.
+     * @param code Code printed on the ballot.
+     */
+    public void load(String code) {
+        load(code, Defect.NONE);
+    }
+
+    /**
+     * Place a ballot with a defect in the feed tray, behind any already there.
+     * @param code Code printed on the ballot.
+     * @param defect Defect of the ballot.
+     */
+    public synchronized void load(String code, Defect defect) {
+        tray.addLast(new Sheet(code, defect));
+        traySensor.set(PinState.HIGH, Clock.nanoTime());
+    }
+
+    /**
+     * Remove the sheet from the feed path, as an election official clearing a jam would.
+     * @return True if there was a sheet in the feed path.
+     */
+    public synchronized boolean clearJam() {
+        final long now = Clock.nanoTime();
+        advance(now);
+        if (sheet == null) return false;
+        sheet = null;
+        halfwaySensor.set(PinState.HIGH, now);
+        return true;
+    }
+
+    /**
+     * Get the number of ballots waiting in the feed tray.
+     * @return Number of ballots.
+     */
+    public synchronized int trayDepth() {
+        return tray.size();
+    }
+
+    /**
+     * Check whether the feed path is empty.
+     * @return True if no sheet is in the feed path.
+     */
+    public synchronized boolean isPathClear() {
+        return sheet == null;
+    }
+
+    /**
+     * Get the codes of the ballots dropped into the accept bin, in order.
+     * @return Snapshot of the accept bin.
+     */
+    public synchronized List<String> accepted() {
+        return Collections.unmodifiableList(new ArrayList<>(accepted));
+    }
+
+    /**
+     * Get the codes of the ballots dropped into the reject bin, in order.
+     * @return Snapshot of the reject bin.
+     */
+    public synchronized List<String> rejected() {
+        return Collections.unmodifiableList(new ArrayList<>(rejected));
+    }
+
+    /**
+     * Get the codes of the ballots that left the feed path while the diverter was moving.
+     * @return Snapshot of the misrouted ballots.
+     */
+    public synchronized List<String> misrouted() {
+        return Collections.unmodifiableList(new ArrayList<>(misrouted));
+    }
+
+    /**
+     * Get the simulated feed motor.
+     * @return Motor.
+     */
+    public SimMotor motor() {
+        return motor;
+    }
+
+    /**
+     * Get the simulated diverter.
+     * @return Diverter.
+     */
+    public SimDiverter diverter() {
+        return diverter;
+    }
+
+    /**
+     * Get the simulated code scanner.
+     * @return Scanner.
+     */
+    public SimScanner scanner() {
+        return scanner;
+    }
+
+    /**
+     * Get the simulated tray sensor, which reads HIGH while the tray holds paper.
+     * @return Tray sensor.
+     */
+    public SimSensor traySensor() {
+        return traySensor;
+    }
+
+    /**
+     * Get the simulated halfway sensor, which reads LOW while a sheet covers it.
+     * @return Halfway sensor.
+     */
+    public SimSensor halfwaySensor() {
+        return halfwaySensor;
+    }
+
+    /**
+     * Stop the ticker thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(ticker);
+    }
+
+    /**
+     * Set the motor speed. Called by the simulated motor.
+     * @param percent Duty cycle in %, positive forward and negative reverse.
+     */
+    synchronized void drive(double percent) {
+        advance(Clock.nanoTime());
+        velocity = percent / 100 * fullSpeed;
+        LockSupport.unpark(ticker);
+    }
+
+    /**
+     * Get the code of the sheet under the scanner. Called by the simulated scanner.
+     * @return Code, or null if no readable sheet is under the scanner.
+     */
+    synchronized String codeUnderScanner() {
+        advance(Clock.nanoTime());
+        if (sheet == null || position <= SENSOR_POSITION || sheet.defect == Defect.UNREADABLE) return null;
+        return sheet.code;
+    }
+
+    /**
+     * Helper method to run the ticker thread, advancing positions frequently while the motor runs and idling
+     * otherwise.
+     */
+    private void tick() {
+        final long tickRealNanos = Math.max(Clock.toRealNanos(TICK_NANOS), MIN_REAL_TICK_NANOS);
+        while (!closed) {
+            final boolean moving;
+            synchronized (this) {
+                advance(Clock.nanoTime());
+                moving = velocity != 0;
+            }
+            if (moving) {
+                LockSupport.parkNanos(tickRealNanos);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    /**
+     * Helper method to move the paper up to a point in time, picking up a sheet from the tray, signaling sensor edges
+     * and dropping a sheet into a bin as needed. Must be called holding the lock.
+     * @param now Time to advance to, from `Clock.nanoTime()`.
+     */
+    private void advance(long now) {
+        final long start = updatedAt;
+        if (now <= start) return;
+        updatedAt = now;
+        if (velocity == 0) return;
+
+        if (sheet == null) {
+            if (velocity < 0 || tray.isEmpty()) return;
+            sheet = tray.removeFirst();
+            position = 0;
+            if (tray.isEmpty()) traySensor.set(PinState.LOW, start);
+        }
+
+        double next = position + velocity * (now - start) / 1e9;
+        next = Math.min(next, PATH_LENGTH);
+        if (sheet.defect == Defect.JAM) {
+            final double jamPosition = SENSOR_POSITION + JAM_DEPTH;
+            if (position >= jamPosition) return;
+            next = Math.min(next, jamPosition);
+        }
+        if ((position > SENSOR_POSITION) != (next > SENSOR_POSITION)) {
+            final long crossedAt = start + (long) ((SENSOR_POSITION - position) / velocity * 1e9);
+            halfwaySensor.set((next > SENSOR_POSITION) ? PinState.LOW : PinState.HIGH, crossedAt);
+        }
+        position = next;
+
+        if (position <= 0) {
+            if (!diverter.isSettled()) {
+                misrouted.add(sheet.code);
+            } else if (diverter.isUp()) {
+                rejected.add(sheet.code);
+            } else {
+                accepted.add(sheet.code);
+            }
+            sheet = null;
+        }
+    }
+}
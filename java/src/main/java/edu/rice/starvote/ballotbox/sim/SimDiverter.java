@@ -0,0 +1,95 @@
+package edu.rice.starvote.ballotbox.sim;
+
+import edu.rice.starvote.ballotbox.drivers.IDiverter;
+import edu.rice.starvote.ballotbox.drivers.ServoProfile;
+import edu.rice.starvote.ballotbox.util.Clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulated diverter. Takes as long to swing as the reference servo, according to its calibration profile; a sheet
+ * leaving the paper path before the swing completes is misrouted.
+ *
+ * @author luejerry
+ */
+public class SimDiverter implements IDiverter {
+
+    /**
+     * Distance of a full swing, in % duty cycle. Matches `DiverterPWM`.
+     */
+    final static double FULL_SWING = 5.4;
+
+    private final ServoProfile profile;
+    private boolean up = true;
+    private long settledAt = 0;
+
+    /**
+     * Constructor. The diverter starts at rest in the up position, with the HB-6001HD calibration profile.
+     */
+    SimDiverter() {
+        this(ServoProfile.HB6001HD);
+    }
+
+    /**
+     * Constructor. The diverter starts at rest in the up position.
+     * @param profile Calibration profile of the simulated servo.
+     */
+    SimDiverter(ServoProfile profile) {
+        this.profile = profile;
+    }
+
+    @Override
+    public void up() {
+        moveTo(true);
+    }
+
+    @Override
+    public void down() {
+        moveTo(false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Returns immediately if the last move has already completed.
+     */
+    @Override
+    public void waitUntilSettled() {
+        final long remaining;
+        synchronized (this) {
+            remaining = settledAt - Clock.nanoTime();
+        }
+        if (remaining <= 0) return;
+        try {
+            Clock.sleepMillis(TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Check whether the diverter was last commanded up.
+     * @return True if up (reject), false if down (accept).
+     */
+    public synchronized boolean isUp() {
+        return up;
+    }
+
+    /**
+     * Check whether the diverter has come to rest.
+     * @return True if the last move has completed.
+     */
+    public synchronized boolean isSettled() {
+        return Clock.nanoTime() >= settledAt;
+    }
+
+    /**
+     * Helper method to start a swing to a position, unless the diverter is already there.
+     * @param target True for up, false for down.
+     */
+    private synchronized void moveTo(boolean target) {
+        if (up == target) return;
+        up = target;
+        settledAt = Clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(profile.settleMillis(FULL_SWING));
+    }
+}
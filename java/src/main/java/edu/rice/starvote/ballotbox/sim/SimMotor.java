@@ -0,0 +1,62 @@
+package edu.rice.starvote.ballotbox.sim;
+
+import edu.rice.starvote.ballotbox.drivers.IMotor;
+
+/**
+ * Simulated feed motor. Moves the paper in the paper path model at a speed proportional to the duty cycle; the motor
+ * reaches its commanded speed immediately.
+ *
+ * @author luejerry
+ */
+public class SimMotor implements IMotor {
+
+    /**
+     * Duty cycle of the slow speeds, in %. Matches `PrinterMotor`.
+     */
+    final static double SLOW_SPEED = 25;
+
+    private final PaperPathModel model;
+
+    /**
+     * Constructor.
+     * @param model Paper path driven by the motor.
+     */
+    SimMotor(PaperPathModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public void stop() {
+        model.drive(0);
+    }
+
+    @Override
+    public void forward() {
+        model.drive(100);
+    }
+
+    @Override
+    public void forwardSlow() {
+        model.drive(SLOW_SPEED);
+    }
+
+    @Override
+    public void forward(double speed) {
+        model.drive(speed);
+    }
+
+    @Override
+    public void reverse() {
+        model.drive(-100);
+    }
+
+    @Override
+    public void reverseSlow() {
+        model.drive(-SLOW_SPEED);
+    }
+
+    @Override
+    public void reverse(double speed) {
+        model.drive(-speed);
+    }
+}
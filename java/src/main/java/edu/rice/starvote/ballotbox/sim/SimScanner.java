@@ -0,0 +1,41 @@
+package edu.rice.starvote.ballotbox.sim;
+
+import edu.rice.starvote.ballotbox.drivers.IScanner;
+import edu.rice.starvote.ballotbox.util.Clock;
+
+/**
+ * Simulated code scanner. Reads the code of the sheet under it after a fixed decode time, or waits out the full
+ * timeout if there is no readable sheet, as the reference scanner does.
+ *
+ * @author luejerry
+ */
+public class SimScanner implements IScanner {
+
+    /**
+     * Time to decode a code, in milliseconds.
+     */
+    final static long READ_MILLIS = 150;
+
+    private final PaperPathModel model;
+
+    /**
+     * Constructor.
+     * @param model Paper path under the scanner.
+     */
+    SimScanner(PaperPathModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public String scan(int timeout) {
+        try {
+            Clock.sleepMillis(READ_MILLIS);
+            final String code = model.codeUnderScanner();
+            if (code != null) return code;
+            Clock.sleepMillis(Math.max(0, timeout * 1000L - READ_MILLIS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "";
+    }
+}
@@ -0,0 +1,68 @@
+package edu.rice.starvote.ballotbox.sim;
+
+import com.pi4j.io.gpio.PinEdge;
+import com.pi4j.io.gpio.PinState;
+import edu.rice.starvote.ballotbox.util.EdgeSignal;
+import edu.rice.starvote.ballotbox.util.ISensor;
+
+/**
+ * Simulated digital paper sensor. Its state is set by the paper path model, and each change is signaled as an edge
+ * stamped with the simulated time at which it occurred, as a GPIO interrupt would be.
+ *
+ * @author luejerry
+ */
+public class SimSensor implements ISensor {
+
+    private final EdgeSignal signal = new EdgeSignal();
+    private volatile PinState state;
+
+    /**
+     * Constructor.
+     * @param initial Initial state of the sensor.
+     */
+    SimSensor(PinState initial) {
+        state = initial;
+    }
+
+    /**
+     * Change the state of the sensor, signaling an edge if it differs from the current state. Must only be called by
+     * one thread at a time.
+     * @param next New state.
+     * @param nanos Time of the change, from `Clock.nanoTime()`.
+     */
+    void set(PinState next, long nanos) {
+        if (next == state) return;
+        state = next;
+        signal.signal(next.isHigh() ? PinEdge.RISING : PinEdge.FALLING, nanos);
+    }
+
+    @Override
+    public boolean waitForEventAfter(PinEdge edge, long generation, long timeout) {
+        try {
+            return signal.awaitAfter(edge, generation, timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public long generation(PinEdge edge) {
+        return signal.generation(edge);
+    }
+
+    @Override
+    public long edgeNanos(PinEdge edge, long generation) {
+        return signal.edgeNanos(edge, generation);
+    }
+
+    @Override
+    public int recentIntervals(PinEdge start, long[] out) {
+        return signal.recentPulses(start, out);
+    }
+
+    @Override
+    public PinState getState() {
+        return state;
+    }
+}
@@ -0,0 +1,95 @@
+package edu.rice.starvote.ballotbox.sim;
+
+import edu.rice.starvote.ballotbox.BallotResult;
+import edu.rice.starvote.ballotbox.INetworkValidator;
+import edu.rice.starvote.ballotbox.util.Clock;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Local stand-in for the Auditorium supervisor. Accepts each issued code once and rejects everything else, answering
+ * after a random latency. Latencies are exponentially distributed and measured in `Clock` time; a decision that would
+ * take longer than the caller's timeout is answered with `TIMEOUT` when the timeout expires.
+ *
+ * The supervisor is always connected.
+ *
+ * @author luejerry
+ */
+public class SimSupervisor implements INetworkValidator {
+
+    /**
+     * Default time to wait for a decision, in milliseconds.
+     */
+    public final static long DEFAULT_TIMEOUT = 10000;
+
+    private final double meanLatency;
+    private final Random random;
+    private final Set<String> issued = new HashSet<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        final Thread thread = new Thread(task, "sim-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructor.
+     * @param meanLatency Mean time to answer a validation request, in milliseconds.
+     * @param random Random source of latencies.
+     */
+    public SimSupervisor(double meanLatency, Random random) {
+        this.meanLatency = meanLatency;
+        this.random = random;
+    }
+
+    /**
+     * Issue a code, as a ballot marking device would when printing a ballot. The code is accepted the first time it
+     * is validated.
+     * @param code Code of the ballot.
+     */
+    public synchronized void issue(String code) {
+        issued.add(code);
+    }
+
+    @Override
+    public CompletableFuture<BallotResult> validateAsync(String code, long millis) {
+        final double latency;
+        synchronized (this) {
+            latency = -Math.log(1 - random.nextDouble()) * meanLatency;
+        }
+        final CompletableFuture<BallotResult> decision = new CompletableFuture<>();
+        final long delay = (long) Math.min(latency, millis);
+        scheduler.schedule(() -> {
+            if (latency > millis) {
+                decision.complete(BallotResult.TIMEOUT);
+                return;
+            }
+            final boolean cast;
+            synchronized (this) {
+                cast = issued.remove(code);
+            }
+            decision.complete(cast ? BallotResult.ACCEPT : BallotResult.REJECT);
+        }, Clock.toRealNanos(TimeUnit.MILLISECONDS.toNanos(delay)), TimeUnit.NANOSECONDS);
+        return decision;
+    }
+
+    @Override
+    public CompletableFuture<BallotResult> validateAsync(String code) {
+        return validateAsync(code, DEFAULT_TIMEOUT);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    @Override
+    public void addConnectionListener(Consumer<Boolean> listener) {
+    }
+}
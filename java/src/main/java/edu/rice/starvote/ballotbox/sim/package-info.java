@@ -0,0 +1,9 @@
+/**
+ * Provides simulated hardware backends for running the ballot box without a Raspberry Pi: a model of the paper path
+ * (`PaperPathModel`) with the motor, diverter, scanner and sensors it drives. Combined with a scaled `Clock`, the paper
+ * feeder and monitor run faster than real time.
+ *
+ * @see edu.rice.starvote.ballotbox.SimController
+ * @author luejerry
+ */
+package edu.rice.starvote.ballotbox.sim;
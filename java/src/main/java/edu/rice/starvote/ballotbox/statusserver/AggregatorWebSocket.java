@@ -0,0 +1,30 @@
+package edu.rice.starvote.ballotbox.statusserver;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.WebSocket;
+
+/**
+ * WebSocket handler class for the status aggregator. Subscribes monitoring clients to the merged status stream of the
+ * running `StatusAggregator`.
+ *
+ * @see StatusAggregator
+ * @author luejerry
+ */
+@WebSocket
+public class AggregatorWebSocket {
+
+    @OnWebSocketConnect
+    public void connected(Session session) {
+        System.out.println(session.getRemoteAddress().getHostString() + " connected to aggregator");
+        StatusAggregator.instance.subscribe(session);
+    }
+
+    @OnWebSocketClose
+    public void closed(Session session, int statusCode, String reason) {
+        StatusAggregator.instance.unsubscribe(session);
+        System.out.println(session.getRemoteAddress().getHostString() + " disconnected from aggregator with code " +
+                statusCode + ": " + reason);
+    }
+}
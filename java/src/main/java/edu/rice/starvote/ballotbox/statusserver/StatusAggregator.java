@@ -0,0 +1,331 @@
+package edu.rice.starvote.ballotbox.statusserver;
+
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WebSocketListener;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import spark.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Status gateway for a polling place with several ballot boxes. Subscribes once to the status WebSocket of every box
+ * and fans out a single merged stream to any number of monitoring clients, so the load on each box stays the same no
+ * matter how many tablets are watching.
+ *
+ * Each box is subscribed with `/pushstatus?format=json` and sends its `StatusDocument` on every change. Documents
+ * that repeat one already seen (same boot ID and sequence number, e.g. after a reconnect) are dropped. Every box is
+ * pinged every `PING_INTERVAL`, so that a box whose status does not change is not dropped by the WebSocket idle
+ * timeout. A box that disconnects is reconnected at once; if that fails, it is reported offline and reconnected with
+ * exponential backoff.
+ *
+ * The aggregator serves the following routes on its own port:
+ *
+ *  - `/status`: JSON snapshot of every box:
+ *  `{"boxes":[{"box":"10.0.0.11:7654","online":true,"status":{...document...}}, ...]}`. `status` is null for a box
+ *  that has never been reached.
+ *  - `/pushstatus`: WebSocket that first sends the snapshot, then one message per box update in the form
+ *  `{"box":"10.0.0.11:7654","online":true,"status":{...document...}}`.
+ *
+ * ##### Example #####
+ * ```java
+ * StatusAggregator aggregator = new StatusAggregator(7655, Arrays.asList(
+ *         URI.create("ws://10.0.0.11:7654/pushstatus?format=json"),
+ *         URI.create("ws://10.0.0.12:7654/pushstatus?format=json")));
+ * aggregator.start();
+ * ```
+ *
+ * @author luejerry
+ */
+public class StatusAggregator {
+
+    /**
+     * Delay before the first reconnection attempt, in milliseconds. Doubles with each failed attempt.
+     */
+    final static long MIN_BACKOFF = 1000;
+    /**
+     * Maximum delay between reconnection attempts, in milliseconds.
+     */
+    final static long MAX_BACKOFF = 30000;
+    /**
+     * Time to wait for a box to accept a connection, in milliseconds.
+     */
+    final static long CONNECT_TIMEOUT = 5000;
+    /**
+     * Interval between pings to each box, in milliseconds. Well inside Jetty's default WebSocket idle timeout of five
+     * minutes.
+     */
+    final static long PING_INTERVAL = 30000;
+
+    private static final Pattern BOOT = Pattern.compile("\"boot\":\"([0-9a-f]+)\"");
+    private static final Pattern SEQ = Pattern.compile("\"seq\":(\\d+)");
+
+    /**
+     * The running aggregator. Must be static because the WebSocket handler (`AggregatorWebSocket`) is instantiated by
+     * Jetty.
+     */
+    static volatile StatusAggregator instance;
+
+    private final int port;
+    private final List<Box> boxes = new ArrayList<>();
+    private final WebSocketClient client = new WebSocketClient();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        final Thread thread = new Thread(task, "aggregator-connect");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final StatusBroadcaster broadcaster = new StatusBroadcaster();
+    private final Object lock = new Object();
+    private Service http;
+
+    /**
+     * Subscription to one box. Fields other than `session` are guarded by the aggregator lock.
+     */
+    private class Box implements WebSocketListener {
+        final String name;
+        final URI uri;
+        volatile Session session = null;
+        String document = null;
+        String boot = null;
+        long seq = -1;
+        boolean online = false;
+        boolean retryPending = false;
+        boolean reconnecting = false;
+        long connectedAt = 0;
+        long backoff = MIN_BACKOFF;
+
+        Box(URI uri) {
+            this.uri = uri;
+            this.name = uri.getHost() + ":" + uri.getPort();
+        }
+
+        /**
+         * Connect to the box. Runs on the scheduler thread.
+         */
+        void connect() {
+            try {
+                client.connect(this, uri).get(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                lost("connection failed: " + e.toString());
+            }
+        }
+
+        /**
+         * Schedule a reconnection attempt, unless one is already pending. A connection that was up for at least
+         * `MIN_BACKOFF` is reconnected at once, and the box is reported offline only if that fails; otherwise the box is
+         * reported offline and retried after the backoff delay.
+         * @param reason Reason for logging.
+         */
+        void lost(String reason) {
+            final long delay;
+            synchronized (lock) {
+                if (retryPending || scheduler.isShutdown()) return;
+                retryPending = true;
+                if (online && !reconnecting
+                        && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectedAt) >= MIN_BACKOFF) {
+                    reconnecting = true;
+                    delay = 0;
+                } else {
+                    reconnecting = false;
+                    delay = backoff;
+                    backoff = Math.min(MAX_BACKOFF, backoff * 2);
+                    if (online) {
+                        online = false;
+                        publish(this);
+                    }
+                }
+            }
+            System.err.println("Box " + name + " " + reason + ", retrying in " + delay + " ms");
+            scheduler.schedule(() -> {
+                synchronized (lock) {
+                    retryPending = false;
+                }
+                connect();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onWebSocketConnect(Session session) {
+            System.out.println("Box " + name + " connected");
+            synchronized (lock) {
+                this.session = session;
+                connectedAt = System.nanoTime();
+                reconnecting = false;
+                backoff = MIN_BACKOFF;
+                if (!online) {
+                    online = true;
+                    publish(this);
+                }
+            }
+        }
+
+        /**
+         * Ping the box, if connected, so that the connection is not closed as idle. Runs on the scheduler thread.
+         */
+        void ping() {
+            final Session current = session;
+            if (current == null || !current.isOpen()) return;
+            try {
+                current.getRemote().sendPing(ByteBuffer.allocate(0));
+            } catch (IOException e) {
+                System.err.println("Box " + name + " ping failed: " + e.toString());
+            }
+        }
+
+        @Override
+        public void onWebSocketText(String message) {
+            final Matcher bootMatch = BOOT.matcher(message);
+            final Matcher seqMatch = SEQ.matcher(message);
+            if (!bootMatch.find() || !seqMatch.find()) return;
+            final String messageBoot = bootMatch.group(1);
+            final long messageSeq = Long.parseLong(seqMatch.group(1));
+            synchronized (lock) {
+                if (messageBoot.equals(boot) && messageSeq <= seq) return; // Already seen
+                boot = messageBoot;
+                seq = messageSeq;
+                document = message;
+                publish(this);
+            }
+        }
+
+        @Override
+        public void onWebSocketBinary(byte[] payload, int offset, int len) {
+        }
+
+        @Override
+        public void onWebSocketClose(int statusCode, String reason) {
+            lost("disconnected with code " + statusCode + ": " + reason);
+        }
+
+        @Override
+        public void onWebSocketError(Throwable cause) {
+            lost("error: " + cause.toString());
+        }
+
+        /**
+         * Append the state of the box as JSON. Must be called holding the aggregator lock.
+         * @param builder Builder to append to.
+         * @return The builder.
+         */
+        StringBuilder appendJson(StringBuilder builder) {
+            return builder.append("{\"box\":\"").append(name)
+                    .append("\",\"online\":").append(online)
+                    .append(",\"status\":").append(document).append('}');
+        }
+    }
+
+    /**
+     * Constructor. Does not connect to the boxes or start the server.
+     * @param port Listening port for monitoring clients.
+     * @param boxUris WebSocket URIs of the boxes, e.g. `ws://10.0.0.11:7654/pushstatus?format=json`.
+     */
+    public StatusAggregator(int port, List<URI> boxUris) {
+        this.port = port;
+        boxUris.forEach(uri -> boxes.add(new Box(uri)));
+    }
+
+    /**
+     * Start the server and connect to every box. Boxes that cannot be reached are retried in the background.
+     * @throws Exception If the WebSocket client cannot be started.
+     */
+    public void start() throws Exception {
+        instance = this;
+        client.start();
+        http = Service.ignite().port(port);
+        http.webSocket("/pushstatus", AggregatorWebSocket.class);
+        http.get("/status", (request, response) -> {
+            response.status(200);
+            response.header("Access-Control-Allow-Origin", "*");
+            response.header("Cache-Control", "no-cache");
+            response.type("application/json");
+            return snapshot();
+        });
+        http.init();
+        boxes.forEach(box -> scheduler.execute(box::connect));
+        scheduler.scheduleWithFixedDelay(() -> boxes.forEach(Box::ping), PING_INTERVAL, PING_INTERVAL,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the server and disconnect from all boxes.
+     * @throws Exception If the WebSocket client fails to stop.
+     */
+    public void stop() throws Exception {
+        scheduler.shutdownNow();
+        client.stop();
+        if (http != null) http.stop();
+    }
+
+    /**
+     * Get the JSON snapshot of every box.
+     * @return JSON text.
+     */
+    public String snapshot() {
+        final StringBuilder builder = new StringBuilder(256 * boxes.size());
+        builder.append("{\"boxes\":[");
+        synchronized (lock) {
+            for (int i = 0; i < boxes.size(); i++) {
+                if (i > 0) builder.append(',');
+                boxes.get(i).appendJson(builder);
+            }
+        }
+        return builder.append("]}").toString();
+    }
+
+    /**
+     * Start sending the merged stream to a monitoring client, beginning with the snapshot.
+     * @param session WebSocket session of the client.
+     */
+    void subscribe(Session session) {
+        synchronized (lock) {
+            broadcaster.add(session, event -> null, this::snapshot);
+        }
+    }
+
+    /**
+     * Stop sending to a monitoring client.
+     * @param session WebSocket session of the client.
+     */
+    void unsubscribe(Session session) {
+        broadcaster.remove(session);
+    }
+
+    /**
+     * Helper method to send the state of a box to every monitoring client. Must be called holding the lock.
+     * @param box Updated box.
+     */
+    private void publish(Box box) {
+        broadcaster.broadcast(box.appendJson(new StringBuilder(256)).toString());
+    }
+
+    /**
+     * Aggregator entry point.
+     * @param args Listening port, followed by the address (`host` or `host:port`) of each box. The box port defaults
+     *             to 7654.
+     * @throws Exception If the aggregator cannot be started.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: statusaggregator <port> <box address> [<box address> ...]");
+            System.exit(1);
+        }
+        final List<URI> uris = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            final String address = args[i].contains(":") ? args[i] : args[i] + ":7654";
+            uris.add(URI.create("ws://" + address + "/pushstatus?format=json"));
+        }
+        final StatusAggregator aggregator = new StatusAggregator(Integer.parseInt(args[0]),
+                Collections.unmodifiableList(uris));
+        aggregator.start();
+        System.out.println("Aggregating " + uris.size() + " boxes on port " + args[0]);
+    }
+}
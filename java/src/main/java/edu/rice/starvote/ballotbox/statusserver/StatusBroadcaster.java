@@ -0,0 +1,228 @@
+package edu.rice.starvote.ballotbox.statusserver;
+
+import edu.rice.starvote.ballotbox.metrics.BallotMetrics;
+import edu.rice.starvote.ballotbox.util.EventLog;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Delivers status messages to a set of WebSocket sessions without blocking the caller. Each session has its own message
+ * format, e.g. the bare status or the full status event as JSON.
+ *
+ * Each session has a bounded outbound queue and at most one send in flight; the next queued message is sent when the
+ * previous send completes. Broadcasting only enqueues messages, so a slow or unresponsive client never delays the
+ * thread that broadcast the status, or any other client. If a session falls so far behind that its queue fills, the
+ * queued messages are collapsed into the latest one, since only the current status matters to a client that has
+ * missed updates. The initial message of a session is never collapsed: it may be the history a resuming client asked
+ * for, which later messages do not repeat.
+ *
+ * Sessions are evicted (and closed) when a send fails, when they are found to be closed, or when a send has been in
+ * flight for longer than the stall timeout.
+ *
+ * The time from broadcasting a message until each session has received it is recorded in `BallotMetrics.FANOUT`, and
+ * evictions in `BallotMetrics.EVICTIONS`.
+ *
+ * ##### Example #####
+ * ```java
+ * StatusBroadcaster broadcaster = new StatusBroadcaster();
+ * broadcaster.add(session, event -> event.status.toString(), () -> "WAITING");
+ * broadcaster.broadcast(new StatusEvent(1, BallotStatus.SPOOLING, System.currentTimeMillis()));
+ * ```
+ *
+ * @author luejerry
+ */
+public class StatusBroadcaster {
+
+    /**
+     * Default number of messages queued per session before the queue collapses to the latest message.
+     */
+    public final static int DEFAULT_QUEUE_SIZE = 8;
+
+    /**
+     * Default time a send may be in flight before the session is considered dead, in milliseconds.
+     */
+    public final static long DEFAULT_STALL_TIMEOUT = 10000;
+
+    private final int queueSize;
+    private final long stallNanos;
+    private final ConcurrentMap<Session, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final EventLog log = EventLog.get();
+
+    /**
+     * Message waiting to be sent, with the time it was queued.
+     */
+    private static class Queued {
+        final String message;
+        final long queuedAt;
+        final boolean initial;
+
+        Queued(String message, long queuedAt, boolean initial) {
+            this.message = message;
+            this.queuedAt = queuedAt;
+            this.initial = initial;
+        }
+    }
+
+    /**
+     * Outbound state of one session. Guarded by its own monitor.
+     */
+    private class Outbox implements WriteCallback {
+        final Session session;
+        final Function<StatusEvent, String> format;
+        final ArrayDeque<Queued> queue = new ArrayDeque<>();
+        boolean sending = false;
+        long sendStarted = 0;
+        long inFlightQueuedAt = 0;
+
+        Outbox(Session session, Function<StatusEvent, String> format) {
+            this.session = session;
+            this.format = format;
+        }
+
+        /**
+         * Queue a message, starting a send if none is in flight.
+         * @param message Message to send.
+         * @param initial True if this is the initial message of the session, which is kept when the queue collapses.
+         */
+        void offer(String message, boolean initial) {
+            final boolean stalled;
+            final long now = System.nanoTime();
+            synchronized (this) {
+                if (queue.size() >= queueSize) queue.removeIf(queued -> !queued.initial);
+                queue.add(new Queued(message, now, initial));
+                if (sending) {
+                    if (System.nanoTime() - sendStarted <= stallNanos) return;
+                    stalled = true;
+                } else {
+                    sending = true;
+                    stalled = false;
+                }
+            }
+            if (stalled) {
+                evict(this, "send stalled");
+            } else {
+                sendNext();
+            }
+        }
+
+        /**
+         * Send the next queued message, or mark the outbox idle if the queue is empty.
+         */
+        void sendNext() {
+            final Queued next;
+            synchronized (this) {
+                next = queue.poll();
+                if (next == null) {
+                    sending = false;
+                    return;
+                }
+                sendStarted = System.nanoTime();
+                inFlightQueuedAt = next.queuedAt;
+            }
+            if (!session.isOpen()) {
+                evict(this, "session closed");
+                return;
+            }
+            session.getRemote().sendString(next.message, this);
+        }
+
+        @Override
+        public void writeSuccess() {
+            final long queuedAt;
+            synchronized (this) {
+                queuedAt = inFlightQueuedAt;
+            }
+            BallotMetrics.FANOUT.recordSince(queuedAt);
+            sendNext();
+        }
+
+        @Override
+        public void writeFailed(Throwable x) {
+            evict(this, x.toString());
+        }
+    }
+
+    /**
+     * Constructor using the default queue size and stall timeout.
+     */
+    public StatusBroadcaster() {
+        this(DEFAULT_QUEUE_SIZE, DEFAULT_STALL_TIMEOUT);
+    }
+
+    /**
+     * Constructor.
+     * @param queueSize Number of messages queued per session before the queue collapses to the latest message.
+     * @param stallTimeout Time a send may be in flight before the session is evicted, in milliseconds.
+     */
+    public StatusBroadcaster(int queueSize, long stallTimeout) {
+        this.queueSize = queueSize;
+        this.stallNanos = TimeUnit.MILLISECONDS.toNanos(stallTimeout);
+    }
+
+    /**
+     * Add a session to receive broadcasts, and queue an initial message to it. The initial message is read after the
+     * session is added, so no broadcast made in between is missed.
+     * @param session WebSocket session.
+     * @param format Function formatting each status event into a message for this session.
+     * @param initial Supplier of the first message to send to the session, normally the current status.
+     */
+    public void add(Session session, Function<StatusEvent, String> format, Supplier<String> initial) {
+        final Outbox outbox = new Outbox(session, format);
+        outboxes.put(session, outbox);
+        outbox.offer(initial.get(), true);
+    }
+
+    /**
+     * Stop sending to a session. Messages queued to it are discarded.
+     * @param session WebSocket session.
+     */
+    public void remove(Session session) {
+        outboxes.remove(session);
+    }
+
+    /**
+     * Queue a status event to every session, formatted for each session. Does not block.
+     * @param event Status event to send.
+     */
+    public void broadcast(StatusEvent event) {
+        outboxes.values().forEach(outbox -> outbox.offer(outbox.format.apply(event), false));
+    }
+
+    /**
+     * Queue a preformatted message to every session, regardless of its format. Does not block.
+     * @param message Message to send.
+     */
+    public void broadcast(String message) {
+        outboxes.values().forEach(outbox -> outbox.offer(message, false));
+    }
+
+    /**
+     * Get the number of sessions receiving broadcasts.
+     * @return Session count.
+     */
+    public int size() {
+        return outboxes.size();
+    }
+
+    /**
+     * Helper method to remove a dead session and close it.
+     * @param outbox Outbox of the session.
+     * @param reason Reason for eviction, for logging.
+     */
+    private void evict(Outbox outbox, String reason) {
+        if (!outboxes.remove(outbox.session, outbox)) return;
+        BallotMetrics.EVICTIONS.increment();
+        log.log("status.evicted", outbox.session.getRemoteAddress().getHostString() + ": " + reason);
+        synchronized (outbox) {
+            outbox.queue.clear();
+        }
+        if (outbox.session.isOpen()) outbox.session.close();
+    }
+}
@@ -1,28 +1,68 @@
 package edu.rice.starvote.ballotbox.statusserver;
 
 import edu.rice.starvote.ballotbox.BallotStatus;
+import edu.rice.starvote.ballotbox.util.SerialExecutor;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Consumer;
 
 /**
  * Holds a ballot status value. Event handlers can be registered to objects of this class, to be executed whenever
  * a change is made to the status. Modifications to the status are thread-safe.
  *
+ * Every write is assigned a sequence number, starting from 0 for the initial status (see `StatusEvent`). Handlers can
+ * receive either the bare status (`addListener`) or the full event (`addEventListener`).
+ *
+ * Event handlers never run on the thread that writes the status. Each handler is registered with an executor to run
+ * on, or by default runs on the container's own pool of event threads. Each handler receives status updates one at a
+ * time, in the order they were written, but handlers run independently of each other: a slow handler (e.g. one playing
+ * a sound) does not delay other handlers, and writing the status never waits for any handler. Handlers registered
+ * with the same single-threaded executor do wait for each other.
+ *
+ * ##### Example #####
+ * ```java
+ * StatusContainer container = new StatusContainer();
+ * container.addListener(display::pushStatus);
+ * container.addListener(voice::pushStatus, Executors.newSingleThreadExecutor());
+ * container.writeStatus(BallotStatus.WAITING); // returns immediately
+ * ```
+ *
  * @author luejerry
  */
 public class StatusContainer {
 
-    private volatile BallotStatus status;
-    private final List<Consumer<BallotStatus>> listeners;
+    /**
+     * A registered event handler and the serial executor it runs on.
+     */
+    private static class Registration {
+        final Consumer<StatusEvent> task;
+        final Executor executor;
+
+        Registration(Consumer<StatusEvent> task, Executor executor) {
+            this.task = task;
+            this.executor = new SerialExecutor(executor);
+        }
+    }
+
+    private volatile StatusEvent event;
+    private final List<Registration> listeners;
+    private final ExecutorService eventThreads;
 
     /**
      * Constructs a new status container with an initial status of OFFLINE.
      */
     public StatusContainer() {
-        status = BallotStatus.OFFLINE;
-        listeners = new LinkedList<>();
+        event = new StatusEvent(0, BallotStatus.OFFLINE, System.currentTimeMillis());
+        listeners = new CopyOnWriteArrayList<>();
+        eventThreads = Executors.newCachedThreadPool(task -> {
+            final Thread thread = new Thread(task, "status-events");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -30,31 +70,84 @@ public class StatusContainer {
      * @return Current status.
      */
     public BallotStatus getStatus() {
-        return status;
+        return event.status;
+    }
+
+    /**
+     * Get the most recent status transition, including its sequence number.
+     * @return Current status event.
+     */
+    public StatusEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * Get the sequence number of the current status.
+     * @return Sequence number; 0 until the status is first written.
+     */
+    public long getSequence() {
+        return event.seq;
     }
 
     /**
-     * Modify the status. Runs the event handlers of all registered listeners, passing to them the new status.
+     * Modify the status. Queues the event handlers of all registered listeners to run with the new status, and returns
+     * without waiting for them.
      * @param status Updated status.
      */
     public synchronized void writeStatus(BallotStatus status) {
-        this.status = status;
-        listeners.forEach((listener) -> listener.accept(status));
+        final StatusEvent written = new StatusEvent(event.seq + 1, status, System.currentTimeMillis());
+        event = written;
+        listeners.forEach((listener) -> listener.executor.execute(() -> listener.task.accept(written)));
+    }
+
+    /**
+     * Register a new event listener, which fires whenever the status is updated via `writeStatus()`. The listener runs
+     * on the container's event threads, receiving updates one at a time in the order they were written, independently
+     * of other listeners.
+     * @param task Function to be executed when the status is changed. The function takes one parameter, the updated
+     *             status value.
+     */
+    public void addListener(Consumer<BallotStatus> task) {
+        addListener(task, eventThreads);
     }
 
     /**
-     * Register a new event listener, which fires whenever the status is updated via `writeStatus()`.
+     * Register a new event listener, which fires whenever the status is updated via `writeStatus()`. The listener runs
+     * on the given executor, receiving updates one at a time in the order they were written.
      * @param task Function to be executed when the status is changed. The function takes one parameter, the updated
      *             status value.
+     * @param executor Executor to run the listener on.
+     */
+    public void addListener(Consumer<BallotStatus> task, Executor executor) {
+        addEventListener(written -> task.accept(written.status), executor);
+    }
+
+    /**
+     * Register a new event listener that receives full status events, including sequence numbers. The listener runs on
+     * the container's event threads, receiving events one at a time in sequence order, independently of other
+     * listeners.
+     * @param task Function to be executed when the status is changed. The function takes one parameter, the status
+     *             event.
+     */
+    public void addEventListener(Consumer<StatusEvent> task) {
+        addEventListener(task, eventThreads);
+    }
+
+    /**
+     * Register a new event listener that receives full status events, including sequence numbers. The listener runs on
+     * the given executor, receiving events one at a time in sequence order.
+     * @param task Function to be executed when the status is changed. The function takes one parameter, the status
+     *             event.
+     * @param executor Executor to run the listener on.
      */
-    public synchronized void addListener(Consumer<BallotStatus> task) {
-        listeners.add(task);
+    public void addEventListener(Consumer<StatusEvent> task, Executor executor) {
+        listeners.add(new Registration(task, executor));
     }
 
     /**
-     * Clear all registered event listeners.
+     * Clear all registered event listeners. Updates already queued to them are still delivered.
      */
-    public synchronized void removeListeners() {
+    public void removeListeners() {
         listeners.clear();
     }
 }
@@ -0,0 +1,136 @@
+package edu.rice.starvote.ballotbox.statusserver;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Versioned snapshot of the ballot box status served to clients, kept pre-serialized. A new document is built once per
+ * status change (see `next()`), in every representation served, so that requests only copy out bytes that already
+ * exist.
+ *
+ * The JSON form is:
+ *
+ * ```
+ * {"version":1,"boot":"5f3a9c0e12b7d4a1","seq":42,"status":"accept","changed":1476470400000,
+ *  "started":1476466800000,"accepted":17,"rejected":2}
+ * ```
+ *
+ * The binary form is 42 bytes, big-endian:
+ *
+ * | Offset | Size | Field                                         |
+ * |--------|------|-----------------------------------------------|
+ * | 0      | 1    | Format version (1)                            |
+ * | 1      | 1    | Status (`BallotStatus` ordinal)               |
+ * | 2      | 8    | Boot ID                                       |
+ * | 10     | 8    | Sequence number                               |
+ * | 18     | 8    | Time of last change, ms since epoch           |
+ * | 26     | 8    | Time the server started, ms since epoch       |
+ * | 34     | 4    | Ballots accepted since start                  |
+ * | 38     | 4    | Ballots rejected since start                  |
+ *
+ * The boot ID is chosen randomly when the server starts, so that clients can tell sequence numbers from different runs
+ * apart. Each document has an entity tag derived from the boot ID and sequence number.
+ *
+ * @author luejerry
+ */
+public class StatusDocument {
+
+    /**
+     * Format version of both representations.
+     */
+    public final static int VERSION = 1;
+
+    /**
+     * Size of the binary representation, in bytes.
+     */
+    public final static int BINARY_SIZE = 42;
+
+    public final long boot;
+    public final long seq;
+    public final BallotStatus status;
+    public final long changed;
+    public final long started;
+    public final int accepted;
+    public final int rejected;
+
+    private final String etag;
+    private final String json;
+    private final byte[] binary;
+
+    /**
+     * Constructor. Serializes the document.
+     */
+    private StatusDocument(long boot, long seq, BallotStatus status, long changed, long started, int accepted,
+                           int rejected) {
+        this.boot = boot;
+        this.seq = seq;
+        this.status = status;
+        this.changed = changed;
+        this.started = started;
+        this.accepted = accepted;
+        this.rejected = rejected;
+
+        final String bootHex = String.format("%016x", boot);
+        etag = bootHex + "-" + Long.toHexString(seq);
+        json = "{\"version\":" + VERSION + ",\"boot\":\"" + bootHex + "\",\"seq\":" + seq
+                + ",\"status\":\"" + status.toString() + "\",\"changed\":" + changed + ",\"started\":" + started
+                + ",\"accepted\":" + accepted + ",\"rejected\":" + rejected + "}";
+        binary = ByteBuffer.allocate(BINARY_SIZE)
+                .put((byte) VERSION)
+                .put((byte) status.ordinal())
+                .putLong(boot)
+                .putLong(seq)
+                .putLong(changed)
+                .putLong(started)
+                .putInt(accepted)
+                .putInt(rejected)
+                .array();
+    }
+
+    /**
+     * Create the first document of a server run.
+     * @param boot Boot ID of this run.
+     * @param event Current status event.
+     * @return Status document.
+     */
+    public static StatusDocument initial(long boot, StatusEvent event) {
+        return new StatusDocument(boot, event.seq, event.status, event.time, System.currentTimeMillis(), 0, 0);
+    }
+
+    /**
+     * Create the document following a status change, updating the ballot counters.
+     * @param event New status event.
+     * @return Status document.
+     */
+    public StatusDocument next(StatusEvent event) {
+        return new StatusDocument(boot, event.seq, event.status, event.time, started,
+                accepted + ((event.status == BallotStatus.ACCEPT) ? 1 : 0),
+                rejected + ((event.status == BallotStatus.REJECT) ? 1 : 0));
+    }
+
+    /**
+     * Get the entity tag of the document, without quotes. Suffix it with the representation when serving more than
+     * one, so each representation has its own tag.
+     * @return Entity tag, e.g. `5f3a9c0e12b7d4a1-2a`.
+     */
+    public String etag() {
+        return etag;
+    }
+
+    /**
+     * Get the JSON representation.
+     * @return JSON text.
+     */
+    public String json() {
+        return json;
+    }
+
+    /**
+     * Get the binary representation. The returned array is shared and must not be modified.
+     * @return Binary document.
+     */
+    public byte[] binary() {
+        return binary;
+    }
+}
@@ -0,0 +1,68 @@
+package edu.rice.starvote.ballotbox.statusserver;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+
+/**
+ * A ballot status transition: the new status, its sequence number, and when it was written. Sequence numbers are
+ * assigned by `StatusContainer`, starting from 0 for the initial status and increasing by one with every write, so a
+ * client that has seen sequence `n` has missed nothing if the next event it receives is `n + 1`.
+ *
+ * @author luejerry
+ */
+public class StatusEvent {
+
+    public final long seq;
+    public final BallotStatus status;
+    /**
+     * Time the status was written, in milliseconds since the epoch.
+     */
+    public final long time;
+
+    /**
+     * Constructor.
+     * @param seq Sequence number.
+     * @param status Ballot status.
+     * @param time Time the status was written, in milliseconds since the epoch.
+     */
+    public StatusEvent(long seq, BallotStatus status, long time) {
+        this.seq = seq;
+        this.status = status;
+        this.time = time;
+    }
+
+    /**
+     * Format the event as a JSON object, e.g. `{"seq":12,"status":"accept","time":1476470400000}`.
+     * @return JSON text.
+     */
+    public String toJson() {
+        return appendJson(new StringBuilder(64)).toString();
+    }
+
+    /**
+     * Append the event to a string builder as a JSON object.
+     * @param builder Builder to append to.
+     * @return The builder.
+     */
+    public StringBuilder appendJson(StringBuilder builder) {
+        return appendJson(builder, seq, status, time);
+    }
+
+    /**
+     * Helper method to append an event to a string builder as a JSON object, without constructing the event.
+     * @param builder Builder to append to.
+     * @param seq Sequence number.
+     * @param status Ballot status.
+     * @param time Time the status was written, in milliseconds since the epoch.
+     * @return The builder.
+     */
+    static StringBuilder appendJson(StringBuilder builder, long seq, BallotStatus status, long time) {
+        return builder.append("{\"seq\":").append(seq)
+                .append(",\"status\":\"").append(status.toString())
+                .append("\",\"time\":").append(time).append('}');
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
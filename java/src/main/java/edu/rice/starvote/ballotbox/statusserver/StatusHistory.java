@@ -0,0 +1,146 @@
+package edu.rice.starvote.ballotbox.statusserver;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-capacity log of the most recent status transitions, so that clients that were disconnected can catch up on
+ * what they missed. Storage is preallocated: each transition takes one byte for the status and eight for the time, and
+ * its sequence number determines its slot. Once full, each new transition replaces the oldest. Methods are thread-safe.
+ *
+ * ##### Example #####
+ * Build the JSON history of everything after sequence 41:
+ *
+ * ```java
+ * StatusHistory history = new StatusHistory(256);
+ * container.addEventListener(history::record);
+ * String json = history.toJson(41);
+ * ```
+ *
+ * @author luejerry
+ */
+public class StatusHistory {
+
+    /**
+     * Default number of transitions held.
+     */
+    public final static int DEFAULT_CAPACITY = 256;
+
+    private static final BallotStatus[] STATUSES = BallotStatus.values();
+
+    private final byte[] statuses;
+    private final long[] times;
+    private long first = 0; // oldest sequence held
+    private long next = 0; // sequence following the newest held
+
+    /**
+     * Constructor with the default capacity.
+     */
+    public StatusHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     * @param capacity Number of transitions held.
+     */
+    public StatusHistory(int capacity) {
+        statuses = new byte[capacity];
+        times = new long[capacity];
+    }
+
+    /**
+     * Record a status transition. Transitions must be recorded in sequence order; if a sequence number is skipped,
+     * older transitions are discarded so the history stays contiguous.
+     * @param event Status transition.
+     */
+    public synchronized void record(StatusEvent event) {
+        if (event.seq != next) {
+            first = event.seq;
+        }
+        final int slot = (int) (event.seq % statuses.length);
+        statuses[slot] = (byte) event.status.ordinal();
+        times[slot] = event.time;
+        next = event.seq + 1;
+        first = Math.max(first, next - statuses.length);
+        notifyAll();
+    }
+
+    /**
+     * Block until a transition after the given sequence number has been recorded, the timeout expires, or the thread
+     * is interrupted. Returns immediately if such a transition is already held, or if the sequence number is newer
+     * than the history (the box has restarted since the client last saw it).
+     * @param seq Last sequence number the caller has seen.
+     * @param timeout Time to wait in milliseconds.
+     * @return True if the history has transitions the caller has not seen.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized boolean awaitAfter(long seq, long timeout) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (seq == next - 1) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            wait(remaining / 1000000, (int) (remaining % 1000000));
+        }
+        return true;
+    }
+
+    /**
+     * Get the sequence number of the oldest transition held.
+     * @return Sequence number. Equal to `latest() + 1` if the history is empty.
+     */
+    public synchronized long oldest() {
+        return first;
+    }
+
+    /**
+     * Get the sequence number of the newest transition held.
+     * @return Sequence number, or -1 if nothing has been recorded.
+     */
+    public synchronized long latest() {
+        return next - 1;
+    }
+
+    /**
+     * Get a transition by sequence number.
+     * @param seq Sequence number.
+     * @return Transition, or null if not held.
+     */
+    public synchronized StatusEvent get(long seq) {
+        if (seq < first || seq >= next) return null;
+        final int slot = (int) (seq % statuses.length);
+        return new StatusEvent(seq, STATUSES[statuses[slot]], times[slot]);
+    }
+
+    /**
+     * Format every transition after a sequence number as a JSON object:
+     *
+     * ```
+     * {"oldest":30,"latest":42,"complete":true,"events":[{"seq":42,"status":"accept","time":1476470400000}]}
+     * ```
+     *
+     * `complete` is false if transitions after `since` have already been discarded, or if `since` is newer than the
+     * history (the box has restarted since the client last saw it). In that case the whole history is returned and the
+     * client should treat the newest event as authoritative.
+     *
+     * @param since Last sequence number the client has seen. Use -1 to get the whole history.
+     * @return JSON text.
+     */
+    public synchronized String toJson(long since) {
+        /* A sequence newer than the history is from before the box restarted: send everything. */
+        final boolean known = since < next;
+        final long from = known ? Math.max(since + 1, first) : first;
+        final StringBuilder builder = new StringBuilder(96 + 48 * (int) Math.max(0, next - from));
+        builder.append("{\"oldest\":").append(first)
+                .append(",\"latest\":").append(next - 1)
+                .append(",\"complete\":").append(known && since + 1 >= first)
+                .append(",\"events\":[");
+        for (long seq = from; seq < next; seq++) {
+            if (seq > from) builder.append(',');
+            final int slot = (int) (seq % statuses.length);
+            StatusEvent.appendJson(builder, seq, STATUSES[statuses[slot]], times[slot]);
+        }
+        return builder.append("]}").toString();
+    }
+}
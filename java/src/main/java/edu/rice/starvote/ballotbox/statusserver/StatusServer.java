@@ -1,24 +1,49 @@
 package edu.rice.starvote.ballotbox.statusserver;
 
-import edu.rice.starvote.ballotbox.BallotStatus;
-import org.eclipse.jetty.websocket.api.Session;
+import edu.rice.starvote.ballotbox.metrics.MetricsRegistry;
+import edu.rice.starvote.ballotbox.util.EventLog;
+import spark.Request;
+import spark.Response;
 
 import java.io.IOException;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
 
 import static spark.Spark.*;
 
 /**
- * Web server that supplies the current status of the ballot box. There are two available routes, supporting HTTP and
- * WebSocket methods of communication:
+ * Web server that supplies the current status of the ballot box. The following routes are available, supporting HTTP,
+ * WebSocket and Server-Sent Events methods of communication:
  *
- *  - `/status`: returns the status of the box in plaintext.
+ *  - `/status`: returns the status of the box. By default the bare status is returned as plain text. With an `Accept`
+ *  header of `application/json` or `application/octet-stream`, the full status document (sequence number, counters
+ *  and timestamps) is returned in JSON or binary form (see `StatusDocument`). Responses carry an `ETag`; a request
+ *  whose `If-None-Match` matches the current status gets an empty `304 Not Modified`, so polling an unchanged status
+ *  costs almost nothing.
+ *  - `/history?since=<seq>`: returns the status transitions after sequence number `seq` as JSON (see
+ *  `StatusHistory.toJson()`). Without `since`, returns all transitions held.
  *  - `/pushstatus`: WebSocket that sends the status of the box in plaintext whenever it is updated. Messages from the
  *  client are ignored.
+ *  - `/pushstatus?since=<seq>`: WebSocket that first sends the history after `seq` in the `/history` format, then
+ *  sends each status transition as a JSON event (see `StatusEvent.toJson()`). A client that reconnects with the last
+ *  sequence number it saw catches up on everything it missed in one message.
+ *  - `/pushstatus?format=json`: WebSocket that sends the JSON status document whenever the status is updated.
+ *  - `/status/poll?since=<seq>&timeout=<ms>`: long poll. Blocks until there are transitions after `seq`, then returns
+ *  them in the `/history` format. Returns `204 No Content` if nothing happens before the timeout (at most 25 seconds).
+ *  - `/events`: Server-Sent Events stream. Each status transition is sent as a `status` event whose ID is its sequence
+ *  number and whose data is the JSON event. On reconnect, the browser's `Last-Event-ID` header (or a `since`
+ *  parameter) resumes the stream from the history. A comment is sent every 15 seconds to keep proxies from closing
+ *  an idle stream.
+ *  - `/metrics`: operational metrics of the box (stage timings, ballot counts, WebSocket fan-out latency) in the
+ *  Prometheus plain text format. See `BallotMetrics`.
  *
  *  Clients are recommended to use WebSockets, as it allows updates to be pushed directly by the server as they occur
- *  and minimizes unnecessary network usage. However, HTTP polling is also fully supported.
+ *  and minimizes unnecessary network usage. For clients behind proxies that do not support WebSockets, Server-Sent
+ *  Events or long polling give the same latency at a fraction of the requests of polling `/status`. Note that each
+ *  open stream or pending poll occupies a server thread.
+ *
+ *  WebSocket updates are sent asynchronously through a `StatusBroadcaster`, so status updates never wait on clients.
  *
  *  The server is not started on instantiation. To begin listening, call `start()`.
  *
@@ -30,9 +55,36 @@ public class StatusServer {
     private StatusContainer statusProvider;
 
     /**
-     * All connected WebSocket sessions. Unfortunately must be static due to limitation of the Spark/Jetty server.
+     * Broadcaster to all connected WebSocket sessions. Unfortunately must be static due to limitation of the
+     * Spark/Jetty server.
+     */
+    static final StatusBroadcaster broadcaster = new StatusBroadcaster();
+
+    /**
+     * Recent status transitions. Also serves as the lock ordering history records against WebSocket subscriptions, so
+     * that a resuming client receives every transition exactly once.
+     */
+    static final StatusHistory history = new StatusHistory();
+
+    /**
+     * Random identifier of this server run, distinguishing its sequence numbers from those of previous runs.
+     */
+    static final long BOOT_ID = new Random().nextLong();
+
+    /**
+     * Current status document, rebuilt on every status change.
      */
-    static Queue<Session> sessions = new ConcurrentLinkedQueue<>();
+    static volatile StatusDocument document;
+
+    /**
+     * Default and maximum time a long poll may wait, in milliseconds. Kept under the server's 30 second idle timeout.
+     */
+    final static long POLL_TIMEOUT = 25000;
+
+    /**
+     * Interval between keep-alive comments on an idle event stream, in milliseconds.
+     */
+    final static long HEARTBEAT_INTERVAL = 15000;
 
     /**
      * Constructor. Does not start the server.
@@ -45,15 +97,77 @@ public class StatusServer {
     }
 
     /**
-     * Set HTTP routes (`/status`).
+     * Set HTTP routes (`/status`, `/history`, `/status/poll`, `/events`, `/metrics`).
      */
     private void setRoutes() {
-        get("/status", (request, response) -> {
-            final BallotStatus status = this.statusProvider.getStatus();
+        get("/history", (request, response) -> {
+            final long since;
+            try {
+                since = parseLong(request.queryParams("since"), -1);
+            } catch (NumberFormatException e) {
+                response.status(400);
+                return "Invalid sequence number";
+            }
+            response.status(200);
+            response.header("Access-Control-Allow-Origin", "*");
+            response.type("application/json");
+            return history.toJson(since);
+        });
+        get("/status/poll", (request, response) -> {
+            final long since;
+            final long timeout;
+            try {
+                since = parseLong(request.queryParams("since"), -1);
+                timeout = Math.min(POLL_TIMEOUT, Math.max(0, parseLong(request.queryParams("timeout"), POLL_TIMEOUT)));
+            } catch (NumberFormatException e) {
+                response.status(400);
+                return "Invalid sequence number or timeout";
+            }
+            response.header("Access-Control-Allow-Origin", "*");
+            response.header("Cache-Control", "no-cache");
+            if (!history.awaitAfter(since, timeout)) {
+                response.status(204);
+                return "";
+            }
             response.status(200);
+            response.type("application/json");
+            return history.toJson(since);
+        });
+        get("/events", this::streamEvents);
+        get("/status", (request, response) -> {
+            final StatusDocument current = document;
+            final String accept = request.headers("Accept");
+            final String type;
+            final Object body;
+            if (accept != null && accept.contains("application/json")) {
+                type = "application/json";
+                body = current.json();
+            } else if (accept != null && accept.contains("application/octet-stream")) {
+                type = "application/octet-stream";
+                body = current.binary();
+            } else {
+                type = "text/plain";
+                body = current.status.toString();
+            }
+            final String etag = "\"" + current.etag() + "-" + type.charAt(type.indexOf('/') + 1) + "\"";
             response.header("Access-Control-Allow-Origin", "*");
-            response.header("Content-type", "text/html");
-            return status.toString();
+            response.header("Cache-Control", "no-cache");
+            response.header("Vary", "Accept");
+            response.header("ETag", etag);
+            final String ifNoneMatch = request.headers("If-None-Match");
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                response.status(304);
+                return "";
+            }
+            response.status(200);
+            response.type(type);
+            return body;
+        });
+        get("/metrics", (request, response) -> {
+            response.status(200);
+            response.header("Cache-Control", "no-cache");
+            response.type("text/plain; version=0.0.4");
+            return MetricsRegistry.DEFAULT.render();
         });
     }
 
@@ -62,14 +176,91 @@ public class StatusServer {
      */
     private void setWebSocket() {
         webSocket("/pushstatus", StatusWebSocket.class);
-        statusProvider.addListener((status) -> sessions.parallelStream().forEach((session) -> {
-            System.out.println("Send status update: " + status.toString() + " to " + session.getRemoteAddress().getHostString());
-            try {
-                session.getRemote().sendString(status.toString());
-            } catch (IOException e) {
-                System.err.println(e.toString());
+    }
+
+    /**
+     * Helper method to keep the history, the status document and WebSocket clients up to date with the status
+     * container. The listener is registered before the current status is read, so that no write is missed in between;
+     * events already included in that status are skipped.
+     */
+    private void subscribe() {
+        final EventLog log = EventLog.get();
+        synchronized (history) {
+            statusProvider.addEventListener((event) -> {
+                synchronized (history) {
+                    if (event.seq <= document.seq) return; // Included in the initial status
+                    log.log("status.broadcast", broadcaster.size(), event.status);
+                    history.record(event);
+                    document = document.next(event);
+                    broadcaster.broadcast(event);
+                }
+            });
+            final StatusEvent initial = statusProvider.getEvent();
+            history.record(initial);
+            document = StatusDocument.initial(BOOT_ID, initial);
+        }
+    }
+
+    /**
+     * Serve a Server-Sent Events stream of status transitions. Blocks the calling server thread until the client
+     * disconnects.
+     * @param request HTTP request.
+     * @param response HTTP response.
+     * @return Empty body; events are written directly to the response.
+     */
+    private Object streamEvents(Request request, Response response) {
+        long last;
+        try {
+            final String lastEventId = request.headers("Last-Event-ID");
+            last = parseLong((lastEventId != null) ? lastEventId : request.queryParams("since"), Long.MIN_VALUE);
+        } catch (NumberFormatException e) {
+            last = Long.MIN_VALUE;
+        }
+        response.status(200);
+        response.type("text/event-stream");
+        response.header("Access-Control-Allow-Origin", "*");
+        response.header("Cache-Control", "no-cache");
+        final EventLog log = EventLog.get();
+        log.log("status.stream_opened", request.ip());
+        try {
+            final OutputStream out = response.raw().getOutputStream();
+            final StringBuilder message = new StringBuilder(128);
+            /* Without a known sequence, start from the current status only. */
+            if (last == Long.MIN_VALUE || last > history.latest()) last = history.latest() - 1;
+            while (true) {
+                message.setLength(0);
+                if (history.awaitAfter(last, HEARTBEAT_INTERVAL)) {
+                    final long latest = history.latest();
+                    for (long seq = Math.max(last + 1, history.oldest()); seq <= latest; seq++) {
+                        final StatusEvent event = history.get(seq);
+                        if (event == null) continue;
+                        message.append("event: status\nid: ").append(seq).append("\ndata: ");
+                        event.appendJson(message).append("\n\n");
+                    }
+                    last = latest;
+                } else {
+                    message.append(": keep-alive\n\n");
+                }
+                out.write(message.toString().getBytes(StandardCharsets.UTF_8));
+                response.raw().flushBuffer();
             }
-        }));
+        } catch (IOException e) {
+            log.log("status.stream_closed", request.ip());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "";
+    }
+
+    /**
+     * Helper method to parse an optional numeric parameter.
+     * @param value Parameter value, or null if absent.
+     * @param absent Value to use if the parameter is absent.
+     * @return Parsed value.
+     * @throws NumberFormatException If the parameter is present but not a number.
+     */
+    private static long parseLong(String value, long absent) {
+        return (value == null) ? absent : Long.parseLong(value);
     }
 
     /**
@@ -77,6 +268,7 @@ public class StatusServer {
      */
     public void start() {
         port(port);
+        subscribe();
         setWebSocket();
         setRoutes();
     }
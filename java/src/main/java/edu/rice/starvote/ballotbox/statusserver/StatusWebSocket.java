@@ -1,5 +1,6 @@
 package edu.rice.starvote.ballotbox.statusserver;
 
+import edu.rice.starvote.ballotbox.util.EventLog;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
@@ -7,9 +8,12 @@ import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 
 /**
- * WebSocket handler class for status server. Manages the global WebSocket sessions list.
+ * WebSocket handler class for status server. Registers sessions with the global status broadcaster. A client that
+ * connects with a `since` query parameter is sent the status history after that sequence number, then JSON events.
  *
  * @author luejerry
  */
@@ -18,22 +22,47 @@ public class StatusWebSocket {
 
     @OnWebSocketConnect
     public void connected(Session session) throws IOException {
-        StatusServer.sessions.add(session);
-        System.out.println(session.getRemoteAddress().getHostString() + " connected");
+        EventLog.get().log("status.client_connected", session.getRemoteAddress().getHostString());
 
-        // Send the box status immediately on connect. Note that other parts of the program MUST be updating (writing)
-        // the static container in order for this to be accurate.
-        session.getRemote().sendString(StaticContainer.statusContainer.getStatus().toString());
+        final Map<String, List<String>> params = session.getUpgradeRequest().getParameterMap();
+        final List<String> since = params.get("since");
+        final List<String> format = params.get("format");
+        if (format != null && format.contains("json")) {
+            // Send the pre-serialized status document on connect and on every change.
+            synchronized (StatusServer.history) {
+                StatusServer.broadcaster.add(session, event -> StatusServer.document.json(),
+                        () -> StatusServer.document.json());
+            }
+        } else if (since != null && !since.isEmpty()) {
+            long seq;
+            try {
+                seq = Long.parseLong(since.get(0));
+            } catch (NumberFormatException e) {
+                seq = -1;
+            }
+            final long resumeFrom = seq;
+            // Resume: send the history since the client's last sequence, then every new event.
+            synchronized (StatusServer.history) {
+                StatusServer.broadcaster.add(session, StatusEvent::toJson,
+                        () -> StatusServer.history.toJson(resumeFrom));
+            }
+        } else {
+            // Send the box status immediately on connect. Note that other parts of the program MUST be updating
+            // (writing) the static container in order for this to be accurate.
+            StatusServer.broadcaster.add(session, event -> event.status.toString(),
+                    () -> StaticContainer.statusContainer.getStatus().toString());
+        }
     }
 
     @OnWebSocketClose
     public void closed(Session session, int statusCode, String reason) {
-        StatusServer.sessions.remove(session);
-        System.out.println(session.getRemoteAddress().getHostString() + " disconnected with code " + statusCode + ": " + reason);
+        StatusServer.broadcaster.remove(session);
+        EventLog.get().log("status.client_disconnected", statusCode,
+                session.getRemoteAddress().getHostString() + ": " + reason);
     }
 
     @OnWebSocketMessage
     public void message(Session session, String message) throws IOException {
-        System.out.println(session.getRemoteAddress().getHostString() + " messaged: " + message);
+        EventLog.get().log("status.client_message", session.getRemoteAddress().getHostString() + ": " + message);
     }
 }
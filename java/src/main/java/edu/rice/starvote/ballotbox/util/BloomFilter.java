@@ -0,0 +1,103 @@
+package edu.rice.starvote.ballotbox.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compact probabilistic set of strings. Membership queries never produce false negatives: `mightContain()` always
+ * returns true for a string that was added. False positives occur at approximately the rate the filter was sized for,
+ * as long as no more than the expected number of strings is added. Strings cannot be removed.
+ *
+ * Insertion and lookup are lock-free and safe to use from multiple threads.
+ *
+ * @author luejerry
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+
+    /**
+     * Constructor. Allocates a filter sized for the given capacity and false positive rate.
+     * @param expectedInsertions Expected number of strings to be added.
+     * @param falsePositiveRate Desired false positive rate at capacity, in range (0.0, 1.0).
+     */
+    public BloomFilter(int expectedInsertions, double falsePositiveRate) {
+        final double n = Math.max(1, expectedInsertions);
+        final long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bits = new AtomicLongArray((int) ((m + 63) / 64));
+        numBits = bits.length() * 64L;
+        numHashes = Math.max(1, (int) Math.round(numBits / n * Math.log(2)));
+    }
+
+    /**
+     * Add a string to the set.
+     * @param value String to add.
+     */
+    public void put(String value) {
+        final long hash = hash(value);
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            final long bit = index(h1 + i * h2);
+            final int word = (int) (bit >>> 6);
+            final long mask = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0) {
+                if (bits.compareAndSet(word, current, current | mask)) break;
+            }
+        }
+    }
+
+    /**
+     * Test whether a string might be in the set.
+     * @param value String to test.
+     * @return False if the string was definitely never added, true if it probably was.
+     */
+    public boolean mightContain(String value) {
+        final long hash = hash(value);
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            final long bit = index(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the size of the filter.
+     * @return Number of bits used by the filter.
+     */
+    public long bitSize() {
+        return numBits;
+    }
+
+    /**
+     * Helper method to map a combined hash to a bit index.
+     * @param combined Combined hash value.
+     * @return Bit index in range [0, numBits).
+     */
+    private long index(int combined) {
+        return (combined & 0xFFFFFFFFL) % numBits;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a string, with a final avalanche step so both halves are usable as independent hashes.
+     * @param value String to hash.
+     * @return 64-bit hash.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,76 @@
+package edu.rice.starvote.ballotbox.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monotonic time source and sleep for the paper feed path, with an optional time scale for running simulated hardware
+ * faster than real time.
+ *
+ * At the default scale of 1, `nanoTime()` is `System.nanoTime()` and `sleepMillis()` sleeps for the given time. At a
+ * scale of `s`, the clock runs `s` times as fast as real time: durations measured with `nanoTime()` and delays passed
+ * to `sleepMillis()` or to sensor waits are in simulated time, and take `1/s` as long in real time. The scale must be
+ * set before any hardware is started, and not changed afterward.
+ *
+ * ##### Example #####
+ * ```java
+ * Clock.setScale(20); // Simulate 20 seconds per second
+ * final long start = Clock.nanoTime();
+ * Clock.sleepMillis(1000); // Returns after 50 ms
+ * ```
+ *
+ * @author luejerry
+ */
+public class Clock {
+
+    private final static long ORIGIN = System.nanoTime();
+    private static volatile double scale = 1;
+
+    private Clock() {
+    }
+
+    /**
+     * Set the time scale.
+     * @param timeScale Simulated time per unit of real time. Must be positive.
+     */
+    public static void setScale(double timeScale) {
+        if (!(timeScale > 0)) throw new IllegalArgumentException("Time scale must be positive");
+        scale = timeScale;
+    }
+
+    /**
+     * Get the time scale.
+     * @return Simulated time per unit of real time.
+     */
+    public static double scale() {
+        return scale;
+    }
+
+    /**
+     * Get the current time of the clock.
+     * @return Time in nanoseconds, from an arbitrary origin. Equal to `System.nanoTime()` at the default scale.
+     */
+    public static long nanoTime() {
+        final double current = scale;
+        final long now = System.nanoTime();
+        return (current == 1) ? now : ORIGIN + (long) ((now - ORIGIN) * current);
+    }
+
+    /**
+     * Convert a duration in clock time to real time.
+     * @param nanos Duration in nanoseconds of clock time.
+     * @return Duration in nanoseconds of real time.
+     */
+    public static long toRealNanos(long nanos) {
+        final double current = scale;
+        return (current == 1) ? nanos : (long) (nanos / current);
+    }
+
+    /**
+     * Sleep for a duration of clock time.
+     * @param millis Duration in milliseconds of clock time.
+     * @throws InterruptedException If interrupted while sleeping.
+     */
+    public static void sleepMillis(long millis) throws InterruptedException {
+        TimeUnit.NANOSECONDS.sleep(toRealNanos(TimeUnit.MILLISECONDS.toNanos(millis)));
+    }
+}
@@ -0,0 +1,85 @@
+package edu.rice.starvote.ballotbox.util;
+
+import com.pi4j.io.gpio.PinEdge;
+import com.pi4j.io.gpio.PinState;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Debouncing filter for a digital sensor. A state is confirmed once the sensor has held it for a stable window without
+ * any edges. The window is measured from the timestamp of the last edge rather than from when the caller started
+ * waiting, so a state that has already been stable long enough is confirmed immediately.
+ *
+ * ##### Example #####
+ * Confirming paper in the tray after a rising edge, allowing for contact bounce:
+ *
+ * ```java
+ * Debouncer debouncer = new Debouncer(traySensor, 100, 2000);
+ * traySensor.waitForEvent(PinEdge.RISING);
+ * if (debouncer.awaitStable(PinState.HIGH)) {
+ *     // Paper is present
+ * }
+ * ```
+ *
+ * @author luejerry
+ */
+public class Debouncer {
+
+    /**
+     * Default time the sensor must hold a state without edges, in milliseconds.
+     */
+    public final static long DEFAULT_STABLE_MILLIS = 100;
+
+    /**
+     * Default longest time to wait for the sensor to stop bouncing, in milliseconds.
+     */
+    public final static long DEFAULT_SETTLE_TIMEOUT = 2000;
+
+    private final ISensor sensor;
+    private final long stableNanos;
+    private final long settleTimeout;
+
+    /**
+     * Constructor using the default stable window and settle timeout.
+     * @param sensor Sensor to debounce.
+     */
+    public Debouncer(ISensor sensor) {
+        this(sensor, DEFAULT_STABLE_MILLIS, DEFAULT_SETTLE_TIMEOUT);
+    }
+
+    /**
+     * Constructor.
+     * @param sensor Sensor to debounce.
+     * @param stableMillis Time the sensor must hold a state without edges, in milliseconds.
+     * @param settleTimeout Longest time to wait for the sensor to stop bouncing, in milliseconds.
+     */
+    public Debouncer(ISensor sensor, long stableMillis, long settleTimeout) {
+        this.sensor = sensor;
+        this.stableNanos = TimeUnit.MILLISECONDS.toNanos(stableMillis);
+        this.settleTimeout = settleTimeout;
+    }
+
+    /**
+     * Block until the sensor state is stable, and check whether it is stable in the desired state. Returns as soon as
+     * the sensor has held a state for the stable window.
+     * @param state Desired state.
+     * @return True if the sensor is stable in the desired state. False if it is stable in the other state, is still
+     * bouncing when the settle timeout expires, or the thread is interrupted.
+     */
+    public boolean awaitStable(PinState state) {
+        final long deadline = Clock.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settleTimeout);
+        while (true) {
+            final long generation = sensor.generation(PinEdge.BOTH);
+            final PinState current = sensor.getState();
+            final long lastEdge = sensor.edgeNanos(PinEdge.BOTH, generation);
+            final long now = Clock.nanoTime();
+            final long stableFor = (lastEdge < 0) ? stableNanos : now - lastEdge;
+            if (stableFor >= stableNanos) return current == state;
+            if (now >= deadline || Thread.currentThread().isInterrupted()) return false;
+
+            /* Wait out the rest of the window; any edge in the meantime restarts it. */
+            final long wait = Math.min(stableNanos - stableFor, deadline - now);
+            sensor.waitForEventAfter(PinEdge.BOTH, generation, TimeUnit.NANOSECONDS.toMillis(wait) + 1);
+        }
+    }
+}
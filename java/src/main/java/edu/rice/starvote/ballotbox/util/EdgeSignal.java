@@ -0,0 +1,208 @@
+package edu.rice.starvote.ballotbox.util;
+
+import com.pi4j.io.gpio.PinEdge;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generation-counted edge notification for a digital input. Every edge increments the generation counter for its
+ * direction. A waiter records the generation it has observed and waits for the counter to advance past it, so an edge
+ * that occurs between reading the generation and starting to wait is never lost.
+ *
+ * Each edge is also stamped with `Clock.nanoTime()` and recorded in a preallocated ring buffer holding the most recent
+ * edges, so the timing of recent edges can be queried by generation, and the widths of recent pulses measured.
+ *
+ * Signaling an edge is wait-free when no thread is waiting, and does not allocate. Waiting threads block on a shared
+ * monitor that is only notified when waiters are present. Edges must be signaled from a single thread (the interrupt
+ * callback); queries may be made from any thread.
+ *
+ * @author luejerry
+ */
+public class EdgeSignal {
+
+    /**
+     * Default number of edges held in the ring buffer.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final AtomicLong rising = new AtomicLong();
+    private final AtomicLong falling = new AtomicLong();
+    private final AtomicLong edges = new AtomicLong();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final Object monitor = new Object();
+
+    /* Ring buffers indexed by generation. Slots are published by the generation counters. */
+    private final int mask;
+    private final long[] edgeTimes;
+    private final boolean[] edgeRising;
+    private final long[] risingTimes;
+    private final long[] fallingTimes;
+
+    /**
+     * Constructor with the default ring buffer capacity.
+     */
+    public EdgeSignal() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     * @param capacity Number of recent edges to record. Rounded up to a power of two.
+     */
+    public EdgeSignal(int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        edgeTimes = new long[size];
+        edgeRising = new boolean[size];
+        risingTimes = new long[size];
+        fallingTimes = new long[size];
+    }
+
+    /**
+     * Record an edge occurring now and wake any threads waiting for it. Intended to be called from the interrupt
+     * callback.
+     * @param edge Direction of the edge: `RISING` or `FALLING`.
+     */
+    public void signal(PinEdge edge) {
+        signal(edge, Clock.nanoTime());
+    }
+
+    /**
+     * Record an edge and wake any threads waiting for it.
+     * @param edge Direction of the edge: `RISING` or `FALLING`.
+     * @param nanos Time of the edge, from `Clock.nanoTime()`.
+     */
+    public void signal(PinEdge edge, long nanos) {
+        final long edgeSlot = edges.get();
+        switch (edge) {
+            case RISING:
+                risingTimes[(int) (rising.get() & mask)] = nanos;
+                edgeTimes[(int) (edgeSlot & mask)] = nanos;
+                edgeRising[(int) (edgeSlot & mask)] = true;
+                edges.incrementAndGet();
+                rising.incrementAndGet();
+                break;
+            case FALLING:
+                fallingTimes[(int) (falling.get() & mask)] = nanos;
+                edgeTimes[(int) (edgeSlot & mask)] = nanos;
+                edgeRising[(int) (edgeSlot & mask)] = false;
+                edges.incrementAndGet();
+                falling.incrementAndGet();
+                break;
+            default:
+                return;
+        }
+        if (waiters.get() > 0) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Get the current generation of an edge direction: the number of edges in that direction seen so far.
+     * @param edge Direction of state change: `RISING`, `FALLING`, or `BOTH`.
+     * @return Edge generation.
+     */
+    public long generation(PinEdge edge) {
+        switch (edge) {
+            case RISING:
+                return rising.get();
+            case FALLING:
+                return falling.get();
+            default:
+                return edges.get();
+        }
+    }
+
+    /**
+     * Get the time of a recent edge. The first edge in a direction after generation `g` has generation `g + 1`.
+     * @param edge Direction of state change: `RISING`, `FALLING`, or `BOTH`.
+     * @param generation Generation of the edge, at least 1.
+     * @return Time of the edge from `Clock.nanoTime()`, or -1 if the edge has not occurred or is no longer held in
+     * the ring buffer.
+     */
+    public long edgeNanos(PinEdge edge, long generation) {
+        final long[] times;
+        switch (edge) {
+            case RISING:
+                times = risingTimes;
+                break;
+            case FALLING:
+                times = fallingTimes;
+                break;
+            default:
+                times = edgeTimes;
+        }
+        if (generation < 1 || generation > generation(edge)) return -1;
+        final long nanos = times[(int) ((generation - 1) & mask)];
+        // Check the slot was not overwritten while reading it.
+        return (generation(edge) - generation < mask) ? nanos : -1;
+    }
+
+    /**
+     * Get the time of the most recent edge in a direction.
+     * @param edge Direction of state change: `RISING`, `FALLING`, or `BOTH`.
+     * @return Time of the edge from `Clock.nanoTime()`, or -1 if no edge has occurred.
+     */
+    public long lastEdgeNanos(PinEdge edge) {
+        return edgeNanos(edge, generation(edge));
+    }
+
+    /**
+     * Measure the widths of the most recent completed pulses. A pulse starts with an edge in the given direction and
+     * ends with the following edge. For example, with `FALLING`, this measures how long the input was held LOW. Pulses
+     * are taken from the newest half of the ring buffer.
+     * @param start Direction of the edge that starts a pulse: `RISING` or `FALLING`.
+     * @param out Array to fill with pulse widths in nanoseconds, most recent first.
+     * @return Number of pulse widths written to `out`.
+     */
+    public int recentPulses(PinEdge start, long[] out) {
+        final boolean startRising = start == PinEdge.RISING;
+        final long last = edges.get();
+        final int window = (mask + 1) / 2;
+        int count = 0;
+        for (long end = last - 1; end >= 1 && last - end < window && count < out.length; end--) {
+            final int endSlot = (int) (end & mask);
+            final int startSlot = (int) ((end - 1) & mask);
+            if (edgeRising[startSlot] == startRising && edgeRising[endSlot] != startRising) {
+                out[count++] = edgeTimes[endSlot] - edgeTimes[startSlot];
+            }
+        }
+        // Only the newest half of the ring is read, so it is intact unless half a ring of edges arrived meanwhile.
+        return (edges.get() - last < window) ? count : 0;
+    }
+
+    /**
+     * Block until an edge in the desired direction occurs after the given generation, the timeout expires, or the
+     * thread is interrupted. Returns immediately if such an edge has already occurred.
+     * @param edge Direction of state change: `RISING`, `FALLING`, or `BOTH`.
+     * @param generation Last generation observed by the caller (from `generation()`).
+     * @param timeout Time to wait in milliseconds. A negative value waits indefinitely.
+     * @return True if the edge occurred.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean awaitAfter(PinEdge edge, long generation, long timeout) throws InterruptedException {
+        if (generation(edge) > generation) return true;
+        final long deadline = System.nanoTime() + Clock.toRealNanos(TimeUnit.MILLISECONDS.toNanos(timeout));
+        waiters.incrementAndGet();
+        try {
+            synchronized (monitor) {
+                while (generation(edge) <= generation) {
+                    if (timeout < 0) {
+                        monitor.wait();
+                    } else {
+                        final long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) return false;
+                        monitor.wait(remaining / 1000000, (int) (remaining % 1000000));
+                    }
+                }
+                return true;
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package edu.rice.starvote.ballotbox.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous structured event log for hot paths. Logging an event copies a timestamp, an event name, an optional
+ * number and an optional detail object into a preallocated ring buffer and returns; a background writer thread
+ * formats the records and writes them to the console and, optionally, to a rotating log file. The logging thread never
+ * blocks on console or disk I/O, and never allocates if the event name is a constant and the detail already exists.
+ *
+ * Each record is written as one compact line:
+ *
+ * ```
+ * 2016-10-14 18:02:11.412 spooler.fed_ms 812
+ * 2016-10-14 18:02:11.730 spooler.scanned 17 4f2a9c
+ * ```
+ *
+ * Memory use is fixed by the ring capacity. If the writer falls so far behind that the ring is full, new events are
+ * dropped (the logging thread is never made to wait) and the number dropped is logged once the writer catches up. The
+ * log file is rotated when it reaches its size limit, keeping a fixed number of old files (`events.log.1`,
+ * `events.log.2`, ...), so disk use is fixed as well.
+ *
+ * Detail objects are converted with `toString()` on the writer thread, so they must be immutable (e.g. strings, enums,
+ * boxed numbers or exceptions).
+ *
+ * The shared log (`get()`) writes to standard output, and additionally to the file named by the system property
+ * `ballotbox.eventlog` if it is set.
+ *
+ * ##### Example #####
+ * ```java
+ * EventLog log = EventLog.get();
+ * log.log("spooler.fed_ms", TimeUnit.NANOSECONDS.toMillis(feedNanos));
+ * log.log("spooler.scanned", sheetNumber, code);
+ * ```
+ *
+ * @author luejerry
+ */
+public class EventLog implements AutoCloseable {
+
+    /**
+     * Name of the system property giving the path of the shared log file.
+     */
+    public final static String PROPERTY = "ballotbox.eventlog";
+
+    /**
+     * Default number of records the ring can hold. Must be a power of two.
+     */
+    public final static int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Default size at which the log file is rotated, in bytes.
+     */
+    public final static long DEFAULT_MAX_FILE_SIZE = 1 << 20;
+
+    /**
+     * Default number of rotated log files kept in addition to the current one.
+     */
+    public final static int DEFAULT_MAX_FILES = 4;
+
+    /**
+     * Value of a record with no number.
+     */
+    final static long NONE = Long.MIN_VALUE;
+
+    /**
+     * Time the writer sleeps when the ring is empty, in nanoseconds.
+     */
+    final static long IDLE_NANOS = 5_000_000;
+
+    private final static DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static volatile EventLog shared;
+
+    private final int capacity;
+    private final int mask;
+    private final long[] times;
+    private final String[] events;
+    private final long[] values;
+    private final Object[] details;
+    /* Slot i holds the sequence number of its last record, plus one, once that record is fully written. */
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong(0);
+    private volatile long consumed = 0;
+    private final LongAdder dropped = new LongAdder();
+
+    private final PrintStream console;
+    private final Path file;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private BufferedWriter fileWriter;
+    private long fileSize;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    /**
+     * Constructor. Starts the writer thread.
+     * @param capacity Number of records the ring can hold. Must be a power of two.
+     * @param console Stream to write records to, or null for none.
+     * @param file Log file to write records to, or null for none.
+     * @param maxFileSize Size at which the log file is rotated, in bytes.
+     * @param maxFiles Number of rotated log files to keep.
+     */
+    public EventLog(int capacity, PrintStream console, Path file, long maxFileSize, int maxFiles) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.times = new long[capacity];
+        this.events = new String[capacity];
+        this.values = new long[capacity];
+        this.details = new Object[capacity];
+        this.published = new AtomicLongArray(capacity);
+        this.console = console;
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        writer = new Thread(this::drain, "event-log");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Get the shared log, creating it on first use. Records still queued when the JVM exits are written by a shutdown
+     * hook.
+     * @return Shared event log.
+     */
+    public static EventLog get() {
+        EventLog log = shared;
+        if (log == null) {
+            synchronized (EventLog.class) {
+                log = shared;
+                if (log == null) {
+                    final String path = System.getProperty(PROPERTY);
+                    log = new EventLog(DEFAULT_CAPACITY, System.out, (path == null) ? null : Paths.get(path),
+                            DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_FILES);
+                    Runtime.getRuntime().addShutdownHook(new Thread(log::close, "event-log-shutdown"));
+                    shared = log;
+                }
+            }
+        }
+        return log;
+    }
+
+    /**
+     * Log an event.
+     * @param event Event name, e.g. `monitor.paper_detected`.
+     */
+    public void log(String event) {
+        log(event, NONE, null);
+    }
+
+    /**
+     * Log an event with a detail.
+     * @param event Event name.
+     * @param detail Immutable detail object, converted to text on the writer thread.
+     */
+    public void log(String event, Object detail) {
+        log(event, NONE, detail);
+    }
+
+    /**
+     * Log an event with a number.
+     * @param event Event name.
+     * @param value Number, e.g. a duration or count.
+     */
+    public void log(String event, long value) {
+        log(event, value, null);
+    }
+
+    /**
+     * Log an event with a number and a detail. Never blocks; the event is dropped if the ring is full.
+     * @param event Event name.
+     * @param value Number, e.g. a duration or count.
+     * @param detail Immutable detail object, converted to text on the writer thread, or null.
+     */
+    public void log(String event, long value, Object detail) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= capacity || !running) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        final int slot = (int) sequence & mask;
+        times[slot] = System.currentTimeMillis();
+        events[slot] = event;
+        values[slot] = value;
+        details[slot] = detail;
+        published.lazySet(slot, sequence + 1);
+    }
+
+    /**
+     * Get the number of events dropped because the ring was full, since the last drop report.
+     * @return Pending drop count.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stop accepting events, write those still queued, and close the log file. Waits up to one second for the writer.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Helper method run by the writer thread: writes records in order until closed and the ring is empty.
+     */
+    private void drain() {
+        final StringBuilder line = new StringBuilder(128);
+        try {
+            openFile();
+            while (true) {
+                final long sequence = consumed;
+                final int slot = (int) sequence & mask;
+                if (published.get(slot) != sequence + 1) {
+                    reportDropped(line);
+                    flush();
+                    if (!running && claimed.get() == sequence) break;
+                    LockSupport.parkNanos(IDLE_NANOS);
+                    continue;
+                }
+                line.setLength(0);
+                format(line, times[slot], events[slot], values[slot], details[slot]);
+                details[slot] = null;
+                consumed = sequence + 1;
+                write(line);
+            }
+        } finally {
+            closeFile();
+        }
+    }
+
+    /**
+     * Helper method to log the number of events dropped, if any.
+     * @param line Reusable line buffer.
+     */
+    private void reportDropped(StringBuilder line) {
+        final long count = dropped.sumThenReset();
+        if (count == 0) return;
+        line.setLength(0);
+        format(line, System.currentTimeMillis(), "eventlog.dropped", count, null);
+        write(line);
+    }
+
+    /**
+     * Helper method to format a record as a line of text.
+     * @param line Builder to append the line to.
+     * @param time Time of the record, ms since epoch.
+     * @param event Event name.
+     * @param value Number, or `NONE`.
+     * @param detail Detail object, or null.
+     */
+    private static void format(StringBuilder line, long time, String event, long value, Object detail) {
+        line.append(TIMESTAMP.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault())))
+                .append(' ').append(event);
+        if (value != NONE) line.append(' ').append(value);
+        if (detail != null) line.append(' ').append(detail);
+        line.append('\n');
+    }
+
+    /**
+     * Helper method to write a line to the console and the log file, rotating the file if it is full.
+     * @param line Formatted line.
+     */
+    private void write(StringBuilder line) {
+        if (console != null) console.print(line);
+        if (fileWriter == null) return;
+        try {
+            if (fileSize + line.length() > maxFileSize) {
+                rotate();
+            }
+            fileWriter.append(line);
+            fileSize += line.length();
+        } catch (IOException e) {
+            fileFailed(e);
+        }
+    }
+
+    /**
+     * Helper method to flush buffered output while the ring is idle.
+     */
+    private void flush() {
+        if (console != null) console.flush();
+        if (fileWriter == null) return;
+        try {
+            fileWriter.flush();
+        } catch (IOException e) {
+            fileFailed(e);
+        }
+    }
+
+    /**
+     * Helper method to open the log file for appending.
+     */
+    private void openFile() {
+        if (file == null) return;
+        try {
+            fileSize = Files.exists(file) ? Files.size(file) : 0;
+            fileWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            fileFailed(e);
+        }
+    }
+
+    /**
+     * Helper method to shift the log file and its rotated copies up by one, discarding the oldest, and start a new
+     * file.
+     * @throws IOException If the files cannot be moved or reopened.
+     */
+    private void rotate() throws IOException {
+        fileWriter.close();
+        fileWriter = null;
+        for (int i = maxFiles - 1; i >= 0; i--) {
+            final Path source = (i == 0) ? file : rotated(i);
+            if (Files.exists(source)) {
+                Files.move(source, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        fileWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        fileSize = 0;
+    }
+
+    /**
+     * Helper method to get the path of a rotated log file.
+     * @param index Rotation index, 1 being the most recent.
+     * @return Path of the rotated file.
+     */
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    /**
+     * Helper method to stop writing to the log file after an I/O error. Console output continues.
+     * @param e Error that occurred.
+     */
+    private void fileFailed(IOException e) {
+        System.err.println("Event log file " + file + " disabled: " + e.toString());
+        closeFile();
+    }
+
+    /**
+     * Helper method to close the log file, ignoring errors.
+     */
+    private void closeFile() {
+        if (fileWriter == null) return;
+        try {
+            fileWriter.close();
+        } catch (IOException ignored) {
+        }
+        fileWriter = null;
+    }
+}
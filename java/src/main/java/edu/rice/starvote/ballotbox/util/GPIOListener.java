@@ -4,25 +4,31 @@ import com.pi4j.io.gpio.GpioPinDigitalInput;
 import com.pi4j.io.gpio.Pin;
 import com.pi4j.io.gpio.PinEdge;
 import com.pi4j.io.gpio.PinState;
-import com.pi4j.io.gpio.event.GpioPinDigitalStateChangeEvent;
 import com.pi4j.io.gpio.event.GpioPinListenerDigital;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
-
 /**
  * Handles hardware interrupts for a GPIO input pin. Makes Pi4J GPIO interrupts easier to use. Allows efficient
  * event-driven control of software by GPIO sensors, rather than polling.
  *
+ * Edges are counted by generation (see `EdgeSignal`). To wait for an edge caused by an action without any chance of
+ * missing it, read the generation *before* the action and wait for an edge after that generation:
+ *
+ * ```java
+ * final long before = sensor.generation(PinEdge.FALLING);
+ * motor.forward();
+ * sensor.waitForEventAfter(PinEdge.FALLING, before, 3000);
+ * ```
+ *
+ * Every state change is timestamped when the Pi4J callback receives it and kept in a fixed-size ring buffer, so the
+ * timing of recent state changes can be queried after the fact.
+ *
  * @author luejerry
  */
-public class GPIOListener {
+public class GPIOListener implements ISensor {
 
     private final Pin wpiPin;
     private final GpioPinDigitalInput sensor;
-    private CountDownLatch lowSignal = new CountDownLatch(1);
-    private CountDownLatch highSignal = new CountDownLatch(1);
-    private CountDownLatch bothSignal = new CountDownLatch(1);
+    private final EdgeSignal signal = new EdgeSignal();
 
     /**
      * Constructor. Initializes the given pin for GPIO digital input.
@@ -32,152 +38,107 @@ public class GPIOListener {
         wpiPin = PinMap.mapPin(pin).get();
         sensor = GPIOManager.controller().provisionDigitalInputPin(wpiPin);
 
-        sensor.addListener((GpioPinListenerDigital) event -> {
-            switch (event.getEdge()) {
-                case RISING:
-                    highSignal.countDown();
-                    highSignal = new CountDownLatch(1);
-                    bothSignal.countDown();
-                    bothSignal = new CountDownLatch(1);
-                    break;
-                case FALLING:
-                    lowSignal.countDown();
-                    lowSignal = new CountDownLatch(1);
-                    bothSignal.countDown();
-                    bothSignal = new CountDownLatch(1);
-                    break;
-            }
-        });
+        sensor.addListener((GpioPinListenerDigital) event -> signal.signal(event.getEdge()));
     }
 
     /**
-     * Register an event handler to execute once the next time the pin state changes in the desired direction. This
-     * method blocks indefinitely until the event occurs, or it is interrupted. The listener does not persist after
-     * first execution; subsequent events will not trigger it.
-     *
-     * Note that since this method only blocks until the event occurs, the event handler task itself may run
-     * concurrently with the parent thread. Be careful to implement additional synchronization if concurrency is not
-     * desired.
+     * Block until the next time the pin state changes in the desired direction. This method blocks indefinitely until
+     * the event occurs, or it is interrupted.
      *
      * @param edge Direction of state change to listen for: `RISING`, `FALLING`, or `BOTH`.
      * @return True if event occured, false if interrupted while waiting.
      */
+    @Override
     public boolean waitForEvent(PinEdge edge) {
-        boolean didTask;
-//        final CountDownLatch latch = new CountDownLatch(1);
-//        final GpioPinListenerDigital listener = generateListener(edge, () -> {}, latch);
-//        sensor.addListener(listener);
-//        try {
-//            latch.await();
-//            didTask = true;
-//        } catch (InterruptedException e) {
-//            System.err.println(e.toString());
-//            didTask = false;
-//        } finally {
-//            sensor.removeAllListeners();
-//        }
-//        sensor.removeAllListeners();
-        try {
-            switch (edge) {
-                case FALLING:
-                    lowSignal.await();
-                    break;
-                case RISING:
-                    highSignal.await();
-                    break;
-                case BOTH:
-                    bothSignal.await();
-                    break;
-            }
-            didTask = true;
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-            didTask = false;
-        }
-        return didTask;
+        return waitForEventAfter(edge, signal.generation(edge), -1);
     }
 
     /**
-     * Register an event handler to execute once the next time the pin state changes in the desired direction. This
-     * method blocks until the event occurs, the timeout expires, or it is interrupted. The listener does not persist
-     * after first execution; subsequent events will not trigger it.
-     *
-     * Note that since this method only blocks until the event occurs, the event handler task itself may run
-     * concurrently with the parent thread. Be careful to implement additional synchronization if concurrency is not
-     * desired.
+     * Block until the next time the pin state changes in the desired direction. This method blocks until the event
+     * occurs, the timeout expires, or it is interrupted.
      *
      * @param edge Direction of state change to listen for: `RISING`, `FALLING`, or `BOTH`.
      * @param timeout Time to wait in milliseconds.
      * @return True if event occured, false if timeout expired or interrupted.
      */
+    @Override
     public boolean waitForEvent(PinEdge edge, long timeout) {
-        boolean didTask = false;
-//        final CountDownLatch latch = new CountDownLatch(1);
-//        final GpioPinListenerDigital listener = generateListener(edge, () -> {}, latch);
-//        sensor.addListener(listener);
-//        try {
-//            didTask = latch.await(timeout, TimeUnit.MILLISECONDS);
-//        } catch (InterruptedException e) {
-//            System.err.println(e.toString());
-//            didTask = false;
-//        } finally {
-//            sensor.removeAllListeners();
-//        }
+        return waitForEventAfter(edge, signal.generation(edge), timeout);
+    }
+
+    /**
+     * Block until the pin state has changed in the desired direction after the given edge generation. Returns
+     * immediately if such a change has already occurred. This method blocks until the event occurs, the timeout
+     * expires, or it is interrupted.
+     *
+     * @param edge Direction of state change to listen for: `RISING`, `FALLING`, or `BOTH`.
+     * @param generation Edge generation previously read with `generation()`.
+     * @param timeout Time to wait in milliseconds. A negative value waits indefinitely.
+     * @return True if event occured, false if timeout expired or interrupted. If interrupted, the thread's interrupt
+     * flag is left set.
+     */
+    @Override
+    public boolean waitForEventAfter(PinEdge edge, long generation, long timeout) {
         try {
-            switch (edge) {
-                case FALLING:
-                    didTask = lowSignal.await(timeout, TimeUnit.MILLISECONDS);
-                    break;
-                case RISING:
-                    didTask = highSignal.await(timeout, TimeUnit.MILLISECONDS);
-                    break;
-                case BOTH:
-                    didTask = bothSignal.await(timeout, TimeUnit.MILLISECONDS);
-                    break;
-            }
+            return signal.awaitAfter(edge, generation, timeout);
         } catch (InterruptedException e) {
-            e.printStackTrace();
-            didTask = false;
+            Thread.currentThread().interrupt();
+            return false;
         }
-        return didTask;
     }
 
     /**
-     * Get current state of pin.
-     * @return Pin state. `LOW` or `HIGH`.
+     * Get the current edge generation of the pin: the number of state changes in the given direction so far.
+     * @param edge Direction of state change: `RISING`, `FALLING`, or `BOTH`.
+     * @return Edge generation.
      */
-    public PinState getState() {
-        return sensor.getState();
+    @Override
+    public long generation(PinEdge edge) {
+        return signal.generation(edge);
+    }
+
+    /**
+     * Get the time of a recent state change of the pin, as recorded by the interrupt callback. The first state change
+     * in a direction after generation `g` has generation `g + 1`.
+     * @param edge Direction of state change: `RISING`, `FALLING`, or `BOTH`.
+     * @param generation Generation of the state change.
+     * @return Time of the state change from `Clock.nanoTime()`, or -1 if unavailable.
+     * @see EdgeSignal#edgeNanos(PinEdge, long)
+     */
+    @Override
+    public long edgeNanos(PinEdge edge, long generation) {
+        return signal.edgeNanos(edge, generation);
+    }
+
+    /**
+     * Get the time of the most recent state change of the pin in a direction.
+     * @param edge Direction of state change: `RISING`, `FALLING`, or `BOTH`.
+     * @return Time of the state change from `Clock.nanoTime()`, or -1 if none has occurred.
+     */
+    @Override
+    public long lastEdgeNanos(PinEdge edge) {
+        return signal.lastEdgeNanos(edge);
     }
 
     /**
-     * Helper method to generate the event listener passed to Pi4J; factoring out common code.
-     * @param edge Direction of state change to listen for.
-     * @param task Task to execute when event occurs.
-     * @param latch Latch that notifies parent thread when event is detected.
-     * @return Pi4J GPIO event listener.
+     * Measure how long the pin was recently held in a state. Does not allocate.
+     * @param start Direction of the state change that starts each interval: `FALLING` measures LOW intervals, `RISING`
+     *              measures HIGH intervals.
+     * @param out Array to fill with interval lengths in nanoseconds, most recent first.
+     * @return Number of intervals written to `out`.
+     * @see EdgeSignal#recentPulses(PinEdge, long[])
      */
-    private GpioPinListenerDigital generateListener(PinEdge edge, Runnable task, CountDownLatch latch) {
-        return event -> {
-                switch (edge) {
-                    case BOTH:
-                        latch.countDown();
-                        task.run();
-                        return;
-                    case RISING:
-                        if (event.getState() == PinState.HIGH) {
-                            latch.countDown();
-                            task.run();
-                        }
-                        return;
-                    case FALLING:
-                        if (event.getState() == PinState.LOW) {
-                            latch.countDown();
-                            task.run();
-                        }
-                        return;
-                    default:
-                }
-            };
+    @Override
+    public int recentIntervals(PinEdge start, long[] out) {
+        return signal.recentPulses(start, out);
+    }
+
+    /**
+     * Get current state of pin.
+     * @return Pin state. `LOW` or `HIGH`.
+     */
+    @Override
+    public PinState getState() {
+        return sensor.getState();
     }
 }
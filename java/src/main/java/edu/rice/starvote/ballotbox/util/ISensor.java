@@ -0,0 +1,90 @@
+package edu.rice.starvote.ballotbox.util;
+
+import com.pi4j.io.gpio.PinEdge;
+import com.pi4j.io.gpio.PinState;
+
+/**
+ * Interface for a digital paper sensor. Edges are counted by generation and timestamped with `Clock.nanoTime()`; see
+ * `GPIOListener` for usage.
+ *
+ * @see GPIOListener
+ * @author luejerry
+ */
+public interface ISensor {
+
+    /**
+     * Block until the next time the sensor state changes in the desired direction. This method blocks indefinitely
+     * until the event occurs, or it is interrupted.
+     *
+     * @param edge Direction of state change to listen for: `RISING`, `FALLING`, or `BOTH`.
+     * @return True if event occured, false if interrupted while waiting.
+     */
+    default boolean waitForEvent(PinEdge edge) {
+        return waitForEventAfter(edge, generation(edge), -1);
+    }
+
+    /**
+     * Block until the next time the sensor state changes in the desired direction. This method blocks until the event
+     * occurs, the timeout expires, or it is interrupted.
+     *
+     * @param edge Direction of state change to listen for: `RISING`, `FALLING`, or `BOTH`.
+     * @param timeout Time to wait in milliseconds.
+     * @return True if event occured, false if timeout expired or interrupted.
+     */
+    default boolean waitForEvent(PinEdge edge, long timeout) {
+        return waitForEventAfter(edge, generation(edge), timeout);
+    }
+
+    /**
+     * Block until the sensor state has changed in the desired direction after the given edge generation. Returns
+     * immediately if such a change has already occurred. This method blocks until the event occurs, the timeout
+     * expires, or it is interrupted.
+     *
+     * @param edge Direction of state change to listen for: `RISING`, `FALLING`, or `BOTH`.
+     * @param generation Edge generation previously read with `generation()`.
+     * @param timeout Time to wait in milliseconds. A negative value waits indefinitely.
+     * @return True if event occured, false if timeout expired or interrupted. If interrupted, the thread's interrupt
+     * flag is left set.
+     */
+    boolean waitForEventAfter(PinEdge edge, long generation, long timeout);
+
+    /**
+     * Get the current edge generation of the sensor: the number of state changes in the given direction so far.
+     * @param edge Direction of state change: `RISING`, `FALLING`, or `BOTH`.
+     * @return Edge generation.
+     */
+    long generation(PinEdge edge);
+
+    /**
+     * Get the time of a recent state change of the sensor. The first state change in a direction after generation `g`
+     * has generation `g + 1`.
+     * @param edge Direction of state change: `RISING`, `FALLING`, or `BOTH`.
+     * @param generation Generation of the state change.
+     * @return Time of the state change from `Clock.nanoTime()`, or -1 if unavailable.
+     */
+    long edgeNanos(PinEdge edge, long generation);
+
+    /**
+     * Get the time of the most recent state change of the sensor in a direction.
+     * @param edge Direction of state change: `RISING`, `FALLING`, or `BOTH`.
+     * @return Time of the state change from `Clock.nanoTime()`, or -1 if none has occurred.
+     */
+    default long lastEdgeNanos(PinEdge edge) {
+        return edgeNanos(edge, generation(edge));
+    }
+
+    /**
+     * Measure how long the sensor was recently held in a state. Does not allocate.
+     * @param start Direction of the state change that starts each interval: `FALLING` measures LOW intervals, `RISING`
+     *              measures HIGH intervals.
+     * @param out Array to fill with interval lengths in nanoseconds, most recent first.
+     * @return Number of intervals written to `out`.
+     */
+    int recentIntervals(PinEdge start, long[] out);
+
+    /**
+     * Get current state of sensor.
+     * @return Sensor state. `LOW` or `HIGH`.
+     */
+    PinState getState();
+}
@@ -9,7 +9,7 @@ import java.util.Optional;
 
 /**
  * This class provides a convenience method to map BCM pin numbers to Pi4J pins. All invocations of Pi4J GPIO functions
- * **must** use the Pi4J pin mapping.
+ * **must** use the Pi4J pin mapping. All GPIO pins on the 40-pin header of the Raspberry Pi 2 and 3 are mapped.
  *
  * @author luejerry
  */
@@ -18,12 +18,31 @@ public class PinMap {
     private final static Map<Integer, Pin> map = new HashMap<>();
 
     static {
+        map.put(2, RaspiPin.GPIO_08);
+        map.put(3, RaspiPin.GPIO_09);
+        map.put(4, RaspiPin.GPIO_07);
+        map.put(5, RaspiPin.GPIO_21);
+        map.put(6, RaspiPin.GPIO_22);
+        map.put(7, RaspiPin.GPIO_11);
+        map.put(8, RaspiPin.GPIO_10);
+        map.put(9, RaspiPin.GPIO_13);
+        map.put(10, RaspiPin.GPIO_12);
+        map.put(11, RaspiPin.GPIO_14);
+        map.put(12, RaspiPin.GPIO_26);
+        map.put(13, RaspiPin.GPIO_23);
+        map.put(14, RaspiPin.GPIO_15);
+        map.put(15, RaspiPin.GPIO_16);
+        map.put(16, RaspiPin.GPIO_27);
         map.put(17, RaspiPin.GPIO_00);
         map.put(18, RaspiPin.GPIO_01);
+        map.put(19, RaspiPin.GPIO_24);
+        map.put(20, RaspiPin.GPIO_28);
+        map.put(21, RaspiPin.GPIO_29);
         map.put(22, RaspiPin.GPIO_03);
         map.put(23, RaspiPin.GPIO_04);
         map.put(24, RaspiPin.GPIO_05);
         map.put(25, RaspiPin.GPIO_06);
+        map.put(26, RaspiPin.GPIO_25);
         map.put(27, RaspiPin.GPIO_02);
     }
 
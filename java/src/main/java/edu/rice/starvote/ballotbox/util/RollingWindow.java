@@ -0,0 +1,65 @@
+package edu.rice.starvote.ballotbox.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size window of the most recent samples of a measurement, with percentile queries. Once the window is full,
+ * each new sample replaces the oldest. Storage is preallocated; queries do not allocate. Methods are thread-safe.
+ *
+ * @author luejerry
+ */
+public class RollingWindow {
+
+    private final long[] samples;
+    private final long[] sorted;
+    private int count = 0;
+    private int next = 0;
+
+    /**
+     * Constructor.
+     * @param size Number of samples held.
+     */
+    public RollingWindow(int size) {
+        samples = new long[size];
+        sorted = new long[size];
+    }
+
+    /**
+     * Add a sample, evicting the oldest if the window is full.
+     * @param sample Sample value.
+     */
+    public synchronized void add(long sample) {
+        samples[next] = sample;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * Discard all samples.
+     */
+    public synchronized void clear() {
+        count = 0;
+        next = 0;
+    }
+
+    /**
+     * Get the number of samples held.
+     * @return Sample count, at most the window size.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Get a percentile of the samples held (nearest-rank method).
+     * @param percentile Percentile in range (0.0, 100.0].
+     * @return Sample at the percentile, or -1 if the window is empty.
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) return -1;
+        System.arraycopy(samples, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        final int rank = (int) Math.ceil(percentile / 100.0 * count);
+        return sorted[Math.min(count, Math.max(1, rank)) - 1];
+    }
+}
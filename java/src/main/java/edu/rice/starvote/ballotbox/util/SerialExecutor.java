@@ -0,0 +1,68 @@
+package edu.rice.starvote.ballotbox.util;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor that runs tasks one at a time, in the order they were submitted, on an underlying executor. Tasks submitted
+ * to different serial executors sharing the same underlying executor may run concurrently, but tasks of one serial
+ * executor never overlap or run out of order.
+ *
+ * Submitting a task does not block.
+ *
+ * ##### Example #####
+ * ```java
+ * Executor pool = Executors.newCachedThreadPool();
+ * Executor serial = new SerialExecutor(pool);
+ * serial.execute(first);
+ * serial.execute(second); // runs after first has completed
+ * ```
+ *
+ * @author luejerry
+ */
+public class SerialExecutor implements Executor {
+
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor executor;
+    private Runnable active = null;
+
+    /**
+     * Constructor.
+     * @param executor Executor to run tasks on.
+     */
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Queue a task to run after all previously submitted tasks have completed.
+     * @param task Task to run. An exception thrown by the task is printed to standard error and does not prevent later
+     *             tasks from running.
+     */
+    @Override
+    public synchronized void execute(Runnable task) {
+        tasks.add(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                scheduleNext();
+            }
+        });
+        if (active == null) {
+            scheduleNext();
+        }
+    }
+
+    /**
+     * Helper method to hand the next queued task to the underlying executor.
+     */
+    private synchronized void scheduleNext() {
+        active = tasks.poll();
+        if (active != null) {
+            executor.execute(active);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+import edu.rice.starvote.ballotbox.statusserver.StatusAggregator;
+import edu.rice.starvote.ballotbox.statusserver.StatusContainer;
+import edu.rice.starvote.ballotbox.statusserver.StatusServer;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Manual test of the status aggregator against a local stand-in box on port 4444, plus a box on port 4446 that is not
+ * running (so reconnection can be observed). Start the second box with `ServerTest 4446` in another process.
+ * Monitor the merged stream at `ws://localhost:4445/pushstatus` or `http://localhost:4445/status`.
+ */
+public class AggregatorTest {
+
+    public static void test() throws Exception {
+        final StatusContainer provider = new StatusContainer();
+        final StatusServer box = new StatusServer(4444, provider);
+        provider.writeStatus(BallotStatus.WAITING);
+        box.start();
+
+        final StatusAggregator aggregator = new StatusAggregator(4445, Arrays.asList(
+                URI.create("ws://localhost:4444/pushstatus?format=json"),
+                URI.create("ws://localhost:4446/pushstatus?format=json")));
+        aggregator.start();
+
+        final BallotStatus[] cycle = {BallotStatus.SPOOLING, BallotStatus.ACCEPT, BallotStatus.WAITING};
+        new Timer().schedule(new TimerTask() {
+            int i = 0;
+
+            @Override
+            public void run() {
+                provider.writeStatus(cycle[i++ % cycle.length]);
+            }
+        }, 2000, 2000);
+    }
+
+    public static void main(String[] args) throws Exception {
+        test();
+    }
+}
@@ -0,0 +1,72 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotJournal;
+import edu.rice.starvote.ballotbox.BallotResult;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the ballot journal restores counters and cast BIDs on reopening, counts only ejected ballots, and
+ * recovers from a torn final record.
+ */
+public class BallotJournalTest {
+
+    @Test
+    public void test() throws Exception {
+        final Path file = Files.createTempDirectory("journal").resolve("ballots.journal");
+        try (BallotJournal journal = BallotJournal.open(file)) {
+            assertEquals(0, journal.scannedCount());
+            final long first = journal.scanned("BID-1");
+            journal.validated(first, BallotResult.ACCEPT);
+            journal.diverted(first, BallotResult.ACCEPT);
+            journal.ejected(first, BallotResult.ACCEPT);
+            final long second = journal.scanned("BID-2");
+            journal.validated(second, BallotResult.REJECT);
+            journal.diverted(second, BallotResult.REJECT);
+            journal.ejected(second, BallotResult.REJECT);
+            final long third = journal.scanned("BID-3");
+            journal.validated(third, BallotResult.ACCEPT);
+            journal.diverted(third, BallotResult.ACCEPT);
+            // Third ballot jams after being diverted, so is never ejected.
+            assertEquals(first + 2, third);
+            assertEquals(1, journal.acceptedCount());
+        }
+
+        // Simulate a crash part way through writing a record.
+        final long goodSize = Files.size(file);
+        Files.write(file, new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        try (BallotJournal journal = BallotJournal.open(file)) {
+            assertEquals(goodSize, Files.size(file));
+            assertEquals(3, journal.scannedCount());
+            assertEquals(1, journal.acceptedCount());
+            assertEquals(1, journal.rejectedCount());
+            assertEquals(Arrays.asList("BID-1", "BID-3"), Arrays.asList(journal.castCodes().toArray()));
+            final long fourth = journal.scanned("");
+            assertEquals(4, fourth);
+            journal.diverted(fourth, BallotResult.REJECT);
+            journal.ejected(fourth, BallotResult.REJECT);
+        }
+
+        try (BallotJournal journal = BallotJournal.open(file)) {
+            assertEquals(4, journal.scannedCount());
+            assertEquals(2, journal.rejectedCount());
+            assertEquals(2, journal.castCodes().size());
+        }
+
+        // A corrupted record ends the replay.
+        final byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 0x55;
+        Files.write(file, bytes);
+        try (BallotJournal journal = BallotJournal.open(file)) {
+            assertEquals(1, journal.rejectedCount());
+            assertEquals(4, journal.scannedCount());
+        }
+    }
+}
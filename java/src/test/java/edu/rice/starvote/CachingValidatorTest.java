@@ -0,0 +1,101 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotResult;
+import edu.rice.starvote.ballotbox.CachingValidator;
+import edu.rice.starvote.ballotbox.util.BloomFilter;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the local validation cache against a stand-in supervisor. No hardware or network required.
+ */
+public class CachingValidatorTest {
+
+    @Test
+    public void test() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        final CachingValidator validator = new CachingValidator(code -> {
+            requests.incrementAndGet();
+            return CompletableFuture.completedFuture(
+                    code.startsWith("good") ? BallotResult.ACCEPT : BallotResult.REJECT);
+        });
+
+        assertEquals(BallotResult.REJECT, validator.validateAsync("").join());
+        assertEquals(BallotResult.REJECT, validator.validateAsync("has space").join());
+        assertEquals("Malformed codes reached supervisor", 0, requests.get());
+
+        assertEquals(BallotResult.ACCEPT, validator.validateAsync("good1").join());
+        assertEquals("Duplicate cast accepted", BallotResult.REJECT, validator.validateAsync("good1").join());
+        assertEquals(BallotResult.REJECT, validator.validateAsync("bad1").join());
+        assertEquals(BallotResult.REJECT, validator.validateAsync("bad1").join());
+        assertEquals("Cached decisions reached supervisor", 2, requests.get());
+
+        validator.markCast("good2");
+        assertEquals(BallotResult.REJECT, validator.validateAsync("good2").join());
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        final List<CompletableFuture<BallotResult>> requests = new CopyOnWriteArrayList<>();
+        final CachingValidator validator = new CachingValidator(code -> {
+            final CompletableFuture<BallotResult> request = new CompletableFuture<>();
+            requests.add(request);
+            return request;
+        });
+
+        // Two lanes scan copies of one ballot at once: only one copy reaches the supervisor.
+        final CyclicBarrier start = new CyclicBarrier(2);
+        final List<CompletableFuture<BallotResult>> results = new CopyOnWriteArrayList<>();
+        final Runnable lane = () -> {
+            try {
+                start.await();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            results.add(validator.validateAsync("good1"));
+        };
+        final Thread first = new Thread(lane);
+        final Thread second = new Thread(lane);
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+        assertEquals(1, requests.size());
+        assertEquals(1, results.stream().filter(CompletableFuture::isDone).count());
+        assertEquals(BallotResult.REJECT, results.stream().filter(CompletableFuture::isDone).findAny().get().join());
+
+        requests.get(0).complete(BallotResult.ACCEPT);
+        assertEquals(0, results.stream().filter(result -> !result.isDone()).count());
+        assertEquals(1, results.stream().filter(result -> result.join() == BallotResult.ACCEPT).count());
+        assertEquals(BallotResult.REJECT, validator.validateAsync("good1").join());
+        assertEquals(1, requests.size());
+
+        // A timeout releases the code, so it can be validated again.
+        validator.validateAsync("good2");
+        requests.get(1).complete(BallotResult.TIMEOUT);
+        validator.validateAsync("good2");
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    public void bloom() throws Exception {
+        final BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("in" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("in" + i));
+            if (filter.mightContain("out" + i)) falsePositives++;
+        }
+        assertTrue("False positive rate too high: " + falsePositives, falsePositives < 50);
+    }
+}
@@ -0,0 +1,122 @@
+package edu.rice.starvote;
+
+import com.pi4j.io.gpio.PinEdge;
+import com.pi4j.io.gpio.PinState;
+import edu.rice.starvote.ballotbox.util.Clock;
+import edu.rice.starvote.ballotbox.util.Debouncer;
+import edu.rice.starvote.ballotbox.util.EdgeSignal;
+import edu.rice.starvote.ballotbox.util.ISensor;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the debouncing filter against a bouncing sensor without GPIO hardware.
+ */
+public class DebouncerTest {
+
+    /**
+     * Sensor whose state is set by the test.
+     */
+    private static class TestSensor implements ISensor {
+        final EdgeSignal signal = new EdgeSignal();
+        volatile PinState state = PinState.LOW;
+
+        void set(PinState next) {
+            state = next;
+            signal.signal(next.isHigh() ? PinEdge.RISING : PinEdge.FALLING, Clock.nanoTime());
+        }
+
+        @Override
+        public boolean waitForEventAfter(PinEdge edge, long generation, long timeout) {
+            try {
+                return signal.awaitAfter(edge, generation, timeout);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public long generation(PinEdge edge) {
+            return signal.generation(edge);
+        }
+
+        @Override
+        public long edgeNanos(PinEdge edge, long generation) {
+            return signal.edgeNanos(edge, generation);
+        }
+
+        @Override
+        public int recentIntervals(PinEdge start, long[] out) {
+            return signal.recentPulses(start, out);
+        }
+
+        @Override
+        public PinState getState() {
+            return state;
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+        final TestSensor sensor = new TestSensor();
+        final Debouncer debouncer = new Debouncer(sensor, 100, 500);
+
+        // A state already held for the window is confirmed at once.
+        sensor.set(PinState.HIGH);
+        TimeUnit.MILLISECONDS.sleep(150);
+        long start = System.nanoTime();
+        assertTrue(debouncer.awaitStable(PinState.HIGH));
+        assertFalse(debouncer.awaitStable(PinState.LOW));
+        assertTrue(elapsedMillis(start) < 50);
+
+        // Bounces restart the window; paper is confirmed 100 ms after the last one.
+        sensor.set(PinState.LOW);
+        start = System.nanoTime();
+        play(sensor, PinState.HIGH, PinState.LOW, PinState.HIGH);
+        assertTrue(debouncer.awaitStable(PinState.HIGH));
+        assertEquals(160, elapsedMillis(start), 50);
+
+        // A glitch that settles low is a false positive.
+        sensor.set(PinState.LOW);
+        play(sensor, PinState.HIGH, PinState.LOW);
+        assertFalse(debouncer.awaitStable(PinState.HIGH));
+
+        // A sensor that never settles gives up at the settle timeout.
+        final Thread chatter = new Thread(() -> {
+            try {
+                for (int i = 0; i < 60; i++) {
+                    TimeUnit.MILLISECONDS.sleep(20);
+                    sensor.set(sensor.getState().isHigh() ? PinState.LOW : PinState.HIGH);
+                }
+            } catch (InterruptedException ignored) {}
+        });
+        sensor.set(PinState.HIGH);
+        chatter.start();
+        start = System.nanoTime();
+        assertFalse(debouncer.awaitStable(PinState.HIGH));
+        assertEquals(500, elapsedMillis(start), 100);
+        chatter.interrupt();
+        chatter.join();
+    }
+
+    /**
+     * Helper method to set the sensor to each state in turn, 20 ms apart, on another thread.
+     */
+    private static void play(TestSensor sensor, PinState... states) {
+        new Thread(() -> {
+            try {
+                for (PinState state : states) {
+                    TimeUnit.MILLISECONDS.sleep(20);
+                    sensor.set(state);
+                }
+            } catch (InterruptedException ignored) {}
+        }).start();
+    }
+
+    private static double elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1000000.0;
+    }
+}
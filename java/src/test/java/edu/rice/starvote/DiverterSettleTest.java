@@ -0,0 +1,77 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.*;
+import edu.rice.starvote.ballotbox.drivers.IDiverter;
+import edu.rice.starvote.ballotbox.sim.PaperPathModel;
+import edu.rice.starvote.ballotbox.util.Clock;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds two consecutive valid ballots through the paper feeder on the simulated paper path, and checks that only the
+ * first one waits for the diverter to swing. No hardware required.
+ */
+public class DiverterSettleTest {
+
+    /**
+     * Diverter that records how long each `waitUntilSettled()` call blocks, in simulated nanoseconds.
+     */
+    private static class TimedDiverter implements IDiverter {
+        final IDiverter diverter;
+        final List<Long> waits = new CopyOnWriteArrayList<>();
+
+        TimedDiverter(IDiverter diverter) {
+            this.diverter = diverter;
+        }
+
+        @Override
+        public void up() throws IOException {
+            diverter.up();
+        }
+
+        @Override
+        public void down() throws IOException {
+            diverter.down();
+        }
+
+        @Override
+        public void waitUntilSettled() {
+            final long start = Clock.nanoTime();
+            diverter.waitUntilSettled();
+            waits.add(Clock.nanoTime() - start);
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+        Clock.setScale(20);
+        try {
+            try (PaperPathModel model = new PaperPathModel()) {
+                final TimedDiverter diverter = new TimedDiverter(model.diverter());
+                final ISpooler spooler = new PaperSpooler(status -> {}, diverter, model.motor(),
+                        model.halfwaySensor(), model.scanner(), IAsyncValidator.of(code -> true, Runnable::run),
+                        PaperPathModel.feedTiming(), IBallotJournal.DISABLED);
+                model.load("BID-1");
+                model.load("BID-2");
+                spooler.takeIn();
+                spooler.takeIn();
+                assertEquals(Arrays.asList("BID-1", "BID-2"), model.accepted());
+                assertTrue(model.misrouted().isEmpty());
+
+                // The diverter starts up, so the first ballot waits for it to swing down and the second does not.
+                assertEquals(2, diverter.waits.size());
+                assertTrue(diverter.waits.get(0) > TimeUnit.MILLISECONDS.toNanos(100));
+                assertTrue(diverter.waits.get(1) < TimeUnit.MILLISECONDS.toNanos(5));
+            }
+        } finally {
+            Clock.setScale(1);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package edu.rice.starvote;
+
+import com.pi4j.io.gpio.PinEdge;
+import edu.rice.starvote.ballotbox.util.EdgeSignal;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks edge generations, timestamps and pulse widths without GPIO hardware.
+ */
+public class EdgeSignalTest {
+
+    @Test
+    public void test() throws Exception {
+        final EdgeSignal signal = new EdgeSignal(8);
+        final long before = signal.generation(PinEdge.FALLING);
+
+        // An edge signaled before the wait begins must not be lost.
+        signal.signal(PinEdge.FALLING, 1000);
+        assertTrue(signal.awaitAfter(PinEdge.FALLING, before, 0));
+        assertFalse(signal.awaitAfter(PinEdge.RISING, signal.generation(PinEdge.RISING), 10));
+
+        final long rising = signal.generation(PinEdge.RISING);
+        new Thread(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(50);
+            } catch (InterruptedException ignored) {}
+            signal.signal(PinEdge.RISING, 4000);
+        }).start();
+        assertTrue(signal.awaitAfter(PinEdge.RISING, rising, 2000));
+
+        assertEquals(1000, signal.edgeNanos(PinEdge.FALLING, before + 1));
+        assertEquals(4000, signal.lastEdgeNanos(PinEdge.RISING));
+        assertEquals(2, signal.generation(PinEdge.BOTH));
+
+        signal.signal(PinEdge.FALLING, 5000);
+        signal.signal(PinEdge.RISING, 5500);
+        final long[] lows = new long[4];
+        assertEquals(2, signal.recentPulses(PinEdge.FALLING, lows));
+        assertEquals(500, lows[0]);
+        assertEquals(3000, lows[1]);
+
+        // Old edges fall out of the ring.
+        for (int i = 0; i < 16; i++) {
+            signal.signal(PinEdge.FALLING);
+            signal.signal(PinEdge.RISING);
+        }
+        assertEquals(-1, signal.edgeNanos(PinEdge.FALLING, before + 1));
+    }
+}
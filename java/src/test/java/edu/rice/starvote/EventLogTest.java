@@ -0,0 +1,71 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.util.EventLog;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the event log writes records in order, drops rather than blocks when its writer stalls, and rotates its
+ * file within the size limit.
+ */
+public class EventLogTest {
+
+    @Test
+    public void test() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (EventLog log = new EventLog(8, new PrintStream(bytes, true), null, 0, 0)) {
+            log.log("first");
+            log.log("second", 42);
+            log.log("third", 7, "abc");
+        }
+        final String[] lines = bytes.toString("UTF-8").split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].endsWith(" first"));
+        assertTrue(lines[1].endsWith(" second 42"));
+        assertTrue(lines[2].endsWith(" third 7 abc"));
+
+        // A stalled writer makes the log drop events instead of blocking the caller.
+        final CountDownLatch release = new CountDownLatch(1);
+        final ByteArrayOutputStream stalledBytes = new ByteArrayOutputStream();
+        final OutputStream stalled = new OutputStream() {
+            @Override
+            public void write(int b) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                stalledBytes.write(b);
+            }
+        };
+        try (EventLog log = new EventLog(4, new PrintStream(stalled, true), null, 0, 0)) {
+            for (int i = 0; i < 100; i++) log.log("event", i);
+            assertTrue(log.dropped() >= 90);
+            release.countDown();
+        }
+        assertTrue(new String(stalledBytes.toByteArray(), StandardCharsets.UTF_8).contains(" eventlog.dropped "));
+
+        // The log file is rotated before it exceeds its size limit, keeping a fixed number of old files.
+        final Path dir = Files.createTempDirectory("eventlog");
+        final Path file = dir.resolve("events.log");
+        try (EventLog log = new EventLog(64, null, file, 200, 2)) {
+            for (int i = 0; i < 40; i++) log.log("rotation", i);
+        }
+        assertTrue(Files.size(file) <= 200);
+        assertTrue(Files.exists(dir.resolve("events.log.1")));
+        assertTrue(Files.exists(dir.resolve("events.log.2")));
+        assertFalse(Files.exists(dir.resolve("events.log.3")));
+        final List<String> last = Files.readAllLines(file);
+        assertTrue(last.get(last.size() - 1).endsWith(" rotation 39"));
+    }
+}
@@ -0,0 +1,51 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.FeedTiming;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that feed timeouts and settle delays adapt to measured timings within their bounds. No hardware required.
+ */
+public class FeedTimingTest {
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void test() {
+        final FeedTiming timing = new FeedTiming();
+        assertEquals(FeedTiming.DEFAULT_FEED_TIMEOUT.nominal, timing.feedTimeout());
+        assertEquals(FeedTiming.DEFAULT_EJECT_SETTLE.nominal, timing.ejectSettle());
+
+        // A fast box: 800 ms feeds, 800 ms ejects.
+        for (int i = 0; i < 16; i++) {
+            timing.recordFeed(ms(800));
+            timing.recordEject(ms(800));
+        }
+        assertEquals(1500, timing.feedTimeout()); // 1200 ms clamped to the lower bound
+        assertEquals(2000, timing.ejectTimeout());
+        assertEquals(480, timing.ejectSettle());
+        assertEquals(120, timing.feedSettle());
+
+        // A slow box is capped by the upper bounds.
+        for (int i = 0; i < 32; i++) {
+            timing.recordFeed(ms(2500));
+            timing.recordEject(ms(2500));
+        }
+        assertEquals(3000, timing.feedTimeout());
+        assertEquals(900, timing.ejectSettle());
+
+        // A fault restores nominal timing until enough clean cycles have passed.
+        timing.recordFault();
+        assertEquals(FeedTiming.DEFAULT_EJECT_TIMEOUT.nominal, timing.ejectTimeout());
+        for (int i = 0; i < 10; i++) {
+            timing.recordFeed(ms(2500));
+        }
+        assertEquals(900, timing.ejectSettle());
+    }
+}
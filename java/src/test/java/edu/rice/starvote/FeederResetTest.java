@@ -0,0 +1,80 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+import edu.rice.starvote.ballotbox.IAsyncValidator;
+import edu.rice.starvote.ballotbox.PaperSpooler;
+import edu.rice.starvote.ballotbox.drivers.IMotor;
+import edu.rice.starvote.ballotbox.drivers.MotionProfile;
+import edu.rice.starvote.ballotbox.drivers.MotorScheduler;
+import edu.rice.starvote.ballotbox.sim.PaperPathModel;
+import edu.rice.starvote.ballotbox.util.Clock;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the paper feeder with an empty tray, with the feed motor ramped by the default motion profile at 20 times real
+ * time, and checks that the feeder reset runs the motor in reverse at full speed for the full reset time. No hardware
+ * required.
+ */
+public class FeederResetTest {
+
+    /**
+     * Motor that records every signed speed it is driven at, with the clock time.
+     */
+    private static class RecordingMotor implements IMotor {
+        final List<long[]> speeds = new ArrayList<>();
+
+        @Override public void stop() { record(0); }
+        @Override public void forward() { forward(100); }
+        @Override public void forwardSlow() { forward(25); }
+        @Override public void forward(double speed) { record(speed); }
+        @Override public void reverse() { reverse(100); }
+        @Override public void reverseSlow() { reverse(25); }
+        @Override public void reverse(double speed) { record(-speed); }
+
+        private synchronized void record(double speed) {
+            speeds.add(new long[]{Clock.nanoTime(), (long) speed});
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+        Clock.setScale(20);
+        final RecordingMotor recorder = new RecordingMotor();
+        try (PaperPathModel model = new PaperPathModel();
+             MotorScheduler motor = new MotorScheduler(recorder, MotionProfile.DEFAULT)) {
+            final List<BallotStatus> statuses = new CopyOnWriteArrayList<>();
+            final PaperSpooler spooler = new PaperSpooler(statuses::add, model.diverter(), motor,
+                    model.halfwaySensor(), model.scanner(), IAsyncValidator.of(code -> true, Runnable::run),
+                    PaperPathModel.feedTiming());
+            spooler.takeIn();
+            assertTrue(motor.awaitIdle(1000));
+            assertEquals(BallotStatus.WAITING, statuses.get(statuses.size() - 1));
+
+            // The motor ramps from forward to full reverse, and holds full reverse for the reset time.
+            long fullReverseAt = -1;
+            long fullReverseUntil = -1;
+            synchronized (recorder) {
+                for (long[] speed : recorder.speeds) {
+                    if (speed[1] == -100 && fullReverseAt < 0) {
+                        fullReverseAt = speed[0];
+                    } else if (speed[1] != -100 && fullReverseAt >= 0) {
+                        fullReverseUntil = speed[0];
+                        break;
+                    }
+                }
+                assertEquals(0, recorder.speeds.get(recorder.speeds.size() - 1)[1]);
+            }
+            assertTrue(fullReverseAt >= 0 && fullReverseUntil >= 0);
+            assertTrue(fullReverseUntil - fullReverseAt >= TimeUnit.MILLISECONDS.toNanos(250));
+        } finally {
+            Clock.setScale(1);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.LaneConfig;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks parsing and validation of the lane configuration.
+ */
+public class LaneConfigTest {
+
+    @Test
+    public void test() throws Exception {
+        assertEquals(Collections.singletonList(LaneConfig.DEFAULT),
+                LaneConfig.load(Paths.get("no-such-file.properties")));
+
+        final Properties properties = new Properties();
+        properties.setProperty("lanes", "2");
+        lane(properties, 1, 24, 23, 22, 27, 17, 18);
+        lane(properties, 2, 5, 6, 13, 19, 12, 16);
+        final List<LaneConfig> lanes = LaneConfig.parse(properties);
+        assertEquals(2, lanes.size());
+        assertArrayEquals(LaneConfig.DEFAULT.pins(), lanes.get(0).pins());
+        assertArrayEquals(new int[]{5, 6, 13, 19, 12, 16}, lanes.get(1).pins());
+
+        // Pin shared between lanes.
+        lane(properties, 2, 5, 6, 13, 19, 12, 18);
+        assertInvalid(properties);
+        // Scanner pin.
+        lane(properties, 2, 25, 6, 13, 19, 12, 16);
+        assertInvalid(properties);
+        // Not a GPIO pin.
+        lane(properties, 2, 5, 6, 13, 19, 12, 40);
+        assertInvalid(properties);
+        // Missing lane.
+        lane(properties, 2, 5, 6, 13, 19, 12, 16);
+        properties.setProperty("lanes", "3");
+        assertInvalid(properties);
+    }
+
+    /**
+     * Helper method to set the pins of a lane.
+     */
+    private static void lane(Properties properties, int lane, int... pins) {
+        final String[] keys = {"tray", "halfway", "motor.forward", "motor.reverse", "motor.enable", "diverter"};
+        for (int i = 0; i < keys.length; i++) {
+            properties.setProperty("lane." + lane + "." + keys[i], String.valueOf(pins[i]));
+        }
+    }
+
+    private static void assertInvalid(Properties properties) {
+        try {
+            LaneConfig.parse(properties);
+            fail("Invalid configuration accepted");
+        } catch (IllegalArgumentException expected) {}
+    }
+}
@@ -0,0 +1,54 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+import edu.rice.starvote.ballotbox.LaneStatus;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the box status combined from two lanes shows each lane's results, is not overwritten by the other lane
+ * going idle, and is offline only when both lanes are. No hardware required.
+ */
+public class LaneStatusTest {
+
+    @Test
+    public void test() {
+        final List<BallotStatus> box = new CopyOnWriteArrayList<>();
+        final LaneStatus lanes = new LaneStatus(2, box::add);
+
+        // Lane 2 returning to waiting does not hide lane 1's result.
+        lanes.lane(1).pushStatus(BallotStatus.SPOOLING);
+        lanes.lane(1).pushStatus(BallotStatus.ACCEPT);
+        lanes.lane(2).pushStatus(BallotStatus.WAITING);
+        assertEquals(BallotStatus.ACCEPT, lanes.getStatus());
+
+        // The most recent result of either lane is shown, and repeated results are each pushed.
+        lanes.lane(2).pushStatus(BallotStatus.REJECT);
+        lanes.lane(1).pushStatus(BallotStatus.ACCEPT);
+        lanes.lane(1).pushStatus(BallotStatus.WAITING);
+        assertEquals(BallotStatus.REJECT, lanes.getStatus());
+        lanes.lane(2).pushStatus(BallotStatus.WAITING);
+        assertEquals(Arrays.asList(BallotStatus.SPOOLING, BallotStatus.ACCEPT, BallotStatus.REJECT,
+                BallotStatus.ACCEPT, BallotStatus.REJECT, BallotStatus.WAITING), box);
+
+        // One lane going offline leaves the box up; both going offline takes it down.
+        box.clear();
+        lanes.lane(1).pushStatus(BallotStatus.OFFLINE);
+        assertEquals(BallotStatus.WAITING, lanes.getStatus());
+        lanes.lane(2).pushStatus(BallotStatus.ACCEPT);
+        lanes.lane(2).pushStatus(BallotStatus.OFFLINE);
+        assertEquals(BallotStatus.OFFLINE, lanes.getStatus());
+        lanes.lane(1).pushStatus(BallotStatus.WAITING);
+        assertEquals(Arrays.asList(BallotStatus.ACCEPT, BallotStatus.OFFLINE, BallotStatus.WAITING), box);
+
+        try {
+            lanes.lane(3);
+            fail();
+        } catch (IllegalArgumentException expected) {}
+    }
+}
@@ -0,0 +1,58 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.metrics.LatencyHistogram;
+import edu.rice.starvote.ballotbox.metrics.MetricsRegistry;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks histogram percentiles against known distributions and the text rendering of the metrics registry.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Assert a value is within the histogram precision of the expected value.
+     */
+    private static void assertNear(long expected, long actual) {
+        assertEquals(expected, actual, Math.max(1, expected * 0.04));
+    }
+
+    @Test
+    public void test() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(99));
+
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(10000, histogram.count());
+        assertEquals(10000000, histogram.max());
+        assertNear(5000000, histogram.percentile(50));
+        assertNear(9900000, histogram.percentile(99));
+        assertNear(9990000, histogram.percentile(99.9));
+        assertEquals(10000000, histogram.percentile(100));
+
+        // Small values are exact.
+        final LatencyHistogram small = new LatencyHistogram();
+        for (int i = 0; i < 50; i++) small.record(i);
+        assertEquals(24, small.percentile(50));
+
+        // Extreme values do not overflow.
+        final LatencyHistogram extreme = new LatencyHistogram();
+        extreme.record(Long.MAX_VALUE);
+        extreme.record(-5);
+        assertEquals(0, extreme.percentile(50));
+        assertNear(Long.MAX_VALUE / 1000, extreme.percentile(100) / 1000);
+
+        final MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("test_jams_total", "Jams.").add(3);
+        registry.histogram("test_scan_seconds", "Scans.").record(2500000);
+        assertSame(registry.counter("test_jams_total", "Jams."), registry.counter("test_jams_total", "Jams."));
+        final String text = registry.render();
+        assertTrue(text.contains("# TYPE test_jams_total counter\ntest_jams_total 3\n"));
+        assertTrue(text.contains("test_scan_seconds_count 1\n"));
+        assertTrue(text.contains("test_scan_seconds_max 0.002500\n"));
+        assertTrue(text.indexOf("test_jams_total") < text.indexOf("test_scan_seconds"));
+    }
+}
@@ -0,0 +1,104 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.drivers.IMotor;
+import edu.rice.starvote.ballotbox.drivers.MotionProfile;
+import edu.rice.starvote.ballotbox.drivers.MotorScheduler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the motor scheduler ramps speed changes, stops before reversing, and reports a failed stop at once. No
+ * hardware required.
+ */
+public class MotorSchedulerTest {
+
+    /**
+     * Motor that records every signed speed it is driven at.
+     */
+    private static class RecordingMotor implements IMotor {
+        final List<Double> speeds = new ArrayList<>();
+
+        @Override public synchronized void stop() throws IOException { speeds.add(0.0); }
+        @Override public void forward() throws IOException { forward(100); }
+        @Override public void forwardSlow() throws IOException { forward(25); }
+        @Override public synchronized void forward(double speed) throws IOException { speeds.add(speed); }
+        @Override public void reverse() { reverse(100); }
+        @Override public void reverseSlow() { reverse(25); }
+        @Override public synchronized void reverse(double speed) { speeds.add(-speed); }
+    }
+
+    /**
+     * Motor whose driver fails when moving forward.
+     */
+    private static class FailingMotor extends RecordingMotor {
+        @Override public void forward(double speed) throws IOException { throw new IOException("driver failed"); }
+    }
+
+    @Test
+    public void test() throws Exception {
+        final RecordingMotor motor = new RecordingMotor();
+        final MotionProfile profile = new MotionProfile(100, 100, 20, MotionProfile.Curve.S_CURVE, 5);
+        try (MotorScheduler scheduler = new MotorScheduler(motor, profile)) {
+            final long start = System.nanoTime();
+            scheduler.forward(60);
+            assertTrue("command should not block", System.nanoTime() - start < 20_000_000);
+            assertTrue(scheduler.awaitIdle(1000));
+            assertEquals(60.0, scheduler.getSpeed(), 0.0);
+
+            scheduler.reverse(25);
+            assertTrue(scheduler.awaitIdle(1000));
+            assertEquals(-25.0, scheduler.getSpeed(), 0.0);
+
+            synchronized (motor) {
+                assertTrue("ramp should take several steps", motor.speeds.size() > 4);
+                assertEquals(-25.0, motor.speeds.get(motor.speeds.size() - 1), 0.0);
+                /* Speed never jumps across zero. */
+                boolean stopped = false;
+                double last = 0;
+                for (double speed : motor.speeds) {
+                    assertFalse(last > 0 && speed < 0);
+                    if (speed == 0 && last > 0) stopped = true;
+                    last = speed;
+                }
+                assertTrue(stopped);
+            }
+        }
+
+        /* Errors are reported by the next command, and a stop is still carried out. */
+        try (MotorScheduler scheduler = new MotorScheduler(new FailingMotor(), MotionProfile.IMMEDIATE)) {
+            scheduler.forward(50);
+            assertFalse(scheduler.awaitIdle(200));
+            try {
+                scheduler.stop();
+                fail("expected deferred IOException");
+            } catch (IOException expected) {}
+            assertEquals(0.0, scheduler.getSpeed(), 0.0);
+        }
+
+        /* A stop waits for the motor to ramp down, and its own error is thrown at once. */
+        final RecordingMotor stuck = new RecordingMotor() {
+            @Override public synchronized void stop() throws IOException { throw new IOException("driver failed"); }
+        };
+        try (MotorScheduler scheduler = new MotorScheduler(stuck, profile)) {
+            scheduler.forward(60);
+            assertTrue(scheduler.awaitIdle(1000));
+            try {
+                scheduler.stop();
+                fail("expected IOException from stop");
+            } catch (IOException expected) {}
+            synchronized (stuck) {
+                assertTrue("stop should ramp down before failing", stuck.speeds.get(stuck.speeds.size() - 1) < 60.0);
+            }
+        }
+        try (MotorScheduler scheduler = new MotorScheduler(new RecordingMotor(), profile)) {
+            scheduler.forward(60);
+            scheduler.stop();
+            assertEquals(0.0, scheduler.getSpeed(), 0.0);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.drivers.PWMBlaster;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that pi-blaster batches are written whole, are not split by writes from other threads, and are discarded when
+ * they fail, and that repeated commands are not dropped. Commands are written to a temporary file instead of the
+ * pi-blaster device. No hardware required.
+ */
+public class PWMBlasterTest {
+
+    @Test
+    public void test() throws Exception {
+        final Path device = Files.createTempFile("pi-blaster", ".txt");
+        System.setProperty(PWMBlaster.PROPERTY, device.toString());
+        try {
+            final PWMBlaster motor = new PWMBlaster(17, 50);
+            final PWMBlaster diverter = new PWMBlaster(18, 50);
+            final PWMBlaster other = new PWMBlaster(20, 50);
+
+            PWMBlaster.batch(() -> {
+                motor.setDutyCycle(50);
+                diverter.setDutyCycle(10);
+            });
+            assertEquals(Arrays.asList("17=0.5 18=0.1"), Files.readAllLines(device));
+
+            // A write from another thread in the middle of a batch sends none of the batch.
+            final CountDownLatch queued = new CountDownLatch(1);
+            final CountDownLatch written = new CountDownLatch(1);
+            final Thread writer = new Thread(() -> {
+                try {
+                    queued.await();
+                    other.setDutyCycle(50);
+                } catch (InterruptedException | IOException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    written.countDown();
+                }
+            });
+            writer.start();
+            PWMBlaster.batch(() -> {
+                motor.setDutyCycle(25);
+                queued.countDown();
+                try {
+                    written.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                diverter.setDutyCycle(20);
+            });
+            writer.join();
+            assertEquals(Arrays.asList("17=0.5 18=0.1", "20=0.5", "17=0.25 18=0.2"), Files.readAllLines(device));
+
+            // A failed batch, nested or not, sends nothing.
+            try {
+                PWMBlaster.batch(() -> {
+                    motor.setDutyCycle(100);
+                    throw new IOException("failed");
+                });
+                fail();
+            } catch (IOException expected) {}
+            PWMBlaster.batch(() -> {
+                diverter.setDutyCycle(30);
+                try {
+                    PWMBlaster.batch(() -> {
+                        motor.setDutyCycle(100);
+                        throw new IOException("failed");
+                    });
+                } catch (IOException expected) {}
+            });
+            assertEquals(Arrays.asList("17=0.5 18=0.1", "20=0.5", "17=0.25 18=0.2", "18=0.3"),
+                    Files.readAllLines(device));
+
+            // A command repeating the last value is still sent, in case pi-blaster has lost it.
+            diverter.setDutyCycle(30);
+            assertEquals(Arrays.asList("17=0.5 18=0.1", "20=0.5", "17=0.25 18=0.2", "18=0.3", "18=0.3"),
+                    Files.readAllLines(device));
+        } finally {
+            System.clearProperty(PWMBlaster.PROPERTY);
+            Files.delete(device);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.drivers.IScanner;
+import edu.rice.starvote.ballotbox.drivers.ScannerArbiter;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a lane holds a shared scanner from reservation until release, across several scans and when the lane
+ * fails before scanning. No hardware required.
+ */
+public class ScannerArbiterTest {
+
+    @Test
+    public void test() throws Exception {
+        final ScannerArbiter arbiter = new ScannerArbiter();
+        final IScanner scanner = timeout -> "BID-1";
+        final IScanner lane1 = arbiter.share(scanner);
+        final IScanner lane2 = arbiter.share(scanner);
+        final ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            // A reservation lasts across scans until it is released.
+            assertTrue(lane1.tryReserve());
+            assertEquals("BID-1", lane1.scan(1));
+            assertEquals("BID-1", lane1.scan(1));
+            assertFalse(other.submit(lane2::tryReserve).get());
+            lane1.release();
+            assertTrue(other.submit(() -> {
+                final boolean reserved = lane2.tryReserve();
+                lane2.release();
+                return reserved;
+            }).get());
+
+            // A lane that fails between reserving and scanning does not keep the scanner.
+            try {
+                try {
+                    lane1.reserve();
+                    throw new IllegalStateException("motor failed");
+                } finally {
+                    lane1.release();
+                }
+            } catch (IllegalStateException expected) {}
+            assertTrue(other.submit(() -> {
+                final boolean reserved = lane2.tryReserve();
+                lane2.release();
+                return reserved;
+            }).get());
+
+            // A scan without a reservation releases the scanner when it returns.
+            assertEquals("BID-1", lane1.scan(1));
+            assertEquals("BID-1", other.submit(() -> lane2.scan(1)).get(1, TimeUnit.SECONDS));
+            assertEquals(0, arbiter.waiting());
+        } finally {
+            other.shutdown();
+        }
+    }
+}
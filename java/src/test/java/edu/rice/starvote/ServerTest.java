@@ -9,12 +9,18 @@ import java.util.TimerTask;
 
 /**
  * Created by luej on 8/3/16.
+ *
+ * Manual test: serves a stand-in box status on port 4444, or the port given as the first argument.
  */
 public class ServerTest {
 //    @Test
     public static void test() throws Exception {
+        test(4444);
+    }
+
+    public static void test(int port) throws Exception {
         StatusContainer provider = new StatusContainer();
-        StatusServer server = new StatusServer(4444, provider);
+        StatusServer server = new StatusServer(port, provider);
         provider.writeStatus(BallotStatus.ACCEPT);
         new Thread(() -> server.start()).start();
         Timer timer = new Timer();
@@ -33,6 +39,6 @@ public class ServerTest {
     }
 
     public static void main (String[] args) throws Exception {
-        test();
+        test(args.length > 0 ? Integer.parseInt(args[0]) : 4444);
     }
 }
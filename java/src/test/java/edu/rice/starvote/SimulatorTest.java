@@ -0,0 +1,76 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+import edu.rice.starvote.ballotbox.IAsyncValidator;
+import edu.rice.starvote.ballotbox.IBallotJournal;
+import edu.rice.starvote.ballotbox.Monitor;
+import edu.rice.starvote.ballotbox.PaperSpooler;
+import edu.rice.starvote.ballotbox.sim.PaperPathModel;
+import edu.rice.starvote.ballotbox.util.Clock;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the paper feeder and monitor on the simulated paper path at 20 times real time, and checks that ballots end up
+ * in the right bins. No hardware required.
+ */
+public class SimulatorTest {
+
+    @Test
+    public void test() throws Exception {
+        Clock.setScale(20);
+        try (PaperPathModel model = new PaperPathModel()) {
+            final List<BallotStatus> statuses = new CopyOnWriteArrayList<>();
+            final PaperSpooler spooler = new PaperSpooler(statuses::add, model.diverter(), model.motor(),
+                    model.halfwaySensor(), model.scanner(),
+                    IAsyncValidator.of(code -> !code.equals("BID-bad"), Runnable::run), PaperPathModel.feedTiming(),
+                    IBallotJournal.DISABLED);
+            final Thread monitor = new Thread(new Monitor(model.traySensor(), spooler)::run, "monitor");
+            monitor.setDaemon(true);
+            monitor.start();
+            model.load("BID-1");
+            model.load("BID-bad");
+            model.load("BID-2");
+            model.load("BID-unreadable", PaperPathModel.Defect.UNREADABLE);
+            for (int i = 0; i < 1000 && model.accepted().size() + model.rejected().size() < 4; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(Arrays.asList("BID-1", "BID-2"), model.accepted());
+            assertEquals(Arrays.asList("BID-bad", "BID-unreadable"), model.rejected());
+            assertTrue(model.misrouted().isEmpty());
+            assertEquals(0, model.trayDepth());
+
+            // Feed time at 60% duty cycle: 60 mm at 120 mm/s.
+            assertEquals(500, spooler.getLastFeedNanos() / 1000000.0, 25);
+            for (int i = 0; i < 100 && statuses.size() < 11; i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(statuses.contains(BallotStatus.ACCEPT));
+            assertFalse(statuses.contains(BallotStatus.OFFLINE));
+
+            // Every sheet still leaves the feed path once the feed timing adapts to the model.
+            for (int i = 3; i <= 12; i++) {
+                model.load("BID-" + i);
+            }
+            for (int i = 0; i < 1000 && model.accepted().size() < 12; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(12, model.accepted().size());
+            assertEquals(12, new HashSet<>(model.accepted()).size());
+            assertEquals(2, model.rejected().size());
+
+            // Interrupting the lane thread stops the monitor.
+            monitor.interrupt();
+            monitor.join(2000);
+            assertFalse(monitor.isAlive());
+        } finally {
+            Clock.setScale(1);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+import edu.rice.starvote.ballotbox.statusserver.StatusBroadcaster;
+import edu.rice.starvote.ballotbox.statusserver.StatusEvent;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that broadcasting does not wait on slow clients, collapses their backlog without losing the initial message,
+ * and evicts failed sessions. Uses stand-in sessions; no network required.
+ */
+public class StatusBroadcasterTest {
+
+    /**
+     * Session whose sends complete only when `complete()` is called.
+     */
+    private static class FakeSession {
+        final List<String> sent = new ArrayList<>();
+        WriteCallback inFlight;
+        boolean open = true;
+        final Session session;
+
+        FakeSession() {
+            final RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{RemoteEndpoint.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("sendString") && args.length == 2) {
+                            sent.add((String) args[0]);
+                            inFlight = (WriteCallback) args[1];
+                        }
+                        return null;
+                    });
+            session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Session.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getRemote": return remote;
+                            case "isOpen": return open;
+                            case "getRemoteAddress": return new InetSocketAddress("127.0.0.1", 0);
+                            case "close": open = false; return null;
+                            case "hashCode": return System.identityHashCode(proxy);
+                            case "equals": return proxy == args[0];
+                            default: return null;
+                        }
+                    });
+        }
+
+        void complete() {
+            final WriteCallback callback = inFlight;
+            inFlight = null;
+            callback.writeSuccess();
+        }
+    }
+
+    @Test
+    public void test() {
+        final StatusBroadcaster broadcaster = new StatusBroadcaster(2, 10000);
+        final FakeSession fast = new FakeSession();
+        final FakeSession slow = new FakeSession();
+        broadcaster.add(fast.session, event -> event.status.toString(), () -> "WAITING");
+        broadcaster.add(slow.session, event -> event.status.toString(), () -> "WAITING");
+
+        fast.complete();
+        long seq = 0;
+        final BallotStatus[] statuses = {BallotStatus.SPOOLING, BallotStatus.ACCEPT, BallotStatus.WAITING};
+        for (BallotStatus status : statuses) {
+            broadcaster.broadcast(new StatusEvent(++seq, status, 0));
+            fast.complete();
+        }
+        assertEquals(4, fast.sent.size());
+
+        // The slow client's first send never completed; its backlog collapsed to the latest status.
+        assertEquals(1, slow.sent.size());
+        slow.complete();
+        assertEquals("waiting", slow.sent.get(1));
+
+        // A failed send evicts the session.
+        broadcaster.broadcast(new StatusEvent(++seq, BallotStatus.OFFLINE, 0));
+        fast.inFlight.writeFailed(new RuntimeException("connection reset"));
+        assertFalse(fast.open);
+        assertEquals(1, broadcaster.size());
+    }
+
+    @Test
+    public void initial() {
+        final StatusBroadcaster broadcaster = new StatusBroadcaster(2, 10000);
+        final FakeSession resuming = new FakeSession();
+
+        // Events broadcast while the history is being read are queued ahead of it, and more follow before any send
+        // completes. The backlog collapses, but the history is kept.
+        broadcaster.add(resuming.session, event -> "event " + event.seq, () -> {
+            for (long seq = 1; seq <= 3; seq++) {
+                broadcaster.broadcast(new StatusEvent(seq, BallotStatus.SPOOLING, 0));
+            }
+            return "history";
+        });
+        broadcaster.broadcast(new StatusEvent(4, BallotStatus.ACCEPT, 0));
+        broadcaster.broadcast(new StatusEvent(5, BallotStatus.WAITING, 0));
+        resuming.complete();
+        resuming.complete();
+        assertEquals(Arrays.asList("event 1", "history", "event 5"), resuming.sent);
+    }
+}
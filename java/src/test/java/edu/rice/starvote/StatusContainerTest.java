@@ -0,0 +1,65 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+import edu.rice.starvote.ballotbox.statusserver.StatusContainer;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that status writes do not wait on listeners, that listeners do not wait on each other, and that each listener
+ * receives updates in order.
+ */
+public class StatusContainerTest {
+
+    @Test
+    public void test() throws Exception {
+        final StatusContainer container = new StatusContainer();
+        final List<BallotStatus> slow = new CopyOnWriteArrayList<>();
+        final List<BallotStatus> fast = new CopyOnWriteArrayList<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        container.addListener(status -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(100);
+            } catch (InterruptedException ignored) {}
+            slow.add(status);
+            if (status == BallotStatus.WAITING) done.countDown();
+        }, Executors.newCachedThreadPool());
+        container.addListener(status -> {
+            fast.add(status);
+            if (status == BallotStatus.WAITING) done.countDown();
+        });
+
+        final long start = System.nanoTime();
+        container.writeStatus(BallotStatus.SPOOLING);
+        container.writeStatus(BallotStatus.ACCEPT);
+        container.writeStatus(BallotStatus.WAITING);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(BallotStatus.WAITING, container.getStatus());
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        final Object[] expected = {BallotStatus.SPOOLING, BallotStatus.ACCEPT, BallotStatus.WAITING};
+        assertArrayEquals(expected, slow.toArray());
+        assertArrayEquals(expected, fast.toArray());
+
+        // Listeners on the container's own threads do not wait for each other either.
+        final StatusContainer shared = new StatusContainer();
+        final CountDownLatch fastDone = new CountDownLatch(3);
+        shared.addListener(status -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(500);
+            } catch (InterruptedException ignored) {}
+        });
+        shared.addListener(status -> fastDone.countDown());
+        shared.writeStatus(BallotStatus.SPOOLING);
+        shared.writeStatus(BallotStatus.ACCEPT);
+        shared.writeStatus(BallotStatus.WAITING);
+        assertTrue(fastDone.await(250, TimeUnit.MILLISECONDS));
+    }
+}
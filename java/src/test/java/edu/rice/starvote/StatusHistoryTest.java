@@ -0,0 +1,41 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotStatus;
+import edu.rice.starvote.ballotbox.statusserver.StatusEvent;
+import edu.rice.starvote.ballotbox.statusserver.StatusHistory;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks status history retention and the resume format served to reconnecting clients.
+ */
+public class StatusHistoryTest {
+
+    @Test
+    public void test() {
+        final StatusHistory history = new StatusHistory(4);
+        assertEquals(-1, history.latest());
+        assertEquals("{\"oldest\":0,\"latest\":-1,\"complete\":true,\"events\":[]}", history.toJson(-1));
+
+        final BallotStatus[] statuses = {BallotStatus.OFFLINE, BallotStatus.WAITING, BallotStatus.SPOOLING,
+                BallotStatus.ACCEPT, BallotStatus.WAITING, BallotStatus.SPOOLING};
+        for (int seq = 0; seq < statuses.length; seq++) {
+            history.record(new StatusEvent(seq, statuses[seq], 1000 + seq));
+        }
+        assertEquals(2, history.oldest());
+        assertEquals(5, history.latest());
+        assertNull(history.get(1));
+        assertEquals(BallotStatus.ACCEPT, history.get(3).status);
+
+        assertEquals("{\"oldest\":2,\"latest\":5,\"complete\":true,\"events\":["
+                + "{\"seq\":4,\"status\":\"waiting\",\"time\":1004},"
+                + "{\"seq\":5,\"status\":\"pending\",\"time\":1005}]}", history.toJson(3));
+
+        // Transitions already discarded, or a sequence from before a restart, make the history incomplete.
+        assertTrue(history.toJson(0).contains("\"complete\":false"));
+        assertTrue(history.toJson(0).contains("\"seq\":2,"));
+        assertTrue(history.toJson(99).contains("\"complete\":false"));
+        assertTrue(history.toJson(5).endsWith("\"complete\":true,\"events\":[]}"));
+    }
+}
@@ -0,0 +1,175 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.BallotResult;
+import edu.rice.starvote.ballotbox.INetworkValidator;
+import edu.rice.starvote.ballotbox.StoreAndForwardValidator;
+import edu.rice.starvote.ballotbox.metrics.BallotMetrics;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that codes are accepted and queued while the supervisor is away, survive a restart, and are reconciled when
+ * it joins. Uses a stand-in supervisor; no network required.
+ */
+public class StoreAndForwardValidatorTest {
+
+    /**
+     * Supervisor that accepts every code except `BID-bad`, and codes it has already recorded, while connected. If
+     * silent, it never answers, and every request times out. If dropping, it records the next code and is then lost
+     * before answering.
+     */
+    private static class FakeSupervisor implements INetworkValidator {
+        final List<Consumer<Boolean>> listeners = new CopyOnWriteArrayList<>();
+        final List<String> announced = new CopyOnWriteArrayList<>();
+        final Set<String> recorded = ConcurrentHashMap.newKeySet();
+        volatile boolean connected = false;
+        volatile boolean silent = false;
+        volatile boolean dropping = false;
+
+        void setConnected(boolean state) {
+            connected = state;
+            listeners.forEach(listener -> listener.accept(state));
+        }
+
+        @Override
+        public CompletableFuture<BallotResult> validateAsync(String code, long millis) {
+            announced.add(code);
+            if (!connected || silent) return CompletableFuture.completedFuture(BallotResult.TIMEOUT);
+            if (dropping) {
+                recorded.add(code);
+                dropping = false;
+                connected = false;
+                return CompletableFuture.completedFuture(BallotResult.TIMEOUT);
+            }
+            final boolean valid = !code.equals("BID-bad") && recorded.add(code);
+            return CompletableFuture.completedFuture(valid ? BallotResult.ACCEPT : BallotResult.REJECT);
+        }
+
+        @Override
+        public CompletableFuture<BallotResult> validateAsync(String code) {
+            return validateAsync(code, 0);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void addConnectionListener(Consumer<Boolean> listener) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Wait up to two seconds for the validator to connect to a supervisor.
+     */
+    private static void awaitListener(FakeSupervisor supervisor) throws InterruptedException {
+        for (int i = 0; i < 200 && supervisor.listeners.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Wait up to two seconds for the queue to drain to a given length.
+     */
+    private static void awaitPending(StoreAndForwardValidator validator, int pending) throws InterruptedException {
+        for (int i = 0; i < 200 && validator.pending() != pending; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(pending, validator.pending());
+    }
+
+    @Test
+    public void test() throws Exception {
+        final Path file = Files.createTempDirectory("offline").resolve("offline.queue");
+
+        // Offline: decided locally at once, and queued durably.
+        final FakeSupervisor first = new FakeSupervisor();
+        try (StoreAndForwardValidator validator =
+                     new StoreAndForwardValidator(() -> first, code -> !code.equals("BID-local"), file)) {
+            assertEquals(BallotResult.ACCEPT, validator.validateAsync("BID-1").getNow(null));
+            assertEquals(BallotResult.ACCEPT, validator.validateAsync("BID-bad").getNow(null));
+            assertEquals(BallotResult.REJECT, validator.validateAsync("BID-local").getNow(null));
+            assertFalse(validator.isOnline());
+            assertEquals(2, validator.pending());
+        }
+        assertEquals(2, Files.readAllLines(file).size());
+
+        // Restarted: the queue is restored and reconciled once the supervisor joins.
+        final FakeSupervisor second = new FakeSupervisor();
+        try (StoreAndForwardValidator validator = new StoreAndForwardValidator(() -> second, code -> true, file)) {
+            assertEquals(2, validator.pending());
+            awaitListener(second);
+            second.setConnected(true);
+            awaitPending(validator, 0);
+            assertTrue(second.announced.contains("BID-1"));
+            assertTrue(second.announced.contains("BID-bad"));
+
+            // Online: the supervisor decides.
+            assertEquals(BallotResult.REJECT, validator.validateAsync("BID-bad").join());
+            assertEquals(0, validator.pending());
+        }
+        assertTrue(Files.readAllLines(file).isEmpty());
+    }
+
+    /**
+     * A connected supervisor that does not answer must not have its decision made locally: the sheet is rejected.
+     */
+    @Test
+    public void silent() throws Exception {
+        final FakeSupervisor supervisor = new FakeSupervisor();
+        supervisor.silent = true;
+        try (StoreAndForwardValidator validator = new StoreAndForwardValidator(() -> supervisor, code -> true, null)) {
+            awaitListener(supervisor);
+            supervisor.setConnected(true);
+            assertTrue(validator.isOnline());
+            assertEquals(BallotResult.TIMEOUT, validator.validateAsync("BID-1").join());
+            assertEquals(0, validator.pending());
+
+            // Disconnected: decided locally.
+            supervisor.connected = false;
+            assertEquals(BallotResult.ACCEPT, validator.validateAsync("BID-2").join());
+            assertEquals(1, validator.pending());
+        }
+    }
+
+    /**
+     * A code the supervisor recorded before it was lost is queued, and its rejection as a duplicate during
+     * reconciliation, even after a restart, is not a conflict.
+     */
+    @Test
+    public void resent() throws Exception {
+        final Path file = Files.createTempDirectory("offline").resolve("offline.queue");
+        final FakeSupervisor supervisor = new FakeSupervisor();
+        try (StoreAndForwardValidator validator = new StoreAndForwardValidator(() -> supervisor, code -> true, file)) {
+            awaitListener(supervisor);
+            supervisor.setConnected(true);
+            supervisor.dropping = true;
+            assertEquals(BallotResult.ACCEPT, validator.validateAsync("BID-1").join());
+            assertEquals(1, validator.pending());
+        }
+
+        final FakeSupervisor rejoined = new FakeSupervisor();
+        rejoined.recorded.addAll(supervisor.recorded);
+        final long conflicts = BallotMetrics.CONFLICTS.get();
+        try (StoreAndForwardValidator validator = new StoreAndForwardValidator(() -> rejoined, code -> true, file)) {
+            assertEquals(1, validator.pending());
+            awaitListener(rejoined);
+            rejoined.setConnected(true);
+            awaitPending(validator, 0);
+            assertTrue(rejoined.announced.contains("BID-1"));
+        }
+        assertEquals(conflicts, BallotMetrics.CONFLICTS.get());
+    }
+}
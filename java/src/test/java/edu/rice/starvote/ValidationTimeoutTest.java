@@ -0,0 +1,57 @@
+package edu.rice.starvote;
+
+import edu.rice.starvote.ballotbox.*;
+import edu.rice.starvote.ballotbox.metrics.BallotMetrics;
+import edu.rice.starvote.ballotbox.sim.PaperPathModel;
+import edu.rice.starvote.ballotbox.util.Clock;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds a ballot the validator cannot decide through the reference paper feeder on the simulated paper path, and checks
+ * that it is rejected, journaled as a timeout and counted as one. No hardware required.
+ */
+public class ValidationTimeoutTest {
+
+    /**
+     * Journal that records each validation result.
+     */
+    private static class RecordingJournal implements IBallotJournal {
+        final List<BallotResult> validated = new CopyOnWriteArrayList<>();
+
+        @Override public long scanned(String code) { return 1; }
+        @Override public void validated(long ballot, BallotResult result) { validated.add(result); }
+        @Override public void diverted(long ballot, BallotResult result) {}
+        @Override public void ejected(long ballot, BallotResult result) {}
+    }
+
+    @Test
+    public void test() throws Exception {
+        Clock.setScale(20);
+        try (PaperPathModel model = new PaperPathModel()) {
+            final RecordingJournal journal = new RecordingJournal();
+            final List<BallotStatus> statuses = new CopyOnWriteArrayList<>();
+            final PaperSpooler spooler = new PaperSpooler(statuses::add, model.diverter(), model.motor(),
+                    model.halfwaySensor(), model.scanner(),
+                    code -> CompletableFuture.completedFuture(BallotResult.TIMEOUT), PaperPathModel.feedTiming(),
+                    journal);
+            final long timeouts = BallotMetrics.TIMEOUTS.get();
+            final long rejected = BallotMetrics.REJECTED.get();
+            model.load("BID-1");
+            spooler.takeIn();
+            assertEquals(Arrays.asList("BID-1"), model.rejected());
+            assertEquals(Arrays.asList(BallotResult.TIMEOUT), journal.validated);
+            assertEquals(timeouts + 1, BallotMetrics.TIMEOUTS.get());
+            assertEquals(rejected + 1, BallotMetrics.REJECTED.get());
+            assertTrue(statuses.contains(BallotStatus.REJECT));
+        } finally {
+            Clock.setScale(1);
+        }
+    }
+}